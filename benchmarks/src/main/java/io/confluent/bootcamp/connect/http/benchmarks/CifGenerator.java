@@ -0,0 +1,226 @@
+package io.confluent.bootcamp.connect.http.benchmarks;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes files that look like the JSON CIF extracts: a JsonTimetableV1 header, TiplocV1 records of about 200 bytes,
+ * JsonAssociationV1 records of about 400 bytes, JsonScheduleV1 records from under 1 KB to over 20 KB depending on
+ * their number of stops, and the EOF marker. The content only depends on the size, so runs can be compared.
+ */
+public final class CifGenerator {
+    private static final long SEED = 42;
+    private static final String[] OPERATORS = {"GW", "SW", "SN", "XC", "LM", "NT", "TP", "VT", "GR", "SR", "SE", "LO", "ME", "AW"};
+    private static final String[] POWER_TYPES = {"EMU", "DMU", "HST", "E", "D"};
+    private static final String[] CATEGORIES = {"OO", "XX", "EE", "OL", "XZ", "PP"};
+    private static final String EOF = "{\"EOF\":true}";
+
+    private CifGenerator() {
+    }
+
+    /**
+     * @return about the given number of bytes of lines, the last one being the EOF marker
+     */
+    public static byte[] generate(long size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, size + 64 * 1024));
+        try {
+            write(out, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the lines of a file of about the given size, without their line breaks
+     */
+    public static byte[][] lines(long size) {
+        byte[] data = generate(size);
+        int count = 0;
+        for (byte b : data) {
+            if (b == '\n') {
+                count++;
+            }
+        }
+        byte[][] lines = new byte[count][];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = start;
+            while (data[end] != '\n') {
+                end++;
+            }
+            lines[i] = Arrays.copyOfRange(data, start, end);
+            start = end + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * @return count lines picked evenly from a generated file, so that they have the mix of record types of a whole file
+     */
+    public static byte[][] sample(int count) {
+        byte[][] all = lines(Math.max(1024 * 1024, count * 2048L));
+        byte[][] sample = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            sample[i] = all[(int) ((long) i * all.length / count)];
+        }
+        return sample;
+    }
+
+    public static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 8);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Generates the gzip compressed file of about the given uncompressed size once, and keeps it in the temporary
+     * directory for the next runs.
+     */
+    public static Path gzipFile(long size) throws IOException {
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "cif-" + size + ".json.gz");
+        if (Files.exists(file)) {
+            return file;
+        }
+        Path temporary = Files.createTempFile(file.getParent(), "cif-", ".tmp");
+        try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)), 64 * 1024)) {
+            write(out, size);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    /**
+     * Writes lines until about size bytes are written, 2% of them TIPLOCs and 6% associations, then the EOF marker.
+     */
+    public static void write(OutputStream out, long size) throws IOException {
+        Random random = new Random(SEED);
+        StringBuilder line = new StringBuilder(32 * 1024);
+        long written = 0;
+
+        line.append("{\"JsonTimetableV1\":{\"classification\":\"public\",\"timestamp\":1690153200,\"owner\":\"Network Rail\",")
+                .append("\"Sender\":{\"organisation\":\"Rockshore\",\"application\":\"NTROD\",\"component\":\"SCHEDULE\"},")
+                .append("\"Metadata\":{\"type\":\"full\",\"sequence\":4012}}}\n");
+        written += flush(out, line);
+
+        long tiplocBytes = size / 50;
+        long associationBytes = size * 8 / 100;
+        while (written < tiplocBytes) {
+            tiploc(line, random);
+            written += flush(out, line);
+        }
+        while (written < associationBytes) {
+            association(line, random);
+            written += flush(out, line);
+        }
+        while (written < size) {
+            schedule(line, random);
+            written += flush(out, line);
+        }
+        out.write((EOF + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static long flush(OutputStream out, StringBuilder line) throws IOException {
+        byte[] bytes = line.toString().getBytes(StandardCharsets.US_ASCII);
+        out.write(bytes);
+        line.setLength(0);
+        return bytes.length;
+    }
+
+    private static void tiploc(StringBuilder line, Random random) {
+        String tiploc = tiploc(random);
+        line.append("{\"TiplocV1\":{\"transaction_type\":\"Create\",\"tiploc_code\":\"").append(tiploc)
+                .append("\",\"nalco\":\"").append(100000 + random.nextInt(900000))
+                .append("\",\"stanox\":\"").append(10000 + random.nextInt(90000))
+                .append("\",\"crs_code\":").append(random.nextInt(4) == 0 ? "\"" + tiploc.substring(0, 3) + "\"" : "null")
+                .append(",\"description\":null,\"tps_description\":\"").append(tiploc).append(" JUNCTION ").append(random.nextInt(10))
+                .append("\"}}\n");
+    }
+
+    private static void association(StringBuilder line, Random random) {
+        line.append("{\"JsonAssociationV1\":{\"transaction_type\":\"Create\",\"main_train_uid\":\"").append(trainUid(random))
+                .append("\",\"assoc_train_uid\":\"").append(trainUid(random))
+                .append("\",\"assoc_start_date\":\"2023-").append(date(random)).append("T00:00:00Z\"")
+                .append(",\"assoc_end_date\":\"2023-12-").append(10 + random.nextInt(19)).append("T00:00:00Z\"")
+                .append(",\"assoc_days\":\"").append(days(random))
+                .append("\",\"category\":\"").append(random.nextBoolean() ? "JJ" : "VV")
+                .append("\",\"date_indicator\":\"S\",\"location\":\"").append(tiploc(random))
+                .append("\",\"base_location_suffix\":null,\"assoc_location_suffix\":null,\"diagram_type\":\"T\",\"CIF_stp_indicator\":\"")
+                .append(stp(random)).append("\"}}\n");
+    }
+
+    private static void schedule(StringBuilder line, Random random) {
+        line.append("{\"JsonScheduleV1\":{\"CIF_bank_holiday_running\":null,\"CIF_stp_indicator\":\"").append(stp(random))
+                .append("\",\"CIF_train_uid\":\"").append(trainUid(random))
+                .append("\",\"applicable_timetable\":\"Y\",\"atoc_code\":\"").append(OPERATORS[random.nextInt(OPERATORS.length)])
+                .append("\",\"new_schedule_segment\":{\"traction_class\":\"\",\"uic_code\":\"\"},\"schedule_days_runs\":\"").append(days(random))
+                .append("\",\"schedule_end_date\":\"2023-12-").append(10 + random.nextInt(19))
+                .append("\",\"schedule_segment\":{\"signalling_id\":\"").append(random.nextInt(10)).append((char) ('A' + random.nextInt(26)))
+                .append(10 + random.nextInt(90))
+                .append("\",\"CIF_train_category\":\"").append(CATEGORIES[random.nextInt(CATEGORIES.length)])
+                .append("\",\"CIF_headcode\":\"\",\"CIF_course_indicator\":1,\"CIF_train_service_code\":\"").append(21000000 + random.nextInt(9000000))
+                .append("\",\"CIF_business_sector\":\"??\",\"CIF_power_type\":\"").append(POWER_TYPES[random.nextInt(POWER_TYPES.length)])
+                .append("\",\"CIF_timing_load\":null,\"CIF_speed\":\"").append(random.nextBoolean() ? "075" : "100")
+                .append("\",\"CIF_operating_characteristics\":null,\"CIF_train_class\":\"S\",\"CIF_sleepers\":null,\"CIF_reservations\":null,")
+                .append("\"CIF_connection_indicator\":null,\"CIF_catering_code\":null,\"CIF_service_branding\":\"\",\"schedule_location\":[");
+
+        // most trains stop a few times, some call at dozens of locations
+        int stops = 2 + Math.min(90, (int) (-Math.log(1 - random.nextDouble()) * 12));
+        int time = 500 + random.nextInt(1700);
+        for (int i = 0; i < stops; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String type = i == 0 ? "LO" : i == stops - 1 ? "LT" : "LI";
+            line.append("{\"location_type\":\"").append(type).append("\",\"record_identity\":\"").append(type)
+                    .append("\",\"tiploc_code\":\"").append(tiploc(random)).append("\",\"tiploc_instance\":null");
+            if (i > 0) {
+                line.append(",\"arrival\":\"").append(clock(time)).append("\",\"public_arrival\":\"").append(clock(time)).append('"');
+            }
+            time += 1 + random.nextInt(8);
+            if (i < stops - 1) {
+                line.append(",\"departure\":\"").append(clock(time)).append("\",\"public_departure\":\"").append(clock(time)).append('"');
+            }
+            line.append(",\"platform\":").append(random.nextBoolean() ? "\"" + (1 + random.nextInt(12)) + "\"" : "null")
+                    .append(",\"line\":null,\"path\":null,\"engineering_allowance\":null,\"pathing_allowance\":null,\"performance_allowance\":null}");
+        }
+        line.append("]},\"schedule_start_date\":\"2023-").append(date(random))
+                .append("\",\"train_status\":\"P\",\"transaction_type\":\"Create\"}}\n");
+    }
+
+    private static String tiploc(Random random) {
+        char[] code = new char[4 + random.nextInt(4)];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(code);
+    }
+
+    private static String trainUid(Random random) {
+        return (char) ('A' + random.nextInt(26)) + String.valueOf(10000 + random.nextInt(90000));
+    }
+
+    private static String stp(Random random) {
+        return random.nextInt(5) == 0 ? "O" : "P";
+    }
+
+    private static String days(Random random) {
+        return Integer.toBinaryString(128 + random.nextInt(127)).substring(1);
+    }
+
+    private static String date(Random random) {
+        return String.format("%02d-%02d", 5 + random.nextInt(7), 1 + random.nextInt(28));
+    }
+
+    private static String clock(int minutes) {
+        return String.format("%02d%02d", (minutes / 60) % 24, minutes % 60);
+    }
+}
@@ -0,0 +1,97 @@
+package io.confluent.bootcamp.connect.http.benchmarks;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import io.confluent.bootcamp.connect.http.DecompressingLineReader;
+import io.confluent.bootcamp.connect.http.DecompressionCodec;
+import io.confluent.bootcamp.connect.http.DecompressionCodecs;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.openjdk.jmh.annotations.*;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZOutputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Decompression throughput of each codec on the same generated CIF file, draining the decompressed stream and
+ * reading it as lines the way the task does. The setup prints the compressed size of each codec.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar CodecDecompressionBenchmark -p codec=gzip,zstd}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class CodecDecompressionBenchmark {
+
+    @Param({"gzip", "zstd", "bzip2", "xz", "identity"})
+    public String codec;
+
+    @Param({"10", "100"})
+    public int megabytes;
+
+    private DecompressionCodec decompressionCodec;
+    private byte[] compressed;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        decompressionCodec = DecompressionCodecs.forName(codec);
+        byte[] data = CifGenerator.generate((long) megabytes * 1024 * 1024);
+        compressed = compress(data, codec);
+        System.out.printf("%n%s: %d bytes compressed to %d (%.1f%%)%n", codec, data.length, compressed.length, 100.0 * compressed.length / data.length);
+    }
+
+    private static byte[] compress(byte[] data, String codec) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4);
+        try (OutputStream out = compressor(bytes, codec)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static OutputStream compressor(OutputStream out, String codec) throws IOException {
+        switch (codec) {
+            case "gzip":
+                return new GZIPOutputStream(out, 64 * 1024);
+            case "zstd":
+                return new ZstdOutputStream(out);
+            case "bzip2":
+                return new BZip2CompressorOutputStream(out);
+            case "xz":
+                return new XZOutputStream(out, new LZMA2Options());
+            default:
+                return out;
+        }
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        long total = 0;
+        try (InputStream in = decompressionCodec.decompress(new ByteArrayInputStream(compressed))) {
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long lines() throws IOException {
+        long lines = 0;
+        try (DecompressingLineReader reader = new DecompressingLineReader(new ByteArrayInputStream(compressed), decompressionCodec, 0, false, null, 1, 0)) {
+            while (reader.readLine() != null) {
+                lines++;
+            }
+        }
+        return lines;
+    }
+}
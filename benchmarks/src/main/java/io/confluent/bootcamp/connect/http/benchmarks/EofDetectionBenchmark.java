@@ -0,0 +1,68 @@
+package io.confluent.bootcamp.connect.http.benchmarks;
+
+import io.confluent.bootcamp.connect.http.LineSplitter;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The check of every line for the EOF marker, per line: String.equals on decoded lines, decoding and comparing,
+ * and {@link LineSplitter#isEofMarker} on the bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@OperationsPerInvocation(EofDetectionBenchmark.LINES)
+public class EofDetectionBenchmark {
+    static final int LINES = 10_000;
+    private static final String EOF_TRUE = "{\"EOF\":true}";
+
+    private byte[][] lines;
+    private String[] decoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lines = CifGenerator.sample(LINES);
+        decoded = new String[LINES];
+        for (int i = 0; i < LINES; i++) {
+            decoded[i] = new String(lines[i], StandardCharsets.US_ASCII);
+        }
+    }
+
+    @Benchmark
+    public int stringEquals() {
+        int found = 0;
+        for (String line : decoded) {
+            if (line.equals(EOF_TRUE)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int decodeAndEquals() {
+        int found = 0;
+        for (byte[] line : lines) {
+            if (new String(line, StandardCharsets.US_ASCII).equals(EOF_TRUE)) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int isEofMarker() {
+        int found = 0;
+        for (byte[] line : lines) {
+            if (LineSplitter.isEofMarker(line)) {
+                found++;
+            }
+        }
+        return found;
+    }
+}
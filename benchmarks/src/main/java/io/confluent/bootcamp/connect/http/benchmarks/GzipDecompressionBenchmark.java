@@ -0,0 +1,73 @@
+package io.confluent.bootcamp.connect.http.benchmarks;
+
+import io.confluent.bootcamp.connect.http.ParallelGzipInputStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflation throughput of the JDK inflater against {@link ParallelGzipInputStream} with an increasing number of threads,
+ * on generated CIF files of 10 MB to 1 GB.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar GzipDecompressionBenchmark -p threads=1,2,4,8}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class GzipDecompressionBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"1048576"})
+    public int chunkBytes;
+
+    @Param({"10", "100", "1000"})
+    public int megabytes;
+
+    private byte[] compressed;
+    private ExecutorService executor;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        compressed = Files.readAllBytes(CifGenerator.gzipFile((long) megabytes * 1024 * 1024));
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public long jdk() throws IOException {
+        return drain(new GZIPInputStream(new ByteArrayInputStream(compressed), 64 * 1024));
+    }
+
+    @Benchmark
+    public long parallel() throws IOException {
+        return drain(new ParallelGzipInputStream(new ByteArrayInputStream(compressed), executor, threads, chunkBytes));
+    }
+
+    private long drain(InputStream in) throws IOException {
+        long total = 0;
+        try (in) {
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) != -1) {
+                total += n;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,58 @@
+package io.confluent.bootcamp.connect.http.benchmarks;
+
+import io.confluent.bootcamp.connect.http.LineSplitter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splitting an uncompressed file into lines: decoding to Strings with a BufferedReader, the way the connector started
+ * out, against byte arrays from {@link LineSplitter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class LineFramingBenchmark {
+
+    @Param({"10", "100"})
+    public int megabytes;
+
+    private byte[] data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = CifGenerator.generate((long) megabytes * 1024 * 1024);
+    }
+
+    @Benchmark
+    public long bufferedReader() throws IOException {
+        long length = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                length += line.length();
+            }
+        }
+        return length;
+    }
+
+    @Benchmark
+    public long lineSplitter() throws IOException {
+        long length = 0;
+        try (LineSplitter lines = new LineSplitter(new ByteArrayInputStream(data))) {
+            byte[] line;
+            while ((line = lines.readLine()) != null) {
+                length += line.length;
+            }
+        }
+        return length;
+    }
+}
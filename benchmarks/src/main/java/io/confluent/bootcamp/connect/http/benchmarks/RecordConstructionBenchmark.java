@@ -0,0 +1,96 @@
+package io.confluent.bootcamp.connect.http.benchmarks;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a SourceRecord per line, with new source partition and offset maps and a timestamp for every record
+ * against maps and a timestamp shared by a page of records. Run with {@code -prof gc} for the garbage per record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@OperationsPerInvocation(RecordConstructionBenchmark.LINES)
+public class RecordConstructionBenchmark {
+    static final int LINES = 10_000;
+    private static final String URL = "https://publicdatafeeds.networkrail.co.uk/ntrod/CifFileAuthenticate?type=CIF_ALL_FULL_DAILY&day=toc-full";
+    private static final String TOPIC = "CIF_FULL_DAILY";
+
+    @Param({"string", "bytes"})
+    public String outputFormat;
+
+    private byte[][] lines;
+    private boolean bytes;
+    private Map<String, String> sharedPartition;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lines = CifGenerator.sample(LINES);
+        bytes = "bytes".equals(outputFormat);
+        sharedPartition = Collections.singletonMap("url", URL);
+    }
+
+    @Benchmark
+    public void perRecordOffsets(Blackhole blackhole) {
+        for (int i = 0; i < lines.length; i++) {
+            blackhole.consume(new SourceRecord(
+                    Collections.singletonMap("url", URL),
+                    offset(i),
+                    TOPIC,
+                    null,
+                    null,
+                    null,
+                    valueSchema(),
+                    value(lines[i]),
+                    System.currentTimeMillis()));
+        }
+    }
+
+    @Benchmark
+    public void sharedOffsets(Blackhole blackhole) {
+        Map<String, ?> pageOffset = offset(0);
+        long timestamp = System.currentTimeMillis();
+        for (int i = 0; i < lines.length; i++) {
+            blackhole.consume(new SourceRecord(
+                    sharedPartition,
+                    i == lines.length - 1 ? offset(i) : pageOffset,
+                    TOPIC,
+                    null,
+                    null,
+                    null,
+                    valueSchema(),
+                    value(lines[i]),
+                    timestamp));
+        }
+    }
+
+    private Schema valueSchema() {
+        return bytes ? Schema.BYTES_SCHEMA : Schema.STRING_SCHEMA;
+    }
+
+    private Object value(byte[] line) {
+        return bytes ? line : new String(line, StandardCharsets.US_ASCII);
+    }
+
+    private static Map<String, ?> offset(long line) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("timestamp", 1690153200000L);
+        map.put("current_line", line);
+        map.put("eof_reached", false);
+        map.put("etag", "\"5e1c-60a0d4f2b7a80\"");
+        map.put("content_length", 473482L);
+        map.put("position", line * 1800);
+        return map;
+    }
+}
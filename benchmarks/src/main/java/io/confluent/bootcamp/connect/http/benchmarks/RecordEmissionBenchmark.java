@@ -0,0 +1,126 @@
+package io.confluent.bootcamp.connect.http.benchmarks;
+
+import com.sun.net.httpserver.HttpServer;
+import io.confluent.bootcamp.connect.http.HttpCompressedSourceConfiguration;
+import io.confluent.bootcamp.connect.http.HttpFileSource;
+import io.confluent.bootcamp.connect.http.HttpTransport;
+import io.confluent.bootcamp.connect.http.TaskMetrics;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.storage.OffsetStorageReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end: turns a file of CIF lines served from memory over localhost into records with {@link HttpFileSource},
+ * the way a task polls it, including the download, inflation, framing and record construction.
+ * Run with the GC profiler to see the garbage per record, {@code gc.alloc.rate.norm} is in bytes per line:
+ * <p>
+ * {@code java -jar target/benchmarks.jar RecordEmissionBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@OperationsPerInvocation(RecordEmissionBenchmark.LINES)
+public class RecordEmissionBenchmark {
+    static final int LINES = 20_000;
+
+    @Param({"string", "bytes"})
+    public String outputFormat;
+
+    // all lines to one topic, or only the schedules of two operators (about 10% of the lines)
+    @Param({"all", "schedules"})
+    public String routing;
+
+    private HttpServer server;
+    private TaskMetrics metrics;
+    private HttpFileSource source;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] lines = CifGenerator.gzip(cifLines());
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/file.gz", exchange -> {
+            exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+            exchange.sendResponseHeaders(200, lines.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(lines);
+            }
+        });
+        server.start();
+
+        Map<String, String> props = new HashMap<>(Map.of(
+                "http.url", "http://127.0.0.1:" + server.getAddress().getPort() + "/file.gz",
+                "http.user", "user",
+                "http.password", "password",
+                "topic", "schedule",
+                "output.format", outputFormat,
+                // check for the file again right away
+                "task.pause.ms", "1"));
+        if (routing.equals("schedules")) {
+            props.put("routes", "schedules");
+            props.put("routes.schedules.type", "JsonScheduleV1");
+            props.put("routes.schedules.match", "atoc_code=VT|GW");
+        }
+        var config = new HttpCompressedSourceConfiguration(props);
+        // without a stored offset, every invocation reads the file from the start
+        var transport = new HttpTransport(config.username, config.password, config.connectTimeout, config.readTimeout);
+        metrics = new TaskMetrics("benchmark", outputFormat);
+        source = new HttpFileSource(config.urls.get(0), config, transport, null, new OffsetStorageReader() {
+            @Override
+            public <T> Map<String, Object> offset(Map<String, T> partition) {
+                return null;
+            }
+
+            @Override
+            public <T> Map<Map<String, T>, Map<String, Object>> offsets(Collection<Map<String, T>> partitions) {
+                return Map.of();
+            }
+        }, metrics.forFile(config.urls.get(0)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        source.close();
+        metrics.close();
+        server.stop(0);
+    }
+
+    @Benchmark
+    public long poll() {
+        long records = 0;
+        while (true) {
+            List<SourceRecord> page = source.poll();
+            if (page != null) {
+                records += page.size();
+            }
+            // the EOF record makes it at least one, before that the next check may not be due yet
+            if (records > 0 && !source.isBusy()) {
+                return records;
+            }
+        }
+    }
+
+    private static byte[] cifLines() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] line : CifGenerator.sample(LINES - 1)) {
+            out.write(line);
+            out.write('\n');
+        }
+        out.write("{\"EOF\":true}\n".getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+}
@@ -1,28 +1,47 @@
 package io.confluent.bootcamp;
 
-import io.confluent.bootcamp.connect.http.BasicAuthenticator;
+import io.confluent.bootcamp.connect.http.DecompressionCodec;
+import io.confluent.bootcamp.connect.http.DecompressionCodecs;
+import io.confluent.bootcamp.connect.http.GzipIndex;
+import io.confluent.bootcamp.connect.http.HttpTransport;
+import io.confluent.bootcamp.connect.http.KeyExtractor;
+import io.confluent.bootcamp.connect.http.LineSplitter;
 import io.confluent.bootcamp.connect.http.Version;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.common.serialization.StringSerializer;
-import org.apache.kafka.common.serialization.VoidSerializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
 import java.io.*;
-import java.net.Authenticator;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Callable;
-import java.util.zip.GZIPInputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @CommandLine.Command(
         scope = CommandLine.ScopeType.INHERIT,
@@ -36,6 +55,15 @@ import java.util.zip.GZIPInputStream;
         description = "Download compressed Schedule file from URL, and print it/save it/produce it.")
 public class RailScheduleDownloader implements Callable<Integer>  {
     private static final Logger logger = LoggerFactory.getLogger(RailScheduleDownloader.class);
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final long RAW_TRANSFER_SIZE = 1024 * 1024;
+    // producer settings for loading a whole file with --bulk, the Kafka config file can override them
+    private static final Map<String, String> BULK_PRODUCER_DEFAULTS = Map.of(
+            ProducerConfig.BATCH_SIZE_CONFIG, String.valueOf(1024 * 1024),
+            ProducerConfig.LINGER_MS_CONFIG, "20",
+            ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4",
+            ProducerConfig.BUFFER_MEMORY_CONFIG, String.valueOf(256 * 1024 * 1024),
+            ProducerConfig.ACKS_CONFIG, "all");
     @CommandLine.Option(names = {"-c", "--config-file"}, required = true,
             description = "All configurations go in here")
     protected String configFile = null;
@@ -46,6 +74,18 @@ public class RailScheduleDownloader implements Callable<Integer>  {
     @CommandLine.Option(names = {"-s", "--save"}, description = "Save file locally")
     boolean save;
 
+    @CommandLine.Option(names = {"--raw"}, description = "With --save, keep the file compressed as downloaded and resume a partial download")
+    boolean raw;
+
+    @CommandLine.Option(names = {"-o", "--output"}, description = "File to save to, by default the name the server sends (or DAY.gz with --raw)")
+    String output;
+
+    @CommandLine.Option(names = {"--index"}, description = "With --raw, write a gzip seek index FILE.idx with a checkpoint every so many compressed bytes [0 - none]")
+    long indexInterval = 0;
+
+    @CommandLine.Option(names = {"--compression"}, description = "Compression of the file, one of gzip, zstd, bzip2, xz, identity or auto [${DEFAULT-VALUE}]")
+    String compression = DecompressionCodecs.AUTO;
+
     @CommandLine.Option(names = {"-F", "--kafka-config"}, description = "Use this config file and produce to Kafka")
     String kafkaConfigFile;
 
@@ -67,6 +107,27 @@ public class RailScheduleDownloader implements Callable<Integer>  {
     @CommandLine.Option(names = {"--max-lines"}, description = "How many lines to process before cancelling [${DEFAULT-VALUE}]")
     long maxLines = -1;
 
+    @CommandLine.Option(names = {"-k", "--key-fields"}, split = ",", description = "JSON fields that make up the record key, as key.fields of the connector")
+    List<String> keyFields = new ArrayList<>();
+
+    @CommandLine.Option(names = {"--key-separator"}, description = "Separator between combined key fields [${DEFAULT-VALUE}]")
+    String keySeparator = "/";
+
+    @CommandLine.Option(names = {"--bulk"}, description = "With --kafka-config, tune the producer for loading a whole file: 1 MB batches, linger.ms=20, lz4 and a 256 MB buffer, unless the Kafka config sets them")
+    boolean bulk;
+
+    @CommandLine.Option(names = {"--max-in-flight"}, description = "Most records sent to Kafka but not acknowledged yet [${DEFAULT-VALUE}]")
+    int maxInFlight = 100_000;
+
+    @CommandLine.Option(names = {"--report-interval"}, description = "Seconds between throughput reports while producing [${DEFAULT-VALUE}]")
+    long reportInterval = 10;
+
+    @CommandLine.Option(names = {"--connect-timeout"}, description = "Milliseconds to wait for a connection [${DEFAULT-VALUE}]")
+    long connectTimeout = 30_000;
+
+    @CommandLine.Option(names = {"--read-timeout"}, description = "Milliseconds to wait for the response and for more data [${DEFAULT-VALUE}]")
+    long readTimeout = 60_000;
+
     private String urlString;
     private String username;
     private String password;
@@ -98,25 +159,37 @@ public class RailScheduleDownloader implements Callable<Integer>  {
     }
 
     public void readFromUrl() {
-        Authenticator.setDefault(new BasicAuthenticator(username, password));
+        var transport = new HttpTransport(username, password, connectTimeout, readTimeout);
 
         var fullUrl = String.format("%s&type=%s&day=%s",urlString, type,day);
         logger.info(fullUrl);
 
         try {
-            URL url = new URL(fullUrl);
-            HttpURLConnection httpConn = (HttpURLConnection) url.openConnection();
+            Path rawFile = save && raw ? Path.of(output != null ? output : day + ".gz") : null;
+            Map<String, String> requestHeaders = new HashMap<>();
+            if (rawFile != null) {
+                resumeHeaders(partFile(rawFile), requestHeaders);
+            }
+            HttpResponse<InputStream> response = transport.send(fullUrl, "GET", requestHeaders);
 
-            int responseCode = httpConn.getResponseCode();
+            int responseCode = response.statusCode();
 
-            if (responseCode == HttpURLConnection.HTTP_OK) {
+            if (responseCode == HTTP_RANGE_NOT_SATISFIABLE && !requestHeaders.isEmpty()) {
+                logger.warn("Server cannot continue the partial download {}, downloading it again", partFile(rawFile));
+                response.body().close();
+                Files.delete(partFile(rawFile));
+                readFromUrl();
+                return;
+            }
+
+            if (responseCode == HttpURLConnection.HTTP_OK || (rawFile != null && responseCode == HttpURLConnection.HTTP_PARTIAL)) {
                 String fileName = "";
-                String disposition = httpConn.getHeaderField("Content-Disposition");
-                var lastModified = httpConn.getLastModified();
-                var lastModifiedFromHeader = httpConn.getHeaderField("Last-Modified");
-                var headerFields = httpConn.getHeaderFields();
-                String contentType = httpConn.getContentType();
-                int contentLength = httpConn.getContentLength();
+                String disposition = HttpTransport.header(response, "Content-Disposition");
+                var lastModified = HttpTransport.lastModified(response);
+                var lastModifiedFromHeader = HttpTransport.header(response, "Last-Modified");
+                var headerFields = response.headers().map();
+                String contentType = HttpTransport.header(response, "Content-Type");
+                long contentLength = HttpTransport.contentLength(response);
 
                 if (disposition != null) {
                     // extracts file name from header field
@@ -144,18 +217,30 @@ public class RailScheduleDownloader implements Callable<Integer>  {
                     System.out.println("Header: " + header);
                 }
 
-                String saveFilePath = fileName.replace(".gz", "");
+                if (rawFile != null) {
+                    long size = saveRawFile(response, rawFile);
+                    System.out.println("File " + rawFile + " downloaded, " + size + " bytes.");
+                    response.body().close();
+                    return;
+                }
 
-                int totalLines;
+                InputStream body = new BufferedInputStream(response.body(), 64 * 1024);
+                DecompressionCodec codec = DecompressionCodecs.select(DecompressionCodecs.forName(compression), response, body);
+                System.out.println("Compression = " + codec.name());
+
+                String saveFilePath = output != null ? output
+                        : fileName.endsWith(codec.extension()) ? fileName.substring(0, fileName.length() - codec.extension().length()) : fileName;
+
+                long totalLines;
 
                 if (save) {
-                    totalLines = saveFile(httpConn, saveFilePath);
+                    totalLines = saveFile(codec.decompress(body), saveFilePath);
                 }
                 else if (kafkaConfigFile != null && !kafkaConfigFile.isEmpty()) {
-                    totalLines = produceFile(httpConn);
+                    totalLines = produceFile(codec.decompress(body));
                 }
                 else {
-                    totalLines = printFile(httpConn);
+                    totalLines = printFile(codec.decompress(body));
                 }
                 System.out.println("Read " + totalLines + " lines.");
                 System.out.println("Total lines including skipped: " + (totalLines+skipLines));
@@ -164,98 +249,216 @@ public class RailScheduleDownloader implements Callable<Integer>  {
                 System.out.println("No file to download. Server replied HTTP code: " + responseCode);
             }
 
-            httpConn.disconnect();
+            response.body().close();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private int produceFile(HttpURLConnection httpConn) throws IOException {
-        int totalLines = 0;
-
+    private long produceFile(InputStream content) throws IOException {
         Properties properties = new Properties();
+        if (bulk) {
+            BULK_PRODUCER_DEFAULTS.forEach(properties::put);
+        }
         try (InputStream inputStream = new FileInputStream(kafkaConfigFile)) {
             Reader reader = new InputStreamReader(inputStream);
 
             properties.load(reader);
-            properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, VoidSerializer.class);
-            properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+            properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+            properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
 
         } catch (FileNotFoundException e) {
             logger.error("KafkaConfig " + kafkaConfigFile + " not found");
             throw new RuntimeException(e);
         }
 
-        KafkaProducer<Void, String> producer = new KafkaProducer<>(properties);
-
-        try (GZIPInputStream uncompressStream = new GZIPInputStream(httpConn.getInputStream());
-             Reader decoder = new InputStreamReader(uncompressStream, StandardCharsets.US_ASCII);
-             BufferedReader buffered = new BufferedReader(decoder)) {
-
-            while (buffered.ready()) {
-                String line = buffered.readLine();
-
-                ProducerRecord<Void, String> record = new ProducerRecord<>(topic, line);
-
-                if (verbose) {
-                    producer.send(record, ((recordMetadata, e) -> {
-                        if (e != null) {
-                            throw new RuntimeException(e);
-                        }
-                        else {
-                            var valueSize = recordMetadata.serializedValueSize();
-                            System.out.println("Produced [" + valueSize
-                                    + "] at offset " + recordMetadata.offset()
-                                    + " in partition " + recordMetadata.partition()
-                                    + " with data " + record);
-                        }
-                    }));
-                }
-                else {
-                    producer.send(record);
-                    if (totalLines % 1000 == 0) {
-                        logger.info("Produced {}", totalLines);
+        KeyExtractor keyExtractor = keyFields.isEmpty() ? null : new KeyExtractor(keyFields, keySeparator);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicLong failed = new AtomicLong();
+        AtomicReference<Exception> firstError = new AtomicReference<>();
+        // callbacks run on the producer's I/O thread, they must not throw or block
+        Callback callback = (recordMetadata, e) -> {
+            inFlight.release();
+            if (e != null) {
+                failed.incrementAndGet();
+                firstError.compareAndSet(null, e);
+            }
+        };
+
+        long totalLines = 0;
+        long bytes = 0;
+        long started = System.nanoTime();
+        long nextReport = started + TimeUnit.SECONDS.toNanos(reportInterval);
+
+        try (KafkaProducer<byte[], byte[]> producer = new KafkaProducer<>(properties);
+             LineSplitter lines = new LineSplitter(content)) {
+
+            byte[] line;
+            while (firstError.get() == null && (line = lines.readLine()) != null) {
+                byte[] key = keyExtractor != null ? keyExtractor.extract(line) : null;
+                ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(topic, key, line);
+
+                inFlight.acquire();
+                try {
+                    if (verbose) {
+                        producer.send(record, (recordMetadata, e) -> {
+                            callback.onCompletion(recordMetadata, e);
+                            if (e == null) {
+                                System.out.println("Produced [" + recordMetadata.serializedValueSize()
+                                        + "] at offset " + recordMetadata.offset()
+                                        + " in partition " + recordMetadata.partition()
+                                        + " with data " + new String(record.value(), StandardCharsets.US_ASCII));
+                            }
+                        });
+                    }
+                    else {
+                        producer.send(record, callback);
                     }
+                } catch (RuntimeException e) {
+                    // thrown before the record was handed to the producer, so no callback gives the permit back
+                    inFlight.release();
+                    failed.incrementAndGet();
+                    firstError.compareAndSet(null, e);
+                    break;
                 }
 
                 totalLines++;
+                bytes += line.length;
+                long now = System.nanoTime();
+                if (now >= nextReport) {
+                    report(totalLines, bytes, now - started);
+                    nextReport = now + TimeUnit.SECONDS.toNanos(reportInterval);
+                }
             }
+            index = lines.getPosition();
+
+            producer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while producing");
         }
-        producer.close();
+        report(totalLines, bytes, System.nanoTime() - started);
 
+        if (firstError.get() != null) {
+            logger.error("Failed to produce {} record(s), stopped after line {}", failed.get(), totalLines, firstError.get());
+            throw new RuntimeException("Failed to produce " + failed.get() + " record(s)", firstError.get());
+        }
         return totalLines;
     }
 
-    private int printFile(HttpURLConnection httpConn) throws IOException{
-        int totalLines = 0;
-        try (GZIPInputStream uncompressStream = new GZIPInputStream(httpConn.getInputStream());
-             Reader decoder = new InputStreamReader(uncompressStream, StandardCharsets.US_ASCII);
-             BufferedReader buffered = new BufferedReader(decoder)) {
+    private static void report(long lines, long bytes, long nanos) {
+        double seconds = Math.max(nanos, 1) / 1e9;
+        logger.info("Produced {} lines, {} lines/s, {} MB/s uncompressed", lines,
+                String.format("%.0f", lines / seconds), String.format("%.1f", bytes / seconds / 1e6));
+    }
+
+    private static Path partFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".part");
+    }
+
+    /**
+     * Asks for the rest of a partial download, if there is one. Its modification time is the Last-Modified of
+     * the file it is part of, so that If-Range makes the server send the whole file if it has changed since.
+     */
+    private static void resumeHeaders(Path part, Map<String, String> requestHeaders) throws IOException {
+        if (Files.exists(part) && Files.size(part) > 0) {
+            long size = Files.size(part);
+            String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    Files.getLastModifiedTime(part).toInstant().atZone(ZoneOffset.UTC));
+            requestHeaders.put("Range", "bytes=" + size + "-");
+            requestHeaders.put("If-Range", lastModified);
+            logger.info("Resuming {} at byte {}", part, size);
+        }
+    }
+
+    /**
+     * Writes the compressed body to a part file as it is, appending to it for a partial response, and moves it
+     * to its place once it is complete. Optionally writes a seek index next to it.
+     *
+     * @return the size of the file
+     */
+    private long saveRawFile(HttpResponse<InputStream> response, Path file) throws IOException {
+        Path part = partFile(file);
+        boolean partial = response.statusCode() == HttpURLConnection.HTTP_PARTIAL;
+        long lastModified = HttpTransport.lastModified(response);
+        long expectedSize = partial ? totalFromContentRange(HttpTransport.header(response, "Content-Range"))
+                : HttpTransport.contentLength(response);
+
+        long position;
+        try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             ReadableByteChannel body = Channels.newChannel(response.body())) {
+            if (!partial) {
+                channel.truncate(0);
+            }
+            position = channel.size();
+            long transferred;
+            while ((transferred = channel.transferFrom(body, position, RAW_TRANSFER_SIZE)) > 0) {
+                position += transferred;
+            }
+            channel.force(false);
+        } finally {
+            // keeps the validator for If-Range, also when the download breaks off
+            if (lastModified > 0 && Files.exists(part)) {
+                Files.setLastModifiedTime(part, FileTime.fromMillis(lastModified));
+            }
+        }
+
+        if (expectedSize >= 0 && position != expectedSize) {
+            throw new IOException("Download of " + file + " ended at byte " + position + " of " + expectedSize + ", run again to resume");
+        }
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (indexInterval > 0) {
+            Path indexFile = file.resolveSibling(file.getFileName() + ".idx");
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+                DecompressionCodec codec = DecompressionCodecs.detect(in);
+                if (codec != DecompressionCodecs.GZIP) {
+                    System.out.println("No index written, only gzip files can be indexed and " + file + " is " + codec.name());
+                    return position;
+                }
+                GzipIndex gzipIndex = GzipIndex.build(in, indexInterval);
+                gzipIndex.write(indexFile);
+                System.out.println("Index " + indexFile + " written, " + gzipIndex.getCheckpoints().size() + " checkpoints.");
+            }
+        }
+        return position;
+    }
+
+    /**
+     * @return the length of the whole file from a {@code Content-Range: bytes start-end/length} header, -1 if unknown
+     */
+    private static long totalFromContentRange(String contentRange) {
+        if (contentRange == null || contentRange.endsWith("/*")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private long printFile(InputStream content) throws IOException{
+        long totalLines = 0;
+        try (LineSplitter lines = new LineSplitter(content)) {
 
             if (skipLines > 0) {
                 long linesToSkip = skipLines;
-                while (linesToSkip > 0 && buffered.ready()) {
-                    String line = buffered.readLine();
-                    index += line.length() + 1;
+                while (linesToSkip > 0 && lines.readLine() != null) {
                     linesToSkip -= 1;
                 }
                 logger.info("Skipped {} lines", skipLines - linesToSkip);
             }
             else if (skipBytes > 0) {
-                long bytesToSkip = skipBytes;
-                while (bytesToSkip > 0) {
-                    long skipped = buffered.skip(bytesToSkip);
-                    bytesToSkip -= skipped;
-                    logger.info("Skipped {} bytes", skipped);
-                }
-
-                index = skipBytes;
+                long skipped = lines.skip(skipBytes);
+                logger.info("Skipped {} bytes", skipped);
             }
-            while (buffered.ready()) {
-                String line = buffered.readLine();
-                index += line.length() + 1;
 
-                System.out.println(line);
+            PrintStream out = System.out;
+            byte[] line;
+            while ((line = lines.readLine()) != null) {
+                out.write(line);
+                out.println();
 
                 totalLines++;
                 if (maxLines > 0 && totalLines >= maxLines) {
@@ -263,29 +466,29 @@ public class RailScheduleDownloader implements Callable<Integer>  {
                     break;
                 }
             }
+            index = lines.getPosition();
         }
         return totalLines;
     }
 
-    private int saveFile(HttpURLConnection httpConn, String saveFilePath) throws IOException {
-        int totalLines = 0;
-        try (GZIPInputStream uncompressStream = new GZIPInputStream(httpConn.getInputStream());
-             Reader decoder = new InputStreamReader(uncompressStream, StandardCharsets.US_ASCII);
-             BufferedReader buffered = new BufferedReader(decoder);
-             BufferedWriter writer = new BufferedWriter(new FileWriter(saveFilePath))) {
-
-            while (buffered.ready()) {
-                String line = buffered.readLine();
+    private long saveFile(InputStream content, String saveFilePath) throws IOException {
+        long totalLines = 0;
+        try (LineSplitter lines = new LineSplitter(content);
+             OutputStream writer = new BufferedOutputStream(new FileOutputStream(saveFilePath))) {
 
+            byte[] line;
+            while ((line = lines.readLine()) != null) {
                 if (save) {
                     writer.write(line);
-                    writer.newLine();
+                    writer.write('\n');
                 }
                 if (verbose) {
-                    System.out.println(line);
+                    System.out.write(line);
+                    System.out.println();
                 }
                 totalLines++;
             }
+            index = lines.getPosition();
         }
 
         if (save)
@@ -0,0 +1,196 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.common.config.ConfigException;
+
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides when to check a file for a new version again.
+ * <p>
+ * After a check that found the file unchanged the interval doubles, from the minimum up to the maximum interval, and
+ * it starts over at the minimum once a new file has been read. A check is never due before the response of the
+ * last request goes stale according to its {@code Cache-Control: max-age} or {@code Expires} header. If publication
+ * windows are configured, checks are moved to the start of the next window.
+ */
+public class CheckScheduler {
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|[,\\s])max-age\\s*=\\s*\"?(\\d+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NO_CACHE = Pattern.compile("(?:^|[,\\s])no-(?:cache|store)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WINDOW = Pattern.compile("(\\d{1,2}:\\d{2})-(\\d{1,2}:\\d{2})");
+    // ages beyond this are taken as this, as RFC 9111 asks
+    private static final long MAX_AGE_SECONDS = 1L << 31;
+
+    private final long minInterval;
+    private final long maxInterval;
+    private final List<LocalTime[]> windows;
+    private final ZoneId zone;
+
+    private long interval;
+    private long nextCheck = 0;
+    private long freshUntil = 0;
+
+    /**
+     * @param minInterval first interval after a new file, capped at maxInterval
+     * @param windows daily publication windows as {@code HH:mm-HH:mm}, empty to check at any time
+     */
+    public CheckScheduler(long minInterval, long maxInterval, List<String> windows, ZoneId zone) {
+        this.minInterval = Math.min(minInterval, maxInterval);
+        this.maxInterval = maxInterval;
+        this.windows = parseWindows(windows);
+        this.zone = zone;
+        this.interval = this.minInterval;
+    }
+
+    /**
+     * @throws ConfigException if a window is not of the form {@code HH:mm-HH:mm}
+     */
+    static List<LocalTime[]> parseWindows(List<String> windows) {
+        List<LocalTime[]> parsed = new ArrayList<>();
+        for (String window : windows) {
+            Matcher matcher = WINDOW.matcher(window.trim());
+            try {
+                if (!matcher.matches()) {
+                    throw new DateTimeParseException("Expected HH:mm-HH:mm", window, 0);
+                }
+                parsed.add(new LocalTime[]{LocalTime.parse(pad(matcher.group(1))), LocalTime.parse(pad(matcher.group(2)))});
+            } catch (DateTimeParseException e) {
+                throw new ConfigException(HttpCompressedSourceConfiguration.CHECK_WINDOWS_CONFIG, window, "Expected HH:mm-HH:mm");
+            }
+        }
+        return parsed;
+    }
+
+    private static String pad(String time) {
+        return time.length() == 4 ? "0" + time : time;
+    }
+
+    public boolean isDue(long now) {
+        return now >= nextCheck;
+    }
+
+    /**
+     * @return the time of the next check in milliseconds since the epoch
+     */
+    public long getNextCheck() {
+        return nextCheck;
+    }
+
+    /**
+     * Takes note of how long the response may be cached, from {@code Cache-Control: max-age} (less {@code Age}) or
+     * from {@code Expires} (relative to {@code Date}).
+     */
+    public void cacheHeaders(HttpResponse<?> response, long now) {
+        freshUntil = 0;
+
+        String cacheControl = HttpTransport.header(response, "Cache-Control");
+        if (cacheControl != null) {
+            if (NO_CACHE.matcher(cacheControl).find()) {
+                return;
+            }
+            Matcher matcher = MAX_AGE.matcher(cacheControl);
+            if (matcher.find()) {
+                freshUntil = now + (seconds(matcher.group(1)) - seconds(HttpTransport.header(response, "Age"))) * 1000;
+                return;
+            }
+        }
+
+        Long expires = parseDate(HttpTransport.header(response, "Expires"));
+        if (expires != null) {
+            Long date = parseDate(HttpTransport.header(response, "Date"));
+            freshUntil = now + expires - (date != null ? date : now);
+        }
+    }
+
+    /**
+     * The file had not changed: back off before the next check.
+     */
+    public void unchanged(long now) {
+        schedule(now + interval);
+        interval = Math.min(interval * 2, maxInterval);
+    }
+
+    /**
+     * A new version of the file has been read to its end, the next one will not be there before long.
+     */
+    public void completed(long now) {
+        interval = minInterval;
+        schedule(now + interval);
+        interval = Math.min(interval * 2, maxInterval);
+    }
+
+    /**
+     * A file has been read to its end and the next one may be there already: check for it straight away.
+     */
+    public void catchUp(long now) {
+        interval = minInterval;
+        nextCheck = now;
+    }
+
+    private void schedule(long earliest) {
+        nextCheck = inWindow(Math.max(earliest, freshUntil));
+    }
+
+    /**
+     * @return the time itself if it is in a publication window, otherwise the start of the next window
+     */
+    long inWindow(long time) {
+        if (windows.isEmpty()) {
+            return time;
+        }
+        ZonedDateTime at = Instant.ofEpochMilli(time).atZone(zone);
+        LocalTime clock = at.toLocalTime();
+        ZonedDateTime next = null;
+        for (LocalTime[] window : windows) {
+            LocalTime start = window[0];
+            LocalTime end = window[1];
+            boolean inside = start.isBefore(end)
+                    ? !clock.isBefore(start) && clock.isBefore(end)
+                    : !clock.isBefore(start) || clock.isBefore(end); // window across midnight
+            if (inside) {
+                return time;
+            }
+            ZonedDateTime candidate = at.with(start);
+            if (!candidate.isAfter(at)) {
+                candidate = candidate.plusDays(1);
+            }
+            if (next == null || candidate.isBefore(next)) {
+                next = candidate;
+            }
+        }
+        return next.toInstant().toEpochMilli();
+    }
+
+    /**
+     * @return the delta-seconds, 0 if they are missing or not a number
+     */
+    private static long seconds(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        String digits = value.trim();
+        if (!digits.chars().allMatch(Character::isDigit)) {
+            return 0;
+        }
+        return digits.length() > 10 ? MAX_AGE_SECONDS : Math.min(Long.parseLong(digits), MAX_AGE_SECONDS);
+    }
+
+    private static Long parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
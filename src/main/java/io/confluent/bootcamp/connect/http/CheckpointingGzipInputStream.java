@@ -0,0 +1,487 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a (possibly multi-member) gzip stream with a pure Java inflater and records a {@link GzipCheckpoint}
+ * roughly every {@code checkpointInterval} compressed bytes.
+ * <p>
+ * java.util.zip.Inflater does not report deflate block boundaries and cannot start in the middle of a byte,
+ * which is why the inflation is done here. A stream created from a checkpoint expects the compressed data
+ * starting at {@link GzipCheckpoint#getByteOffset()}, for example the body of an HTTP Range request.
+ */
+public class CheckpointingGzipInputStream extends InputStream {
+    static final int WINDOW_SIZE = DeflateTables.WINDOW_SIZE;
+
+    private static final int MAX_MATCH = DeflateTables.MAX_MATCH;
+    private static final int OUTPUT_CHUNK = 64 * 1024;
+
+    private enum State { MEMBER_HEADER, BLOCK_HEADER, STORED, HUFFMAN, MEMBER_TRAILER, DONE }
+
+    private final InputStream in;
+    private final long checkpointInterval;
+
+    // compressed input
+    private final byte[] inBuffer = new byte[64 * 1024];
+    private int inPosition = 0;
+    private int inLimit = 0;
+    private long inBase;
+    private long bitBuffer = 0;
+    private int bitCount = 0;
+
+    // uncompressed output, the first WINDOW_SIZE bytes hold the history once the buffer has been slid
+    private final byte[] out = new byte[WINDOW_SIZE + OUTPUT_CHUNK];
+    private int outPosition = 0;
+    private int readPosition = 0;
+    private long totalOut;
+
+    private State state;
+    private boolean finalBlock = false;
+    private long storedRemaining = 0;
+    private DeflateTables.Huffman literals;
+    private DeflateTables.Huffman distances;
+
+    private final CRC32 crc = new CRC32();
+    private long memberSize = 0;
+    private boolean verifyMember;
+
+    private final Deque<GzipCheckpoint> checkpoints = new ArrayDeque<>();
+    private long lastCheckpointBit;
+
+    /**
+     * Reads a gzip stream from the start.
+     */
+    public CheckpointingGzipInputStream(InputStream in, long checkpointInterval) {
+        this.in = in;
+        this.checkpointInterval = checkpointInterval;
+        this.inBase = 0;
+        this.totalOut = 0;
+        this.state = State.MEMBER_HEADER;
+        this.verifyMember = true;
+        this.lastCheckpointBit = 0;
+    }
+
+    /**
+     * Resumes inflating at the given checkpoint. {@code in} must start at {@link GzipCheckpoint#getByteOffset()}.
+     */
+    public CheckpointingGzipInputStream(InputStream in, GzipCheckpoint checkpoint, long checkpointInterval) throws IOException {
+        this.in = in;
+        this.checkpointInterval = checkpointInterval;
+        this.inBase = checkpoint.getByteOffset();
+        this.totalOut = checkpoint.getPosition();
+        this.state = State.BLOCK_HEADER;
+        // CRC and length of the current member cannot be verified without its beginning
+        this.verifyMember = false;
+        this.lastCheckpointBit = checkpoint.getBitOffset();
+
+        byte[] window = checkpoint.getWindow();
+        System.arraycopy(window, 0, out, 0, window.length);
+        outPosition = window.length;
+        readPosition = window.length;
+
+        bits((int) (checkpoint.getBitOffset() & 7));
+        checkpoints.add(checkpoint);
+    }
+
+    /**
+     * @return number of uncompressed bytes produced so far, including those preceding a resume checkpoint
+     */
+    public long getPosition() {
+        return totalOut - (outPosition - readPosition);
+    }
+
+    /**
+     * @return the latest checkpoint at or before the given uncompressed position, or null if there is none.
+     * Older checkpoints are discarded, so positions passed in must not decrease.
+     */
+    public GzipCheckpoint checkpointFor(long position) {
+        while (checkpoints.size() > 1) {
+            var iterator = checkpoints.iterator();
+            iterator.next();
+            if (iterator.next().getPosition() <= position) {
+                checkpoints.removeFirst();
+            }
+            else {
+                break;
+            }
+        }
+        GzipCheckpoint first = checkpoints.peekFirst();
+        return first != null && first.getPosition() <= position ? first : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (readPosition == outPosition) {
+            if (state == State.DONE) {
+                return -1;
+            }
+            advance();
+        }
+
+        int n = Math.min(len, outPosition - readPosition);
+        System.arraycopy(out, readPosition, b, off, n);
+        if (verifyMember) {
+            crc.update(out, readPosition, n);
+        }
+        readPosition += n;
+
+        return n;
+    }
+
+    @Override
+    public int available() {
+        // like InflaterInputStream, signal that more data may follow until the end has been reached
+        return readPosition < outPosition ? outPosition - readPosition : (state == State.DONE ? 0 : 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        state = State.DONE;
+        in.close();
+    }
+
+    /**
+     * Produces more output or moves on to the next stage of the stream. Only called once all output has been read.
+     */
+    private void advance() throws IOException {
+        if (outPosition > out.length - MAX_MATCH) {
+            System.arraycopy(out, outPosition - WINDOW_SIZE, out, 0, WINDOW_SIZE);
+            outPosition = WINDOW_SIZE;
+            readPosition = WINDOW_SIZE;
+        }
+
+        switch (state) {
+            case MEMBER_HEADER:
+                readMemberHeader();
+                break;
+            case BLOCK_HEADER:
+                if (finalBlock) {
+                    state = State.MEMBER_TRAILER;
+                }
+                else {
+                    maybeCheckpoint();
+                    readBlockHeader();
+                }
+                break;
+            case STORED:
+                copyStored();
+                break;
+            case HUFFMAN:
+                inflateCompressed();
+                break;
+            case MEMBER_TRAILER:
+                readMemberTrailer();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void maybeCheckpoint() {
+        long bitOffset = bitPosition();
+        if (checkpointInterval > 0 && bitOffset - lastCheckpointBit >= checkpointInterval * 8) {
+            int windowStart = Math.max(0, outPosition - WINDOW_SIZE);
+            byte[] window = Arrays.copyOfRange(out, windowStart, outPosition);
+            checkpoints.addLast(new GzipCheckpoint(bitOffset, totalOut, window));
+            lastCheckpointBit = bitOffset;
+        }
+    }
+
+    private long bitPosition() {
+        return (inBase + inPosition) * 8 - bitCount;
+    }
+
+    private void readMemberHeader() throws IOException {
+        if (bits(8) != 0x1f || bits(8) != 0x8b) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (bits(8) != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = bits(8);
+        bits(16); // modification time
+        bits(16);
+        bits(8); // extra flags
+        bits(8); // operating system
+
+        if ((flags & 4) != 0) { // FEXTRA
+            int length = bits(16);
+            for (int i = 0; i < length; i++) {
+                bits(8);
+            }
+        }
+        if ((flags & 8) != 0) { // FNAME
+            while (bits(8) != 0) { }
+        }
+        if ((flags & 16) != 0) { // FCOMMENT
+            while (bits(8) != 0) { }
+        }
+        if ((flags & 2) != 0) { // FHCRC
+            bits(16);
+        }
+
+        crc.reset();
+        memberSize = 0;
+        finalBlock = false;
+        state = State.BLOCK_HEADER;
+    }
+
+    private void readMemberTrailer() throws IOException {
+        bits(bitCount & 7);
+        long expectedCrc = bits(16) | ((long) bits(16) << 16);
+        long expectedSize = bits(16) | ((long) bits(16) << 16);
+
+        if (verifyMember) {
+            if (expectedCrc != crc.getValue()) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+            if (expectedSize != (memberSize & 0xFFFFFFFFL)) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+        }
+        verifyMember = true;
+
+        // Another member may follow, anything else is ignored just like GZIPInputStream does
+        fillBits();
+        if (bitCount >= 16 && (bitBuffer & 0xFFFF) == 0x8b1f) {
+            state = State.MEMBER_HEADER;
+        }
+        else {
+            state = State.DONE;
+        }
+    }
+
+    private void readBlockHeader() throws IOException {
+        finalBlock = bits(1) == 1;
+        int type = bits(2);
+
+        switch (type) {
+            case 0:
+                bits(bitCount & 7);
+                int length = bits(16);
+                int complement = bits(16);
+                if ((length ^ 0xFFFF) != complement) {
+                    throw new ZipException("invalid stored block lengths");
+                }
+                storedRemaining = length;
+                state = State.STORED;
+                break;
+            case 1:
+                literals = DeflateTables.FIXED_LITERALS;
+                distances = DeflateTables.FIXED_DISTANCES;
+                state = State.HUFFMAN;
+                break;
+            case 2:
+                readDynamicTables();
+                state = State.HUFFMAN;
+                break;
+            default:
+                throw new ZipException("invalid block type");
+        }
+    }
+
+    private void readDynamicTables() throws IOException {
+        int literalCount = bits(5) + 257;
+        int distanceCount = bits(5) + 1;
+        int codeLengthCount = bits(4) + 4;
+
+        int[] codeLengthLengths = new int[19];
+        for (int i = 0; i < codeLengthCount; i++) {
+            codeLengthLengths[DeflateTables.CODE_LENGTH_ORDER[i]] = bits(3);
+        }
+        DeflateTables.Huffman codeLengths = DeflateTables.Huffman.build(codeLengthLengths, 19);
+
+        int[] lengths = new int[literalCount + distanceCount];
+        int index = 0;
+        while (index < lengths.length) {
+            int symbol = decode(codeLengths);
+            if (symbol < 16) {
+                lengths[index++] = symbol;
+                continue;
+            }
+
+            int value = 0;
+            int repeat;
+            if (symbol == 16) {
+                if (index == 0) {
+                    throw new ZipException("invalid bit length repeat");
+                }
+                value = lengths[index - 1];
+                repeat = 3 + bits(2);
+            }
+            else if (symbol == 17) {
+                repeat = 3 + bits(3);
+            }
+            else {
+                repeat = 11 + bits(7);
+            }
+            if (index + repeat > lengths.length) {
+                throw new ZipException("invalid bit length repeat");
+            }
+            Arrays.fill(lengths, index, index + repeat, value);
+            index += repeat;
+        }
+
+        if (lengths[256] == 0) {
+            throw new ZipException("invalid code -- missing end-of-block");
+        }
+        literals = DeflateTables.Huffman.build(lengths, literalCount);
+        distances = DeflateTables.Huffman.build(Arrays.copyOfRange(lengths, literalCount, lengths.length), distanceCount);
+    }
+
+    private void copyStored() throws IOException {
+        int start = outPosition;
+        while (storedRemaining > 0 && outPosition < out.length) {
+            if (bitCount >= 8) {
+                out[outPosition++] = (byte) bits(8);
+                storedRemaining--;
+            }
+            else if (inPosition < inLimit) {
+                int n = (int) Math.min(storedRemaining, Math.min(inLimit - inPosition, out.length - outPosition));
+                System.arraycopy(inBuffer, inPosition, out, outPosition, n);
+                inPosition += n;
+                outPosition += n;
+                storedRemaining -= n;
+            }
+            else if (!refill()) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+        }
+        long produced = outPosition - start;
+        totalOut += produced;
+        memberSize += produced;
+
+        if (storedRemaining == 0) {
+            state = State.BLOCK_HEADER;
+        }
+    }
+
+    private void inflateCompressed() throws IOException {
+        final byte[] out = this.out;
+        final int limit = out.length - MAX_MATCH;
+        int position = outPosition;
+
+        while (position <= limit) {
+            if (bitCount < 48) {
+                fillBits();
+            }
+            int symbol = decode(literals);
+
+            if (symbol < 256) {
+                out[position++] = (byte) symbol;
+            }
+            else if (symbol == 256) {
+                state = State.BLOCK_HEADER;
+                break;
+            }
+            else {
+                symbol -= 257;
+                if (symbol >= 29) {
+                    throw new ZipException("invalid literal/length code");
+                }
+                int length = DeflateTables.LENGTH_BASE[symbol] + bits(DeflateTables.LENGTH_EXTRA[symbol]);
+
+                int distanceSymbol = decode(distances);
+                if (distanceSymbol >= 30) {
+                    throw new ZipException("invalid distance code");
+                }
+                int distance = DeflateTables.DISTANCE_BASE[distanceSymbol] + bits(DeflateTables.DISTANCE_EXTRA[distanceSymbol]);
+                if (distance > position) {
+                    throw new ZipException("invalid distance too far back");
+                }
+
+                int from = position - distance;
+                if (distance >= length) {
+                    System.arraycopy(out, from, out, position, length);
+                    position += length;
+                }
+                else {
+                    for (int i = 0; i < length; i++) {
+                        out[position++] = out[from++];
+                    }
+                }
+            }
+        }
+
+        long produced = position - outPosition;
+        totalOut += produced;
+        memberSize += produced;
+        outPosition = position;
+    }
+
+    private int decode(DeflateTables.Huffman huffman) throws IOException {
+        if (bitCount < huffman.maxBits) {
+            fillBits();
+        }
+        int entry = huffman.table[(int) (bitBuffer & huffman.mask)];
+        int length = entry & 15;
+        if (length == 0) {
+            throw new ZipException("invalid code");
+        }
+        if (length > bitCount) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        bitBuffer >>>= length;
+        bitCount -= length;
+
+        return entry >>> 4;
+    }
+
+    private int bits(int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+        if (bitCount < count) {
+            fillBits();
+            if (bitCount < count) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+        }
+        int value = (int) (bitBuffer & ((1L << count) - 1));
+        bitBuffer >>>= count;
+        bitCount -= count;
+
+        return value;
+    }
+
+    private void fillBits() throws IOException {
+        while (bitCount <= 56) {
+            if (inPosition == inLimit && !refill()) {
+                return;
+            }
+            bitBuffer |= (long) (inBuffer[inPosition++] & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    private boolean refill() throws IOException {
+        inBase += inLimit;
+        inPosition = 0;
+        inLimit = 0;
+
+        int n = in.read(inBuffer, 0, inBuffer.length);
+        if (n <= 0) {
+            return false;
+        }
+        inLimit = n;
+
+        return true;
+    }
+}
@@ -0,0 +1,90 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+
+import java.util.Map;
+
+/**
+ * Value schemas of the record types of the SCHEDULE extracts, as documented by Network Rail: the header
+ * {@code JsonTimetableV1}, {@code TiplocV1}, {@code JsonAssociationV1} and {@code JsonScheduleV1}.
+ * <p>
+ * Like the inferred ones, each is a struct named after the type with the type as its only field, and every field is
+ * optional, as deletes only carry the fields that identify the record. Codes and times are strings, also where they
+ * look like numbers, only the timestamp and sequence of the header and the course indicator of a schedule are numbers.
+ */
+final class CifSchemas {
+    static final Schema TIMETABLE = record("JsonTimetableV1", SchemaBuilder.struct().optional()
+            .field("classification", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("timestamp", Schema.OPTIONAL_INT64_SCHEMA)
+            .field("owner", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("Sender", SchemaBuilder.struct().optional()
+                    .field("organisation", Schema.OPTIONAL_STRING_SCHEMA)
+                    .field("application", Schema.OPTIONAL_STRING_SCHEMA)
+                    .field("component", Schema.OPTIONAL_STRING_SCHEMA)
+                    .build())
+            .field("Metadata", SchemaBuilder.struct().optional()
+                    .field("type", Schema.OPTIONAL_STRING_SCHEMA)
+                    .field("sequence", Schema.OPTIONAL_INT64_SCHEMA)
+                    .build())
+            .build());
+
+    static final Schema TIPLOC = record("TiplocV1", strings(SchemaBuilder.struct().optional(),
+            "transaction_type", "tiploc_code", "nalco", "stanox", "crs_code", "description", "tps_description")
+            .build());
+
+    static final Schema ASSOCIATION = record("JsonAssociationV1", strings(SchemaBuilder.struct().optional(),
+            "transaction_type", "main_train_uid", "assoc_train_uid", "assoc_start_date", "assoc_end_date", "assoc_days",
+            "category", "date_indicator", "location", "base_location_suffix", "assoc_location_suffix", "diagram_type",
+            "CIF_stp_indicator")
+            .build());
+
+    private static final Schema SCHEDULE_LOCATION = strings(SchemaBuilder.struct().optional(),
+            "location_type", "record_identity", "tiploc_code", "tiploc_instance", "arrival", "departure", "pass",
+            "public_arrival", "public_departure", "platform", "line", "path", "engineering_allowance",
+            "pathing_allowance", "performance_allowance")
+            .build();
+
+    private static final Schema SCHEDULE_SEGMENT = strings(strings(SchemaBuilder.struct().optional(),
+            "signalling_id", "CIF_train_category", "CIF_headcode")
+            .field("CIF_course_indicator", Schema.OPTIONAL_INT64_SCHEMA),
+            "CIF_train_service_code", "CIF_business_sector", "CIF_power_type", "CIF_timing_load", "CIF_speed",
+            "CIF_operating_characteristics", "CIF_train_class", "CIF_sleepers", "CIF_reservations",
+            "CIF_connection_indicator", "CIF_catering_code", "CIF_service_branding")
+            .field("schedule_location", SchemaBuilder.array(SCHEDULE_LOCATION).optional().build())
+            .build();
+
+    static final Schema SCHEDULE = record("JsonScheduleV1", strings(SchemaBuilder.struct().optional(),
+            "CIF_bank_holiday_running", "CIF_stp_indicator", "CIF_train_uid", "applicable_timetable", "atoc_code")
+            .field("new_schedule_segment", strings(SchemaBuilder.struct().optional(), "traction_class", "uic_code").build())
+            .field("schedule_days_runs", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("schedule_end_date", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("schedule_segment", SCHEDULE_SEGMENT)
+            .field("schedule_start_date", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("train_status", Schema.OPTIONAL_STRING_SCHEMA)
+            .field("transaction_type", Schema.OPTIONAL_STRING_SCHEMA)
+            .build());
+
+    /**
+     * The declared schemas by record type.
+     */
+    static final Map<String, Schema> SCHEMAS = Map.of(
+            TIMETABLE.name(), TIMETABLE,
+            TIPLOC.name(), TIPLOC,
+            ASSOCIATION.name(), ASSOCIATION,
+            SCHEDULE.name(), SCHEDULE);
+
+    private CifSchemas() {
+    }
+
+    private static Schema record(String type, Schema content) {
+        return SchemaBuilder.struct().optional().name(type).field(type, content).build();
+    }
+
+    private static SchemaBuilder strings(SchemaBuilder builder, String... names) {
+        for (String name : names) {
+            builder.field(name, Schema.OPTIONAL_STRING_SCHEMA);
+        }
+        return builder;
+    }
+}
@@ -0,0 +1,115 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Reads the lines of a compressed stream on the calling thread.
+ */
+public class DecompressingLineReader implements LineReader {
+    private final LineSplitter splitter;
+    private final CheckpointingGzipInputStream checkpointStream;
+    private final HashingInputStream hashingStream;
+
+    private boolean finished = false;
+    private String contentHash = null;
+
+    /**
+     * @param checkpointInterval compressed bytes between checkpoints, 0 uses the JDK inflater without checkpoints
+     * @param hashContent whether to compute the hash of the compressed file
+     */
+    public DecompressingLineReader(InputStream compressed, long checkpointInterval, boolean hashContent) throws IOException {
+        this(compressed, DecompressionCodecs.GZIP, checkpointInterval, hashContent, null, 1, 0);
+    }
+
+    /**
+     * @param checkpointInterval compressed bytes between checkpoints, takes precedence over parallel inflation.
+     *                           Checkpoints and parallel inflation are only available for gzip.
+     * @param inflaters executor with {@code threads} threads to inflate on, or null to inflate on the calling thread
+     * @param chunkSize compressed bytes per chunk inflated in parallel
+     */
+    public DecompressingLineReader(InputStream compressed, DecompressionCodec codec, long checkpointInterval, boolean hashContent,
+                                   ExecutorService inflaters, int threads, int chunkSize) throws IOException {
+        if (hashContent) {
+            hashingStream = new HashingInputStream(compressed);
+            compressed = hashingStream;
+        }
+        else {
+            hashingStream = null;
+        }
+
+        InputStream uncompressStream;
+        if (codec == DecompressionCodecs.GZIP && checkpointInterval > 0) {
+            checkpointStream = new CheckpointingGzipInputStream(compressed, checkpointInterval);
+            uncompressStream = checkpointStream;
+        }
+        else if (codec == DecompressionCodecs.GZIP && inflaters != null) {
+            checkpointStream = null;
+            uncompressStream = new ParallelGzipInputStream(compressed, inflaters, threads, chunkSize);
+        }
+        else {
+            checkpointStream = null;
+            uncompressStream = codec.decompress(compressed);
+        }
+        splitter = new LineSplitter(uncompressStream);
+    }
+
+    /**
+     * Continues reading a stream resumed from a checkpoint that has already been positioned at a line boundary.
+     */
+    public DecompressingLineReader(CheckpointingGzipInputStream resumed, long position) {
+        checkpointStream = resumed;
+        hashingStream = null;
+        splitter = new LineSplitter(resumed, position);
+    }
+
+    @Override
+    public byte[] readLine() throws IOException {
+        if (finished) {
+            return null;
+        }
+        byte[] line = splitter.readLine();
+        if (line == null) {
+            finished = true;
+            if (hashingStream != null) {
+                // the inflater may stop short of the end of the compressed stream
+                hashingStream.transferTo(OutputStream.nullOutputStream());
+                contentHash = hashingStream.getHash();
+            }
+        }
+        return line;
+    }
+
+    @Override
+    public boolean ready() {
+        // reads block until data arrives, so there is never a reason to stop early
+        return true;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public long getPosition() {
+        return splitter.getPosition();
+    }
+
+    @Override
+    public GzipCheckpoint getCheckpoint() {
+        return checkpointStream != null ? checkpointStream.checkpointFor(splitter.getPosition()) : null;
+    }
+
+    @Override
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    @Override
+    public void close() throws IOException {
+        splitter.close();
+    }
+}
@@ -0,0 +1,35 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A compression format files can be downloaded in. Besides the built-in codecs in {@link DecompressionCodecs},
+ * codecs can be added by listing them in {@code META-INF/services/io.confluent.bootcamp.connect.http.DecompressionCodec}.
+ */
+public interface DecompressionCodec {
+    /**
+     * @return the name used in compression.codec, lower case
+     */
+    String name();
+
+    /**
+     * @return the file name extension including the dot, empty if it has none
+     */
+    String extension();
+
+    /**
+     * @return whether the bytes the stream starts with identify this format
+     */
+    boolean matches(byte[] magic, int length);
+
+    /**
+     * @return whether the value of a {@code Content-Encoding} or {@code Content-Type} header stands for this format
+     */
+    boolean matchesMediaType(String value);
+
+    /**
+     * @return the uncompressed content, which reads all concatenated streams or frames to the end of the input
+     */
+    InputStream decompress(InputStream compressed) throws IOException;
+}
@@ -0,0 +1,210 @@
+package io.confluent.bootcamp.connect.http;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.kafka.common.config.ConfigException;
+import org.tukaani.xz.XZInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The known codecs and how to pick one for a download: by name, by the magic bytes the content starts with, or by
+ * the {@code Content-Encoding} or {@code Content-Type} of the response.
+ */
+public final class DecompressionCodecs {
+    public static final String AUTO = "auto";
+    // longest magic number of the codecs, xz's
+    public static final int MAGIC_LENGTH = 6;
+
+    public static final DecompressionCodec GZIP = new Codec("gzip", ".gz", new byte[]{0x1f, (byte) 0x8b},
+            "gzip", "x-gzip", "application/gzip", "application/x-gzip") {
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            return new GZIPInputStream(compressed, 64 * 1024);
+        }
+    };
+
+    public static final DecompressionCodec ZSTD = new Codec("zstd", ".zst", new byte[]{0x28, (byte) 0xb5, 0x2f, (byte) 0xfd},
+            "zstd", "application/zstd") {
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            return new ZstdInputStream(compressed);
+        }
+    };
+
+    public static final DecompressionCodec BZIP2 = new Codec("bzip2", ".bz2", new byte[]{'B', 'Z', 'h'},
+            "bzip2", "x-bzip2", "application/x-bzip2") {
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            return new BZip2CompressorInputStream(compressed, true);
+        }
+    };
+
+    public static final DecompressionCodec XZ = new Codec("xz", ".xz", new byte[]{(byte) 0xfd, '7', 'z', 'X', 'Z', 0},
+            "xz", "application/x-xz") {
+        @Override
+        public InputStream decompress(InputStream compressed) throws IOException {
+            return new XZInputStream(compressed);
+        }
+    };
+
+    public static final DecompressionCodec IDENTITY = new Codec("identity", "", new byte[0]) {
+        @Override
+        public boolean matches(byte[] magic, int length) {
+            // anything that is not compressed in a known format is taken as it is
+            return false;
+        }
+
+        @Override
+        public InputStream decompress(InputStream compressed) {
+            return compressed;
+        }
+    };
+
+    private static final Map<String, DecompressionCodec> CODECS = new LinkedHashMap<>();
+
+    static {
+        for (DecompressionCodec codec : List.of(GZIP, ZSTD, BZIP2, XZ, IDENTITY)) {
+            CODECS.put(codec.name(), codec);
+        }
+        for (DecompressionCodec codec : ServiceLoader.load(DecompressionCodec.class, DecompressionCodecs.class.getClassLoader())) {
+            CODECS.putIfAbsent(codec.name(), codec);
+        }
+    }
+
+    private DecompressionCodecs() {
+    }
+
+    /**
+     * @return the names of all codecs, followed by auto
+     */
+    public static List<String> names() {
+        List<String> names = new ArrayList<>(CODECS.keySet());
+        names.add(AUTO);
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * @return the codec, or null for auto
+     * @throws ConfigException if there is no codec of that name
+     */
+    public static DecompressionCodec forName(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        if (AUTO.equals(key)) {
+            return null;
+        }
+        DecompressionCodec codec = CODECS.get(key);
+        if (codec == null) {
+            throw new ConfigException(HttpCompressedSourceConfiguration.COMPRESSION_CODEC_CONFIG, name, "Expected one of " + names());
+        }
+        return codec;
+    }
+
+    /**
+     * Picks the codec of a download: the configured one if there is one, otherwise the one whose magic number the
+     * content starts with, otherwise the one named by the {@code Content-Encoding} or {@code Content-Type} of the
+     * response. The content goes first as servers often label any file as gzip. Content in none of these is read as it is.
+     *
+     * @param in the body, which must support mark and reset so that its first bytes can be looked at
+     */
+    public static DecompressionCodec select(DecompressionCodec configured, HttpResponse<?> response, InputStream in) throws IOException {
+        if (configured != null) {
+            return configured;
+        }
+        DecompressionCodec codec = detect(in);
+        if (codec == IDENTITY) {
+            codec = forMediaType(HttpTransport.header(response, "Content-Encoding"));
+        }
+        if (codec == null) {
+            codec = forMediaType(HttpTransport.header(response, "Content-Type"));
+        }
+        return codec != null ? codec : IDENTITY;
+    }
+
+    /**
+     * @return the codec whose magic number the stream starts with, identity if none does. The stream is reset to where it was.
+     */
+    public static DecompressionCodec detect(InputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC_LENGTH];
+        in.mark(MAGIC_LENGTH);
+        int length = in.readNBytes(magic, 0, MAGIC_LENGTH);
+        in.reset();
+        for (DecompressionCodec codec : CODECS.values()) {
+            if (codec.matches(magic, length)) {
+                return codec;
+            }
+        }
+        return IDENTITY;
+    }
+
+    private static DecompressionCodec forMediaType(String value) {
+        if (value == null) {
+            return null;
+        }
+        // leave out parameters such as charset
+        String type = value.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        for (DecompressionCodec codec : CODECS.values()) {
+            if (codec.matchesMediaType(type)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    private abstract static class Codec implements DecompressionCodec {
+        private final String name;
+        private final String extension;
+        private final byte[] magic;
+        private final List<String> mediaTypes;
+
+        Codec(String name, String extension, byte[] magic, String... mediaTypes) {
+            this.name = name;
+            this.extension = extension;
+            this.magic = magic;
+            this.mediaTypes = List.of(mediaTypes);
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String extension() {
+            return extension;
+        }
+
+        @Override
+        public boolean matches(byte[] bytes, int length) {
+            if (length < magic.length) {
+                return false;
+            }
+            for (int i = 0; i < magic.length; i++) {
+                if (bytes[i] != magic[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean matchesMediaType(String value) {
+            return mediaTypes.contains(value);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
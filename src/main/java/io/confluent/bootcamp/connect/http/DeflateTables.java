@@ -0,0 +1,124 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * Constants and Huffman decoding tables of the deflate format (RFC 1951), shared by the Java inflaters.
+ */
+final class DeflateTables {
+    static final int WINDOW_SIZE = 32 * 1024;
+    static final int MAX_MATCH = 258;
+
+    static final int[] LENGTH_BASE = {
+            3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31,
+            35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258};
+    static final int[] LENGTH_EXTRA = {
+            0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2,
+            3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0};
+    static final int[] DISTANCE_BASE = {
+            1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193,
+            257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097, 6145, 8193, 12289, 16385, 24577};
+    static final int[] DISTANCE_EXTRA = {
+            0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6,
+            7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13};
+    static final int[] CODE_LENGTH_ORDER = {
+            16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15};
+
+    static final Huffman FIXED_LITERALS;
+    static final Huffman FIXED_DISTANCES;
+
+    static {
+        int[] lengths = new int[288];
+        Arrays.fill(lengths, 0, 144, 8);
+        Arrays.fill(lengths, 144, 256, 9);
+        Arrays.fill(lengths, 256, 280, 7);
+        Arrays.fill(lengths, 280, 288, 8);
+        try {
+            FIXED_LITERALS = Huffman.build(lengths, 288);
+
+            Arrays.fill(lengths, 0, 30, 5);
+            FIXED_DISTANCES = Huffman.build(lengths, 30);
+        } catch (ZipException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private DeflateTables() { }
+
+    /**
+     * Checks the Kraft inequality of a set of code lengths, as zlib does before building a table.
+     *
+     * @return 0 for a complete code, the number of unused codes of maximum length for an incomplete code,
+     * or -1 if the code is over-subscribed
+     */
+    static int unusedCodes(int[] lengths, int offset, int count) {
+        int[] lengthCounts = new int[16];
+        for (int i = offset; i < offset + count; i++) {
+            lengthCounts[lengths[i]]++;
+        }
+        int left = 1;
+        for (int bits = 1; bits <= 15; bits++) {
+            left <<= 1;
+            left -= lengthCounts[bits];
+            if (left < 0) {
+                return -1;
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Canonical Huffman code decoded with a single lookup table indexed by the next {@code maxBits} input bits.
+     * Each entry holds the symbol in the upper bits and the code length in the lowest four bits.
+     */
+    static final class Huffman {
+        final int[] table;
+        final int maxBits;
+        final int mask;
+
+        private Huffman(int[] table, int maxBits) {
+            this.table = table;
+            this.maxBits = maxBits;
+            this.mask = (1 << maxBits) - 1;
+        }
+
+        static Huffman build(int[] lengths, int count) throws ZipException {
+            int maxBits = 0;
+            int[] lengthCounts = new int[16];
+            for (int i = 0; i < count; i++) {
+                lengthCounts[lengths[i]]++;
+                maxBits = Math.max(maxBits, lengths[i]);
+            }
+            lengthCounts[0] = 0;
+            if (maxBits == 0) {
+                // only allowed for a distance code of a block that contains literals only
+                return new Huffman(new int[2], 1);
+            }
+
+            int[] nextCode = new int[16];
+            int code = 0;
+            for (int bits = 1; bits <= 15; bits++) {
+                code = (code + lengthCounts[bits - 1]) << 1;
+                nextCode[bits] = code;
+            }
+
+            int[] table = new int[1 << maxBits];
+            for (int symbol = 0; symbol < count; symbol++) {
+                int length = lengths[symbol];
+                if (length == 0) {
+                    continue;
+                }
+                if (nextCode[length] >= (1 << length)) {
+                    throw new ZipException("invalid code lengths set");
+                }
+                int reversed = Integer.reverse(nextCode[length]++) >>> (32 - length);
+                int entry = (symbol << 4) | length;
+                for (int i = reversed; i < table.length; i += 1 << length) {
+                    table[i] = entry;
+                }
+            }
+            return new Huffman(table, maxBits);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells which lines of a file are new compared to the previous version of the file, and which keys disappeared.
+ * <p>
+ * For every version of the file read to its end, the state directory holds a {@link FingerprintTable} of its lines
+ * ({@code <timestamp>.lines}) and the distinct keys of its lines ({@code <timestamp>.keys}). A file is compared to the
+ * newest version older than itself, so that reading a version again after a restart compares it to the same baseline.
+ * While a file is read, the fingerprints and keys go to spool files and only become tables once its end is reached.
+ * Versions older than the baseline are deleted then.
+ * <p>
+ * Lines are compared by a 64 bit hash, with a few million lines the chance that a changed line is taken for an
+ * unchanged one is in the order of 10^-6 per file.
+ */
+public class DeltaTracker implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DeltaTracker.class);
+    private static final String LINES = ".lines";
+    private static final String KEYS = ".keys";
+    private static final String SPOOL = ".spool";
+    private static final String TEMPORARY = ".tmp";
+
+    private final Path directory;
+
+    private long timestamp;
+    private FingerprintTable baseline;
+    private long baselineTimestamp;
+    private DataOutputStream lineSpool;
+    private DataOutputStream keySpool;
+    private long lineCount;
+    private long keyCount;
+
+    /**
+     * @param stateDirectory directory holding the state of all files, each URL gets a directory of its own in there
+     */
+    public DeltaTracker(Path stateDirectory, String url) {
+        this.directory = stateDirectory.resolve(String.format("%016x", FingerprintTable.fingerprint(url.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Starts reading the version of the file with the given timestamp from its first line.
+     */
+    public void start(long timestamp) throws IOException {
+        close();
+        Files.createDirectories(directory);
+
+        this.timestamp = timestamp;
+        baselineTimestamp = -1;
+        for (long version : versions()) {
+            if (version < timestamp && version > baselineTimestamp) {
+                baselineTimestamp = version;
+            }
+        }
+        if (baselineTimestamp >= 0) {
+            baseline = FingerprintTable.open(file(baselineTimestamp, LINES));
+            logger.info("Comparing file version {} to version {} with {} lines", timestamp, baselineTimestamp, baseline.size());
+        }
+        else {
+            logger.info("No earlier version of file version {}, all lines are new", timestamp);
+        }
+
+        lineSpool = spool(LINES);
+        keySpool = spool(KEYS);
+        lineCount = 0;
+        keyCount = 0;
+    }
+
+    /**
+     * Records the line as part of the current version.
+     *
+     * @param key the key of the line, or null
+     * @return true if the line was not in the previous version
+     */
+    public boolean isNew(byte[] line, byte[] key) throws IOException {
+        long fingerprint = FingerprintTable.fingerprint(line);
+        lineSpool.writeLong(fingerprint);
+        lineCount++;
+        if (key != null) {
+            keySpool.writeInt(key.length);
+            keySpool.write(key);
+            keyCount++;
+        }
+        return baseline == null || !baseline.contains(fingerprint);
+    }
+
+    /**
+     * Stores the state of the current version once it has been read to the end.
+     *
+     * @return the keys of the previous version that no line of the current version has
+     */
+    public List<byte[]> finish() throws IOException {
+        lineSpool.close();
+        keySpool.close();
+        lineSpool = null;
+        keySpool = null;
+
+        Path lineSpoolFile = file(timestamp, LINES + SPOOL);
+        Path lineTable = file(timestamp, LINES + TEMPORARY);
+        try (FingerprintTable lines = FingerprintTable.create(lineTable, lineCount);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(lineSpoolFile)))) {
+            for (long i = 0; i < lineCount; i++) {
+                lines.add(in.readLong());
+            }
+        }
+
+        // dedupe the keys into the keys file, the table of their fingerprints tells which keys are gone
+        Path keySpoolFile = file(timestamp, KEYS + SPOOL);
+        Path keyFile = file(timestamp, KEYS + TEMPORARY);
+        Path keyTable = file(timestamp, KEYS + LINES + TEMPORARY);
+        List<byte[]> removed = new ArrayList<>();
+        try (FingerprintTable keys = FingerprintTable.create(keyTable, keyCount)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(keySpoolFile)));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(keyFile)))) {
+                for (long i = 0; i < keyCount; i++) {
+                    byte[] key = readKey(in);
+                    if (keys.add(FingerprintTable.fingerprint(key))) {
+                        out.writeInt(key.length);
+                        out.write(key);
+                    }
+                }
+            }
+
+            if (baselineTimestamp >= 0) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file(baselineTimestamp, KEYS))))) {
+                    byte[] key;
+                    while ((key = readKeyOrNull(in)) != null) {
+                        if (!keys.contains(FingerprintTable.fingerprint(key))) {
+                            removed.add(key);
+                        }
+                    }
+                }
+            }
+        }
+
+        // the lines table marks a complete version, so it comes last
+        Files.move(keyFile, file(timestamp, KEYS), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(lineTable, file(timestamp, LINES), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(keyTable);
+        Files.delete(lineSpoolFile);
+        Files.delete(keySpoolFile);
+
+        for (long version : versions()) {
+            if (version < baselineTimestamp) {
+                Files.deleteIfExists(file(version, LINES));
+                Files.deleteIfExists(file(version, KEYS));
+            }
+        }
+        logger.info("Stored {} lines of file version {}, {} keys removed since version {}", lineCount, timestamp, removed.size(), baselineTimestamp);
+        close();
+
+        return removed;
+    }
+
+    private DataOutputStream spool(String suffix) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file(timestamp, suffix + SPOOL)), 64 * 1024));
+    }
+
+    private Path file(long version, String suffix) {
+        return directory.resolve(version + suffix);
+    }
+
+    /**
+     * @return the timestamps of the versions read to the end
+     */
+    private List<Long> versions() throws IOException {
+        List<Long> versions = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + LINES)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    versions.add(Long.parseLong(name.substring(0, name.length() - LINES.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file {}", file);
+                }
+            }
+        }
+        return versions;
+    }
+
+    private static byte[] readKey(DataInputStream in) throws IOException {
+        byte[] key = new byte[in.readInt()];
+        in.readFully(key);
+        return key;
+    }
+
+    private static byte[] readKeyOrNull(DataInputStream in) throws IOException {
+        try {
+            return readKey(in);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (lineSpool != null) {
+            lineSpool.close();
+            lineSpool = null;
+        }
+        if (keySpool != null) {
+            keySpool.close();
+            keySpool = null;
+        }
+        if (baseline != null) {
+            baseline.close();
+            baseline = null;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads files to a local directory on a thread of their own, as fast as the network allows, and hands them to
+ * the task through memory mapped windows of the file as it grows. A slow Kafka cluster then no longer keeps the
+ * download open, and a broken connection is resumed with a Range request from the bytes spooled so far.
+ * <p>
+ * Each URL gets a directory in the spool directory, holding its versions as {@code <Last-Modified>.spool} once they
+ * are complete and as {@code <Last-Modified>.part} while they are downloaded. A version that is complete or partly
+ * there is reused when the same version is read again, for example after a restart. Older versions of a URL are
+ * deleted once a newer one is complete, and the oldest files are evicted while the directory holds more than its
+ * maximum size.
+ */
+public class DownloadSpool {
+    private static final Logger logger = LoggerFactory.getLogger(DownloadSpool.class);
+    private static final String COMPLETE = ".spool";
+    private static final String PARTIAL = ".part";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final long WINDOW_SIZE = 64 * 1024 * 1024;
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_WAIT_MS = 1000;
+
+    private final Path root;
+    private final Path directory;
+    private final long maxBytes;
+    private final HttpTransport transport;
+    private final String url;
+
+    /**
+     * @param spoolDirectory directory holding the spooled files of all URLs
+     * @param maxBytes size of the spool directory above which the oldest files are evicted
+     */
+    public DownloadSpool(Path spoolDirectory, long maxBytes, HttpTransport transport, String url) {
+        this.root = spoolDirectory;
+        this.directory = spoolDirectory.resolve(String.format("%016x", FingerprintTable.fingerprint(url.getBytes(StandardCharsets.UTF_8))));
+        this.maxBytes = maxBytes;
+        this.transport = transport;
+        this.url = url;
+    }
+
+    /**
+     * Spools the version of the file with the given Last-Modified timestamp. If it is complete in the spool already,
+     * the response is closed and the file read from disk; if it is partly there, the rest is requested with a Range
+     * request tied to the version by ifRange. Otherwise the body of the response is spooled.
+     *
+     * @param fileUrl  URL to resume the download from
+     * @param ifRange  Last-Modified or ETag value of the version, for If-Range
+     * @param response open response to the whole file
+     * @return the stream of the compressed file, reading what has been spooled so far
+     */
+    public InputStream open(String fileUrl, long lastModified, String ifRange, HttpResponse<InputStream> response) throws IOException {
+        Files.createDirectories(directory);
+        Path complete = file(lastModified, COMPLETE);
+        Path partial = file(lastModified, PARTIAL);
+        if (lastModified <= 0) {
+            // without Last-Modified, versions cannot be told apart
+            Files.deleteIfExists(complete);
+            Files.deleteIfExists(partial);
+        }
+
+        if (Files.exists(complete)) {
+            response.body().close();
+            logger.info("Reading {} from the spool", complete);
+            // touch it, so that eviction sees it has been used
+            Files.setLastModifiedTime(complete, FileTime.fromMillis(System.currentTimeMillis()));
+            Spooled spooled = new Spooled(FileChannel.open(complete, StandardOpenOption.READ));
+            spooled.finish(Files.size(complete), null);
+            return spooled;
+        }
+
+        long spooledBytes = Files.exists(partial) ? Files.size(partial) : 0;
+        if (spooledBytes > 0) {
+            response.body().close();
+            logger.info("Continuing the download of {} at byte {} of {}", fileUrl, spooledBytes, partial);
+            response = null;
+        }
+        FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Spooled spooled = new Spooled(channel);
+        spooled.startWriter(fileUrl, ifRange, response, spooledBytes, partial, complete);
+        return spooled;
+    }
+
+    private Path file(long lastModified, String suffix) {
+        return directory.resolve(lastModified + suffix);
+    }
+
+    /**
+     * Deletes the other versions of this URL, which the complete version replaces, and evicts the least recently
+     * used complete files of all URLs while the spool holds more than its maximum size.
+     */
+    private void evict(Path current) {
+        try {
+            for (Path file : list(directory)) {
+                if (!file.equals(current)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+
+            List<Path> files = new ArrayList<>();
+            Map<Path, Long> usedAt = new HashMap<>();
+            long total = 0;
+            for (Path urlDirectory : list(root)) {
+                if (Files.isDirectory(urlDirectory)) {
+                    for (Path file : list(urlDirectory)) {
+                        try {
+                            total += Files.size(file);
+                            usedAt.put(file, Files.getLastModifiedTime(file).toMillis());
+                            if (file.toString().endsWith(COMPLETE) && !file.equals(current)) {
+                                files.add(file);
+                            }
+                        } catch (NoSuchFileException e) {
+                            // deleted by another task in the meantime
+                        }
+                    }
+                }
+            }
+            files.sort(Comparator.comparing(usedAt::get));
+            for (Path file : files) {
+                if (total <= maxBytes) {
+                    break;
+                }
+                long size = Files.size(file);
+                Files.deleteIfExists(file);
+                total -= size;
+                logger.info("Evicted {} from the spool", file);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not clean up spool directory {}", root, e);
+        }
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * A spooled file that is read while it is written. Reads wait for the writer thread until it has spooled more
+     * bytes, finished the file, or failed.
+     */
+    private class Spooled extends InputStream {
+        private final FileChannel channel;
+        private final CountDownLatch stopped = new CountDownLatch(1);
+        private final Object lock = new Object();
+        private Thread writer = null;
+
+        // guarded by lock
+        private long written = 0;
+        private boolean finished = false;
+        private IOException failure = null;
+
+        private MappedByteBuffer window = null;
+        private long windowStart = 0;
+        private long position = 0;
+
+        Spooled(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void startWriter(String fileUrl, String ifRange, HttpResponse<InputStream> response, long spooledBytes, Path partial, Path complete) {
+            written = spooledBytes;
+            writer = new Thread(() -> write(fileUrl, ifRange, response, partial, complete), "HttpCompressedSourceTask-spool-" + url);
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        private void write(String fileUrl, String ifRange, HttpResponse<InputStream> first, Path partial, Path complete) {
+            HttpResponse<InputStream> response = first;
+            boolean resuming = first == null;
+            int retries = 0;
+            while (true) {
+                long before = writtenBytes();
+                try {
+                    if (resuming) {
+                        response = transport.send(fileUrl, "GET", rangeHeaders(ifRange, before));
+                        if (response.statusCode() == 416) {
+                            // the part holds the whole file already
+                            response.body().close();
+                            response = null;
+                        }
+                        else if (response.statusCode() != HttpURLConnection.HTTP_PARTIAL) {
+                            response.body().close();
+                            finish(before, new IOException("Could not continue the download of " + fileUrl
+                                    + " at byte " + before + ", the server answered " + response.statusCode()));
+                            return;
+                        }
+                    }
+                    if (response != null) {
+                        try (InputStream body = response.body()) {
+                            copy(body);
+                        }
+                    }
+                    channel.truncate(writtenBytes());
+                    channel.force(false);
+                    Files.move(partial, complete, StandardCopyOption.ATOMIC_MOVE);
+                    logger.info("Spooled {} bytes to {}", writtenBytes(), complete);
+                    finish(writtenBytes(), null);
+                    evict(complete);
+                    return;
+                } catch (IOException e) {
+                    resuming = true;
+                    if (isStopped()) {
+                        finish(writtenBytes(), new InterruptedIOException("Spooling " + fileUrl + " stopped"));
+                        return;
+                    }
+                    retries = writtenBytes() > before ? 0 : retries + 1;
+                    if (retries > MAX_RETRIES) {
+                        finish(writtenBytes(), e);
+                        return;
+                    }
+                    try {
+                        // closing the task disconnects before it stops the spool, wait for that before retrying
+                        if (stopped.await(RETRY_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                            finish(writtenBytes(), new InterruptedIOException("Spooling " + fileUrl + " stopped"));
+                            return;
+                        }
+                    } catch (InterruptedException interrupted) {
+                        finish(writtenBytes(), new InterruptedIOException("Spooling " + fileUrl + " stopped"));
+                        return;
+                    }
+                    logger.warn("Spooling {} interrupted at byte {}, resuming", fileUrl, writtenBytes(), e);
+                }
+            }
+        }
+
+        /**
+         * @return the headers requesting the rest of the file, if it is still the same version
+         */
+        private Map<String, String> rangeHeaders(String ifRange, long from) {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Range", "bytes=" + from + "-");
+            if (ifRange != null) {
+                headers.put("If-Range", ifRange);
+            }
+            return headers;
+        }
+
+        private void copy(InputStream body) throws IOException {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long offset = writtenBytes();
+            int read;
+            while (!isStopped() && (read = body.read(buffer)) != -1) {
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    offset += channel.write(bytes, offset);
+                }
+                synchronized (lock) {
+                    written = offset;
+                    lock.notifyAll();
+                }
+            }
+            if (isStopped()) {
+                throw new InterruptedIOException("Spooling stopped");
+            }
+        }
+
+        private long writtenBytes() {
+            synchronized (lock) {
+                return written;
+            }
+        }
+
+        void finish(long length, IOException e) {
+            synchronized (lock) {
+                written = length;
+                finished = true;
+                failure = e;
+                lock.notifyAll();
+            }
+        }
+
+        private boolean isStopped() {
+            return stopped.getCount() == 0;
+        }
+
+        /**
+         * @return the bytes that can be read without waiting for the writer, or -1 at the end of the file
+         */
+        private long waitForBytes() throws IOException {
+            synchronized (lock) {
+                while (position >= written && !finished) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting for the spool");
+                    }
+                }
+                if (position < written) {
+                    return written - position;
+                }
+                if (failure != null) {
+                    throw new IOException("Download of " + url + " failed", failure);
+                }
+                return -1;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (window == null || position >= windowStart + window.limit()) {
+                long available = waitForBytes();
+                if (available < 0) {
+                    return -1;
+                }
+                // map as much of what has been spooled as fits in a window
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(available, WINDOW_SIZE));
+            }
+            int count = (int) Math.min(len, windowStart + window.limit() - position);
+            window.duplicate().position((int) (position - windowStart)).get(b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            synchronized (lock) {
+                return (int) Math.min(Integer.MAX_VALUE, written - position);
+            }
+        }
+
+        /**
+         * Stops the writer, a partly spooled file stays there to be continued.
+         */
+        @Override
+        public void close() throws IOException {
+            stopped.countDown();
+            if (writer != null) {
+                writer.interrupt();
+                try {
+                    writer.join(RETRY_WAIT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            window = null;
+            channel.close();
+        }
+    }
+}
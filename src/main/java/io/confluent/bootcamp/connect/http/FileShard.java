@@ -0,0 +1,121 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.common.config.ConfigException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A range of lines of one version of a gzip file, read by one task while other tasks read the other ranges.
+ * <p>
+ * The range starts at a checkpoint, from which the file can be inflated without reading what comes before it, and
+ * covers the lines that start at or after {@code start} and before {@code end}, both uncompressed positions at the
+ * start of a line. The first shard starts at the beginning of the file without a checkpoint, the last one ends with
+ * the file.
+ */
+public final class FileShard {
+    private static final String SEPARATOR = ";";
+
+    private final String url;
+    private final long version;
+    private final int index;
+    private final int count;
+    private final GzipCheckpoint checkpoint;
+    private final long start;
+    private final long end;
+
+    public FileShard(String url, long version, int index, int count, GzipCheckpoint checkpoint, long start, long end) {
+        this.url = url;
+        this.version = version;
+        this.index = index;
+        this.count = count;
+        this.checkpoint = checkpoint;
+        this.start = start;
+        this.end = end;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the Last-Modified timestamp of the version of the file the shard belongs to
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the checkpoint to inflate the shard from, null to start at the beginning of the file
+     */
+    public GzipCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return the position of the first line of the next shard, Long.MAX_VALUE for the last shard
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    /**
+     * @return the shard as {@code index/count}, which keeps the offsets of the shards of a file apart
+     */
+    public String getName() {
+        return index + "/" + count;
+    }
+
+    /**
+     * @return the shard as it is handed to a task in its configuration, see {@link #parse}
+     */
+    @Override
+    public String toString() {
+        Map<String, Object> fields = new HashMap<>();
+        if (checkpoint != null) {
+            checkpoint.writeTo(fields);
+        }
+        return String.join(SEPARATOR, String.valueOf(index), String.valueOf(count), String.valueOf(version),
+                String.valueOf(start), String.valueOf(end),
+                String.valueOf(fields.getOrDefault(GzipCheckpoint.BIT_OFFSET_FIELD, "")),
+                String.valueOf(fields.getOrDefault(GzipCheckpoint.POSITION_FIELD, "")),
+                String.valueOf(fields.getOrDefault(GzipCheckpoint.WINDOW_FIELD, "")),
+                url);
+    }
+
+    /**
+     * @throws ConfigException if the value is not a shard written by {@link #toString}
+     */
+    public static FileShard parse(String value) {
+        String[] fields = value.split(SEPARATOR, 9);
+        if (fields.length != 9) {
+            throw new ConfigException(HttpCompressedSourceConfiguration.TASK_SHARDS_CONFIG, value, "Not a file shard");
+        }
+        try {
+            GzipCheckpoint checkpoint = null;
+            if (!fields[5].isEmpty()) {
+                Map<String, Object> offset = new HashMap<>();
+                offset.put(GzipCheckpoint.BIT_OFFSET_FIELD, Long.parseLong(fields[5]));
+                offset.put(GzipCheckpoint.POSITION_FIELD, Long.parseLong(fields[6]));
+                offset.put(GzipCheckpoint.WINDOW_FIELD, fields[7]);
+                checkpoint = GzipCheckpoint.fromOffset(offset);
+            }
+            return new FileShard(fields[8], Long.parseLong(fields[2]), Integer.parseInt(fields[0]), Integer.parseInt(fields[1]),
+                    checkpoint, Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+        } catch (IllegalArgumentException e) {
+            throw new ConfigException(HttpCompressedSourceConfiguration.TASK_SHARDS_CONFIG, value, "Not a file shard: " + e.getMessage());
+        }
+    }
+}
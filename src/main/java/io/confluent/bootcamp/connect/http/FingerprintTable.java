@@ -0,0 +1,182 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Set of 64 bit fingerprints in a memory mapped file, an open addressing hash table with linear probing.
+ * <p>
+ * The table lives in the page cache instead of the heap, so that the fingerprints of files with millions of lines
+ * take no heap and survive restarts. The file starts with a header of three longs (magic, capacity, size) followed
+ * by the slots, zero marks an empty slot.
+ */
+public class FingerprintTable implements Closeable {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long MAGIC = 0x4650544231L; // "FPTB1"
+    private static final int HEADER_SIZE = 3 * Long.BYTES;
+    // keeps the file within a single mapped buffer
+    private static final int MAX_CAPACITY = 1 << 27;
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer slots;
+    private final int mask;
+    private final boolean writable;
+    private long size;
+
+    private FingerprintTable(FileChannel channel, MappedByteBuffer slots, int capacity, long size, boolean writable) {
+        this.channel = channel;
+        this.slots = slots;
+        this.mask = capacity - 1;
+        this.size = size;
+        this.writable = writable;
+    }
+
+    /**
+     * Creates an empty table with room for the expected number of fingerprints at a load factor of at most 0.5.
+     */
+    public static FingerprintTable create(Path file, long expected) throws IOException {
+        int capacity = 16;
+        while (capacity < 2 * expected) {
+            if (capacity == MAX_CAPACITY) {
+                throw new IOException("Too many fingerprints for a table: " + expected);
+            }
+            capacity <<= 1;
+        }
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * Long.BYTES);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putLong(0, MAGIC);
+            buffer.putLong(Long.BYTES, capacity);
+            return new FingerprintTable(channel, buffer, capacity, 0, true);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a table written before, read only.
+     */
+    public static FingerprintTable open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.limit() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+                throw new IOException("Not a fingerprint table: " + file);
+            }
+            long capacity = buffer.getLong(Long.BYTES);
+            if (Long.bitCount(capacity) != 1 || capacity > MAX_CAPACITY
+                    || buffer.limit() != HEADER_SIZE + capacity * Long.BYTES) {
+                throw new IOException("Not a fingerprint table: " + file);
+            }
+            return new FingerprintTable(channel, buffer, (int) capacity, buffer.getLong(2 * Long.BYTES), false);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if the fingerprint was not in the table yet
+     */
+    public boolean add(long fingerprint) {
+        long value = fingerprint == 0 ? 1 : fingerprint;
+        int slot = (int) value & mask;
+        while (true) {
+            long stored = slots.getLong(offset(slot));
+            if (stored == value) {
+                return false;
+            }
+            if (stored == 0) {
+                if (size >= (mask + 1) / 2) {
+                    throw new IllegalStateException("Fingerprint table is full");
+                }
+                slots.putLong(offset(slot), value);
+                size++;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean contains(long fingerprint) {
+        long value = fingerprint == 0 ? 1 : fingerprint;
+        int slot = (int) value & mask;
+        while (true) {
+            long stored = slots.getLong(offset(slot));
+            if (stored == value) {
+                return true;
+            }
+            if (stored == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * Long.BYTES;
+    }
+
+    /**
+     * Writes a table that was created out to disk. The mapping itself is released once the table is garbage.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writable) {
+            slots.putLong(2 * Long.BYTES, size);
+            slots.force();
+        }
+        channel.close();
+    }
+
+    /**
+     * 64 bit hash of the bytes, mixing eight bytes at a time in the way of MurmurHash3.
+     */
+    public static long fingerprint(byte[] bytes) {
+        long h = bytes.length;
+        int i = 0;
+        for (; i + Long.BYTES <= bytes.length; i += Long.BYTES) {
+            h = mix(h, (long) LONGS.get(bytes, i));
+        }
+        if (i < bytes.length) {
+            long tail = 0;
+            for (int shift = 0; i < bytes.length; i++, shift += 8) {
+                tail |= (bytes[i] & 0xFFL) << shift;
+            }
+            h = mix(h, tail);
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long mix(long h, long k) {
+        k *= C1;
+        k = Long.rotateLeft(k, 31);
+        k *= C2;
+        h ^= k;
+        return Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+    }
+}
@@ -0,0 +1,128 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A point in a gzip file at which inflation can be restarted without reading the file from the beginning.
+ * <p>
+ * The checkpoint sits on a deflate block boundary and holds the position in the compressed file (in bits,
+ * as blocks are not byte aligned), the number of uncompressed bytes produced up to that point and the last
+ * 32 KiB of uncompressed data that the following blocks may refer back to (see zlib's zran.c).
+ */
+public final class GzipCheckpoint {
+    static final String BIT_OFFSET_FIELD = "checkpoint_bit_offset";
+    static final String POSITION_FIELD = "checkpoint_position";
+    static final String WINDOW_FIELD = "checkpoint_window";
+
+    private final long bitOffset;
+    private final long position;
+    private final byte[] window;
+    private String encodedWindow = null;
+
+    public GzipCheckpoint(long bitOffset, long position, byte[] window) {
+        this.bitOffset = bitOffset;
+        this.position = position;
+        this.window = window;
+    }
+
+    /**
+     * @return offset of the checkpoint in the compressed file, in bits
+     */
+    public long getBitOffset() {
+        return bitOffset;
+    }
+
+    /**
+     * @return the first byte of the compressed file that is needed to resume from this checkpoint
+     */
+    public long getByteOffset() {
+        return bitOffset >>> 3;
+    }
+
+    /**
+     * @return number of uncompressed bytes preceding this checkpoint
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public byte[] getWindow() {
+        return window;
+    }
+
+    /**
+     * Adds the checkpoint to a source offset. The window is deflated and Base64 encoded to keep the offset small,
+     * the encoding is done once and shared by all offsets referring to this checkpoint.
+     */
+    public void writeTo(Map<String, Object> offset) {
+        if (encodedWindow == null) {
+            encodedWindow = Base64.getEncoder().encodeToString(compress(window));
+        }
+        offset.put(BIT_OFFSET_FIELD, bitOffset);
+        offset.put(POSITION_FIELD, position);
+        offset.put(WINDOW_FIELD, encodedWindow);
+    }
+
+    /**
+     * @return the checkpoint stored in the source offset, or null if the offset does not contain one
+     */
+    public static GzipCheckpoint fromOffset(Map<String, ?> offset) {
+        Object bitOffset = offset.get(BIT_OFFSET_FIELD);
+        Object position = offset.get(POSITION_FIELD);
+        Object window = offset.get(WINDOW_FIELD);
+
+        if (bitOffset == null || position == null || window == null) {
+            return null;
+        }
+
+        byte[] inflated = decompress(Base64.getDecoder().decode((String) window));
+
+        return new GzipCheckpoint(((Number) bitOffset).longValue(), ((Number) position).longValue(), inflated);
+    }
+
+    private static byte[] compress(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+
+            byte[] result = new byte[CheckpointingGzipInputStream.WINDOW_SIZE];
+            int length = 0;
+            while (!inflater.finished() && length < result.length) {
+                int n = inflater.inflate(result, length, result.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated checkpoint window");
+                }
+                length += n;
+            }
+            return Arrays.copyOf(result, length);
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt checkpoint window", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,870 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates part of a gzip stream that is held in memory as chunks of equal size, for {@link ParallelGzipInputStream}.
+ * <p>
+ * Without the 32 KiB of output preceding its start, the decoder runs speculatively: it looks for the first bit offset
+ * at which a dynamic Huffman block decodes cleanly and writes 16 bit values, in which back-references into the unknown
+ * window appear as markers (256 + index into the window). The markers are replaced once the preceding output is known.
+ * When the last 32 KiB of output at a block boundary contain no marker, nothing later can refer to the unknown window
+ * any more and the decoder continues with plain bytes.
+ * <p>
+ * Decoding stops at the first block boundary at or after the stop offset that is followed by a dynamic block. This is
+ * where a speculative decoder starting at the stop offset ends up when its guess is right.
+ */
+final class GzipChunkDecoder {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final int WINDOW_SIZE = DeflateTables.WINDOW_SIZE;
+    private static final int MAX_MATCH = DeflateTables.MAX_MATCH;
+    private static final int MARKER = 256;
+    // stop at the next block boundary once this much has been produced, the following parts are then redone in order
+    private static final int MAX_OUTPUT = 64 * 1024 * 1024;
+
+    /**
+     * Output and end state of a decoded part.
+     */
+    static final class Result {
+        final long startBit;
+        long endBit;
+        boolean endOfStream = false;
+        // ran out of compressed data that has not been read yet
+        boolean incomplete = false;
+
+        // output with markers, followed by the plain bytes
+        char[] markers;
+        int markerCount = 0;
+        byte[] bytes;
+        int bytesStart = 0;
+        int bytesEnd = 0;
+
+        final List<Trailer> trailers = new ArrayList<>();
+
+        Result(long startBit) {
+            this.startBit = startBit;
+        }
+
+        long size() {
+            return markerCount + (bytesEnd - bytesStart);
+        }
+    }
+
+    /**
+     * Member trailer found at the given position of the output of a part.
+     */
+    static final class Trailer {
+        final long position;
+        final long crc;
+        final long size;
+
+        Trailer(long position, long crc, long size) {
+            this.position = position;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    /** Thrown when more compressed data is needed than has been read so far. */
+    private static final class EndOfData extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        EndOfData() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final EndOfData END_OF_DATA = new EndOfData();
+
+    private final byte[][] chunks;
+    private final int chunkSize;
+    private final long dataLength;
+    private final boolean endOfInput;
+    private final int expectedOutput;
+
+    // compressed input
+    private byte[] current;
+    private int chunkNumber;
+    private long chunkBase;
+    private int index;
+    private long bitBuffer;
+    private int bitCount;
+
+    // output
+    private boolean speculative;
+    private char[] markers;
+    private int markerCount;
+    private byte[] out;
+    private int outCount;
+    private int historyStart;
+    private int blocksDecoded;
+
+    // first block boundary past the stop offset
+    private long fallbackBit;
+    private int fallbackCount;
+    private int fallbackTrailers;
+
+    /**
+     * @param chunks compressed data read so far, chunks that are no longer needed may be null
+     * @param endOfInput whether the chunks hold the whole rest of the stream
+     * @param expectedOutput initial capacity of the output, growing it is comparatively expensive
+     */
+    GzipChunkDecoder(byte[][] chunks, int chunkSize, long dataLength, boolean endOfInput, int expectedOutput) {
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.dataLength = dataLength;
+        this.endOfInput = endOfInput;
+        this.expectedOutput = Math.max(expectedOutput, 2 * WINDOW_SIZE);
+    }
+
+    /**
+     * Decodes from a known block boundary (or the start of the stream) with the preceding output known.
+     *
+     * @param window the last {@code windowLength} bytes of this array precede the output
+     * @throws IOException if the data is corrupt or ends early
+     */
+    Result decode(long startBit, byte[] window, int windowLength, long stopBit, boolean memberStart) throws IOException {
+        Result result = new Result(startBit);
+        speculative = false;
+        markers = null;
+        markerCount = 0;
+        out = new byte[windowLength + expectedOutput];
+        System.arraycopy(window, window.length - windowLength, out, 0, windowLength);
+        historyStart = windowLength;
+        outCount = windowLength;
+        blocksDecoded = 0;
+        fallbackBit = -1;
+
+        try {
+            seek(startBit);
+            if (memberStart) {
+                readMemberHeader();
+            }
+            run(result, stopBit);
+        } catch (EndOfData e) {
+            if (!truncate(result)) {
+                if (endOfInput) {
+                    throw new EOFException("Unexpected end of ZLIB input stream");
+                }
+                result.incomplete = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes from the first dynamic block found in [fromBit, stopBit) without knowing the preceding output.
+     *
+     * @return the output, with a start of -1 if no block could be found or the data turned out corrupt
+     */
+    Result decodeSpeculative(long fromBit, long stopBit) {
+        long limitBit = Math.min(stopBit, dataLength * 8);
+        long candidate = fromBit;
+        while ((candidate = findDynamicBlock(candidate, limitBit)) >= 0) {
+            Result result = new Result(candidate);
+            speculative = true;
+            markers = new char[expectedOutput];
+            markerCount = 0;
+            out = null;
+            blocksDecoded = 0;
+            fallbackBit = -1;
+
+            try {
+                seek(candidate);
+                run(result, stopBit);
+                return result;
+            } catch (EndOfData e) {
+                result.incomplete = !truncate(result);
+                return result;
+            } catch (ZipException e) {
+                if (blocksDecoded > 0) {
+                    // a block decoded cleanly, so the data itself is bad, the reader will report it in order
+                    return new Result(-1);
+                }
+                candidate++;
+            }
+        }
+        return new Result(-1);
+    }
+
+    private void run(Result result, long stopBit) throws ZipException, EndOfData {
+        while (true) {
+            if (blocksDecoded > 0 && produced() >= MAX_OUTPUT) {
+                break;
+            }
+            if (blocksDecoded > 0 && position() >= stopBit) {
+                if (!speculative && fallbackBit < 0) {
+                    fallbackBit = position();
+                    fallbackCount = outCount;
+                    fallbackTrailers = result.trailers.size();
+                }
+                if (nextIsDynamicBlock()) {
+                    break;
+                }
+            }
+            boolean finalBlock = readBlock();
+            blocksDecoded++;
+
+            if (finalBlock) {
+                bits(bitCount & 7);
+                long crc = bits(16) | ((long) bits(16) << 16);
+                long size = bits(16) | ((long) bits(16) << 16);
+                result.trailers.add(new Trailer(produced(), crc, size));
+
+                if (!nextIsMember()) {
+                    result.endOfStream = true;
+                    break;
+                }
+                readMemberHeader();
+            }
+        }
+
+        complete(result, position());
+    }
+
+    /**
+     * Gives up on reaching the stop condition for lack of data, and ends at the first block boundary past the stop
+     * offset instead, if there was one with plain bytes output.
+     */
+    private boolean truncate(Result result) {
+        if (fallbackBit < 0) {
+            return false;
+        }
+        outCount = fallbackCount;
+        result.trailers.subList(fallbackTrailers, result.trailers.size()).clear();
+        result.endOfStream = false;
+        complete(result, fallbackBit);
+        return true;
+    }
+
+    private void complete(Result result, long endBit) {
+        result.endBit = endBit;
+        if (speculative) {
+            result.markers = markers;
+            result.markerCount = markerCount;
+        }
+        else {
+            if (markers != null) {
+                result.markers = markers;
+                result.markerCount = markerCount;
+            }
+            result.bytes = out;
+            result.bytesStart = historyStart;
+            result.bytesEnd = outCount;
+        }
+    }
+
+    private long produced() {
+        return speculative ? markerCount : markerCount + outCount - historyStart;
+    }
+
+    private boolean nextIsDynamicBlock() throws EndOfData {
+        need(3);
+        return ((bitBuffer >>> 1) & 3) == 2;
+    }
+
+    private boolean nextIsMember() throws EndOfData {
+        fill();
+        if (bitCount < 16) {
+            if (!endOfInput) {
+                throw END_OF_DATA;
+            }
+            return false;
+        }
+        // anything but another member is ignored, like GZIPInputStream does
+        return (bitBuffer & 0xFFFF) == 0x8b1f;
+    }
+
+    private void readMemberHeader() throws ZipException, EndOfData {
+        if (bits(8) != 0x1f || bits(8) != 0x8b) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (bits(8) != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        int flags = bits(8);
+        bits(16); // modification time
+        bits(16);
+        bits(8); // extra flags
+        bits(8); // operating system
+
+        if ((flags & 4) != 0) { // FEXTRA
+            int length = bits(16);
+            for (int i = 0; i < length; i++) {
+                bits(8);
+            }
+        }
+        if ((flags & 8) != 0) { // FNAME
+            while (bits(8) != 0) { }
+        }
+        if ((flags & 16) != 0) { // FCOMMENT
+            while (bits(8) != 0) { }
+        }
+        if ((flags & 2) != 0) { // FHCRC
+            bits(16);
+        }
+    }
+
+    /**
+     * Decodes a whole block.
+     *
+     * @return true if it was the final block of its member
+     */
+    private boolean readBlock() throws ZipException, EndOfData {
+        if (speculative && markerCount >= WINDOW_SIZE && !containsMarker(markerCount - WINDOW_SIZE, markerCount)) {
+            switchToBytes();
+        }
+
+        boolean finalBlock = bits(1) == 1;
+        int type = bits(2);
+        switch (type) {
+            case 0:
+                bits(bitCount & 7);
+                int length = bits(16);
+                int complement = bits(16);
+                if ((length ^ 0xFFFF) != complement) {
+                    throw new ZipException("invalid stored block lengths");
+                }
+                copyStored(length);
+                break;
+            case 1:
+                inflate(DeflateTables.FIXED_LITERALS, DeflateTables.FIXED_DISTANCES);
+                break;
+            case 2:
+                int literalCount = bits(5) + 257;
+                int distanceCount = bits(5) + 1;
+                int[] lengths = readCodeLengths(literalCount, distanceCount);
+                inflate(DeflateTables.Huffman.build(lengths, literalCount),
+                        DeflateTables.Huffman.build(Arrays.copyOfRange(lengths, literalCount, lengths.length), distanceCount));
+                break;
+            default:
+                throw new ZipException("invalid block type");
+        }
+        return finalBlock;
+    }
+
+    /**
+     * Reads the code lengths of a dynamic block, rejecting everything zlib would reject.
+     */
+    private int[] readCodeLengths(int literalCount, int distanceCount) throws ZipException, EndOfData {
+        if (literalCount > 286 || distanceCount > 30) {
+            throw new ZipException("too many length or distance symbols");
+        }
+        int codeLengthCount = bits(4) + 4;
+        int[] codeLengthLengths = new int[19];
+        for (int i = 0; i < codeLengthCount; i++) {
+            codeLengthLengths[DeflateTables.CODE_LENGTH_ORDER[i]] = bits(3);
+        }
+        if (DeflateTables.unusedCodes(codeLengthLengths, 0, 19) != 0) {
+            throw new ZipException("invalid code lengths set");
+        }
+        DeflateTables.Huffman codeLengths = DeflateTables.Huffman.build(codeLengthLengths, 19);
+
+        int[] lengths = new int[literalCount + distanceCount];
+        int index = 0;
+        while (index < lengths.length) {
+            int symbol = decode(codeLengths);
+            if (symbol < 16) {
+                lengths[index++] = symbol;
+                continue;
+            }
+
+            int value = 0;
+            int repeat;
+            if (symbol == 16) {
+                if (index == 0) {
+                    throw new ZipException("invalid bit length repeat");
+                }
+                value = lengths[index - 1];
+                repeat = 3 + bits(2);
+            }
+            else if (symbol == 17) {
+                repeat = 3 + bits(3);
+            }
+            else {
+                repeat = 11 + bits(7);
+            }
+            if (index + repeat > lengths.length) {
+                throw new ZipException("invalid bit length repeat");
+            }
+            Arrays.fill(lengths, index, index + repeat, value);
+            index += repeat;
+        }
+
+        if (lengths[256] == 0) {
+            throw new ZipException("invalid code -- missing end-of-block");
+        }
+        if (!isUsableCode(lengths, 0, literalCount) || !isUsableCode(lengths, literalCount, distanceCount)) {
+            throw new ZipException("invalid literal/lengths or distances set");
+        }
+        return lengths;
+    }
+
+    /**
+     * A code must be complete, except for a single code of one bit (or no code at all for distances).
+     */
+    private static boolean isUsableCode(int[] lengths, int offset, int count) {
+        int unused = DeflateTables.unusedCodes(lengths, offset, count);
+        if (unused <= 0) {
+            return unused == 0;
+        }
+        int maxLength = 0;
+        for (int i = offset; i < offset + count; i++) {
+            maxLength = Math.max(maxLength, lengths[i]);
+        }
+        return maxLength <= 1;
+    }
+
+    private void copyStored(int length) throws EndOfData {
+        if (!speculative) {
+            if (outCount > out.length - length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, outCount + length));
+            }
+            // the bit buffer holds whole bytes after the alignment, then copy straight from the chunks
+            while (length > 0 && bitCount >= 8) {
+                out[outCount++] = (byte) bits(8);
+                length--;
+            }
+            if (length > 0) {
+                bitBuffer = 0;
+            }
+            while (length > 0) {
+                if (index == current.length && !nextChunk()) {
+                    throw END_OF_DATA;
+                }
+                int n = Math.min(length, current.length - index);
+                System.arraycopy(current, index, out, outCount, n);
+                index += n;
+                outCount += n;
+                length -= n;
+            }
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            int value = bits(8);
+            if (speculative) {
+                if (markerCount == markers.length) {
+                    markers = Arrays.copyOf(markers, markers.length * 2);
+                }
+                markers[markerCount++] = (char) value;
+            }
+            else {
+                if (outCount == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                out[outCount++] = (byte) value;
+            }
+        }
+    }
+
+    private void inflate(DeflateTables.Huffman literals, DeflateTables.Huffman distances) throws ZipException, EndOfData {
+        if (speculative) {
+            inflateMarkers(literals, distances);
+        }
+        else {
+            inflateBytes(literals, distances);
+        }
+    }
+
+    /**
+     * The inflate loops keep the bit buffer in locals. Every symbol with its extra bits takes at most 48 bits, so only
+     * a negative bit count after the fact tells that the data ran out.
+     */
+    private void inflateMarkers(DeflateTables.Huffman literals, DeflateTables.Huffman distances) throws ZipException, EndOfData {
+        final int[] literalTable = literals.table;
+        final int literalMask = literals.mask;
+        final int[] distanceTable = distances.table;
+        final int distanceMask = distances.mask;
+        char[] out = markers;
+        int position = markerCount;
+        long buffer = bitBuffer;
+        int count = bitCount;
+
+        try {
+            while (true) {
+                if (position > out.length - MAX_MATCH) {
+                    markers = out = Arrays.copyOf(out, out.length * 2);
+                }
+                if (count < 48) {
+                    bitBuffer = buffer;
+                    bitCount = count;
+                    fill();
+                    buffer = bitBuffer;
+                    count = bitCount;
+                }
+
+                int entry = literalTable[(int) buffer & literalMask];
+                int length = entry & 15;
+                buffer >>>= length;
+                count -= length;
+                if (length == 0 || count < 0) {
+                    invalidCode(count, literals.maxBits);
+                }
+                int symbol = entry >>> 4;
+
+                if (symbol < 256) {
+                    out[position++] = (char) symbol;
+                    continue;
+                }
+                if (symbol == 256) {
+                    return;
+                }
+                symbol -= 257;
+                if (symbol >= 29) {
+                    throw new ZipException("invalid literal/length code");
+                }
+                int extra = DeflateTables.LENGTH_EXTRA[symbol];
+                int matchLength = DeflateTables.LENGTH_BASE[symbol] + (int) (buffer & ((1L << extra) - 1));
+                buffer >>>= extra;
+                count -= extra;
+
+                entry = distanceTable[(int) buffer & distanceMask];
+                length = entry & 15;
+                buffer >>>= length;
+                count -= length;
+                if (length == 0 || count < 0) {
+                    invalidCode(count, distances.maxBits);
+                }
+                int distanceSymbol = entry >>> 4;
+                if (distanceSymbol >= 30) {
+                    throw new ZipException("invalid distance code");
+                }
+                extra = DeflateTables.DISTANCE_EXTRA[distanceSymbol];
+                int distance = DeflateTables.DISTANCE_BASE[distanceSymbol] + (int) (buffer & ((1L << extra) - 1));
+                buffer >>>= extra;
+                count -= extra;
+                if (count < 0) {
+                    throw END_OF_DATA;
+                }
+
+                int from = position - distance;
+                if (from < -WINDOW_SIZE) {
+                    throw new ZipException("invalid distance too far back");
+                }
+                int end = position + matchLength;
+                for (; from < 0 && position < end; from++) {
+                    out[position++] = (char) (MARKER + WINDOW_SIZE + from);
+                }
+                if (position == end) {
+                    continue;
+                }
+                if (distance >= end - position) {
+                    System.arraycopy(out, from, out, position, end - position);
+                    position = end;
+                }
+                else {
+                    while (position < end) {
+                        out[position++] = out[from++];
+                    }
+                }
+            }
+        } finally {
+            markerCount = position;
+            bitBuffer = buffer;
+            bitCount = count;
+        }
+    }
+
+    /**
+     * A code that is invalid or runs past the available bits, which is only an error if the data is complete.
+     */
+    private static void invalidCode(int count, int maxBits) throws ZipException, EndOfData {
+        if (count < maxBits) {
+            throw END_OF_DATA;
+        }
+        throw new ZipException("invalid code");
+    }
+
+    private boolean containsMarker(int from, int to) {
+        int any = 0;
+        for (int i = from; i < to; i++) {
+            any |= markers[i];
+        }
+        return any >= MARKER;
+    }
+
+    /**
+     * Continues with plain bytes, keeping the last 32 KiB (which hold no markers) as history.
+     */
+    private void switchToBytes() {
+        speculative = false;
+        out = new byte[WINDOW_SIZE + Math.max(expectedOutput - markerCount, WINDOW_SIZE)];
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            out[i] = (byte) markers[markerCount - WINDOW_SIZE + i];
+        }
+        historyStart = WINDOW_SIZE;
+        outCount = WINDOW_SIZE;
+    }
+
+    private void inflateBytes(DeflateTables.Huffman literals, DeflateTables.Huffman distances) throws ZipException, EndOfData {
+        final int[] literalTable = literals.table;
+        final int literalMask = literals.mask;
+        final int[] distanceTable = distances.table;
+        final int distanceMask = distances.mask;
+        byte[] out = this.out;
+        int position = outCount;
+        long buffer = bitBuffer;
+        int count = bitCount;
+
+        try {
+            while (true) {
+                if (position > out.length - MAX_MATCH) {
+                    this.out = out = Arrays.copyOf(out, out.length * 2);
+                }
+                if (count < 48) {
+                    bitBuffer = buffer;
+                    bitCount = count;
+                    fill();
+                    buffer = bitBuffer;
+                    count = bitCount;
+                }
+
+                int entry = literalTable[(int) buffer & literalMask];
+                int length = entry & 15;
+                buffer >>>= length;
+                count -= length;
+                if (length == 0 || count < 0) {
+                    invalidCode(count, literals.maxBits);
+                }
+                int symbol = entry >>> 4;
+
+                if (symbol < 256) {
+                    out[position++] = (byte) symbol;
+                    continue;
+                }
+                if (symbol == 256) {
+                    return;
+                }
+                symbol -= 257;
+                if (symbol >= 29) {
+                    throw new ZipException("invalid literal/length code");
+                }
+                int extra = DeflateTables.LENGTH_EXTRA[symbol];
+                int matchLength = DeflateTables.LENGTH_BASE[symbol] + (int) (buffer & ((1L << extra) - 1));
+                buffer >>>= extra;
+                count -= extra;
+
+                entry = distanceTable[(int) buffer & distanceMask];
+                length = entry & 15;
+                buffer >>>= length;
+                count -= length;
+                if (length == 0 || count < 0) {
+                    invalidCode(count, distances.maxBits);
+                }
+                int distanceSymbol = entry >>> 4;
+                if (distanceSymbol >= 30) {
+                    throw new ZipException("invalid distance code");
+                }
+                extra = DeflateTables.DISTANCE_EXTRA[distanceSymbol];
+                int distance = DeflateTables.DISTANCE_BASE[distanceSymbol] + (int) (buffer & ((1L << extra) - 1));
+                buffer >>>= extra;
+                count -= extra;
+                if (count < 0) {
+                    throw END_OF_DATA;
+                }
+                if (distance > position) {
+                    throw new ZipException("invalid distance too far back");
+                }
+
+                int from = position - distance;
+                if (distance >= matchLength) {
+                    System.arraycopy(out, from, out, position, matchLength);
+                    position += matchLength;
+                }
+                else {
+                    for (int i = 0; i < matchLength; i++) {
+                        out[position++] = out[from++];
+                    }
+                }
+            }
+        } finally {
+            outCount = position;
+            bitBuffer = buffer;
+            bitCount = count;
+        }
+    }
+
+    /**
+     * Finds the first bit offset in [fromBit, limitBit) that starts a plausible dynamic block header.
+     * A cheap test of the block type, the symbol counts and the code length code rules out almost all offsets
+     * before the header is actually read.
+     */
+    private long findDynamicBlock(long fromBit, long limitBit) {
+        long byteOffset = fromBit >>> 3;
+        int shift = (int) (fromBit & 7);
+        while (byteOffset * 8 + shift < limitBit) {
+            long next = peekLong(byteOffset);
+            long following = peekLong(byteOffset + Long.BYTES);
+            for (; shift < 8; shift++) {
+                long bit = byteOffset * 8 + shift;
+                if (bit >= limitBit) {
+                    return -1;
+                }
+                long low = shift == 0 ? next : next >>> shift | following << (64 - shift);
+                if (isPlausibleHeader(low, following >>> shift) && isValidHeader(bit)) {
+                    return bit;
+                }
+            }
+            shift = 0;
+            byteOffset++;
+        }
+        return -1;
+    }
+
+    /**
+     * @param low the 64 bits starting at the candidate offset
+     * @param high the (at least 56) bits following them
+     */
+    private static boolean isPlausibleHeader(long low, long high) {
+        if (((low >>> 1) & 3) != 2 || ((low >>> 3) & 31) > 29 || ((low >>> 8) & 31) > 29) {
+            return false;
+        }
+        // the code length code must be complete: the code lengths, seven bits at most, must fill 2^7 slots exactly
+        int codeLengthCount = (int) ((low >>> 13) & 15) + 4;
+        int used = 0;
+        for (int i = 0; i < codeLengthCount; i++) {
+            int position = 17 + 3 * i;
+            long value = position >= 64 ? high >>> (position - 64)
+                    : position > 61 ? low >>> position | high << (64 - position) : low >>> position;
+            int length = (int) (value & 7);
+            if (length != 0) {
+                used += 128 >>> length;
+            }
+        }
+        return used == 128;
+    }
+
+    private boolean isValidHeader(long bit) {
+        try {
+            seek(bit);
+            bits(3);
+            int literalCount = bits(5) + 257;
+            int distanceCount = bits(5) + 1;
+            readCodeLengths(literalCount, distanceCount);
+            return true;
+        } catch (ZipException | EndOfData e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the eight bytes starting at the given offset, zero past the end of the data
+     */
+    private long peekLong(long byteOffset) {
+        int chunk = (int) (byteOffset / chunkSize);
+        int offset = (int) (byteOffset - (long) chunk * chunkSize);
+        if (chunk < chunks.length && offset + Long.BYTES <= chunks[chunk].length) {
+            return (long) LONGS.get(chunks[chunk], offset);
+        }
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++, offset++) {
+            if (offset == chunkSize) {
+                chunk++;
+                offset = 0;
+            }
+            if (chunk >= chunks.length || offset >= chunks[chunk].length) {
+                break;
+            }
+            value |= (long) (chunks[chunk][offset] & 0xFF) << (8 * i);
+        }
+        return value;
+    }
+
+    private long position() {
+        return (chunkBase + index) * 8 - bitCount;
+    }
+
+    private void seek(long bit) throws EndOfData {
+        long byteOffset = bit >>> 3;
+        chunkNumber = (int) (byteOffset / chunkSize);
+        chunkBase = (long) chunkNumber * chunkSize;
+        current = chunkNumber < chunks.length ? chunks[chunkNumber] : new byte[0];
+        index = (int) Math.min(byteOffset - chunkBase, current.length);
+        bitBuffer = 0;
+        bitCount = 0;
+        bits((int) (bit & 7));
+    }
+
+    private int decode(DeflateTables.Huffman huffman) throws ZipException, EndOfData {
+        if (bitCount < huffman.maxBits) {
+            fill();
+        }
+        int entry = huffman.table[(int) (bitBuffer & huffman.mask)];
+        int length = entry & 15;
+        if (length > bitCount) {
+            throw END_OF_DATA;
+        }
+        if (length == 0) {
+            throw new ZipException("invalid code");
+        }
+        bitBuffer >>>= length;
+        bitCount -= length;
+
+        return entry >>> 4;
+    }
+
+    private void need(int count) throws EndOfData {
+        if (bitCount < count) {
+            fill();
+            if (bitCount < count) {
+                throw END_OF_DATA;
+            }
+        }
+    }
+
+    private int bits(int count) throws EndOfData {
+        if (count == 0) {
+            return 0;
+        }
+        need(count);
+        int value = (int) (bitBuffer & ((1L << count) - 1));
+        bitBuffer >>>= count;
+        bitCount -= count;
+
+        return value;
+    }
+
+    /**
+     * Tops up the bit buffer to at least 57 bits where the data allows. Bits above {@code bitCount} are either zero
+     * or the actual following bits, so that whole words can be or'ed in.
+     */
+    private void fill() {
+        if (index + Long.BYTES <= current.length) {
+            bitBuffer |= (long) LONGS.get(current, index) << bitCount;
+            int bytes = (63 - bitCount) >>> 3;
+            index += bytes;
+            bitCount += bytes << 3;
+            return;
+        }
+        while (bitCount <= 56) {
+            if (index == current.length && !nextChunk()) {
+                return;
+            }
+            bitBuffer |= (long) (current[index++] & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+    }
+
+    /**
+     * Moves on to the next chunk once the current one has been used up.
+     *
+     * @return false if there is no further data
+     */
+    private boolean nextChunk() {
+        if (chunkNumber + 1 >= chunks.length || current.length < chunkSize) {
+            return false;
+        }
+        chunkBase += current.length;
+        current = chunks[++chunkNumber];
+        index = 0;
+        return current.length > 0;
+    }
+}
@@ -0,0 +1,96 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seek index of a gzip file: checkpoints every so many compressed bytes, from which the file can be inflated
+ * without reading it from the start.
+ * <p>
+ * The index is stored as text, one checkpoint per line: the offset in the compressed file in bits, the number of
+ * uncompressed bytes before it and the deflated, Base64 encoded window, separated by spaces.
+ */
+public final class GzipIndex {
+    private final List<GzipCheckpoint> checkpoints;
+
+    private GzipIndex(List<GzipCheckpoint> checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    /**
+     * Inflates the whole file once to take the checkpoints.
+     *
+     * @param interval compressed bytes between checkpoints
+     */
+    public static GzipIndex build(InputStream compressed, long interval) throws IOException {
+        List<GzipCheckpoint> checkpoints = new ArrayList<>();
+        try (CheckpointingGzipInputStream in = new CheckpointingGzipInputStream(compressed, interval)) {
+            byte[] buffer = new byte[64 * 1024];
+            while (in.read(buffer) != -1) {
+                GzipCheckpoint checkpoint = in.checkpointFor(in.getPosition());
+                if (checkpoint != null && (checkpoints.isEmpty() || checkpoints.get(checkpoints.size() - 1) != checkpoint)) {
+                    checkpoints.add(checkpoint);
+                }
+            }
+        }
+        return new GzipIndex(checkpoints);
+    }
+
+    public static GzipIndex read(Path file) throws IOException {
+        List<GzipCheckpoint> checkpoints = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ");
+                if (fields.length != 3) {
+                    throw new IOException("Invalid line in gzip index " + file + ": " + line);
+                }
+                Map<String, Object> entry = new HashMap<>();
+                entry.put(GzipCheckpoint.BIT_OFFSET_FIELD, Long.parseLong(fields[0]));
+                entry.put(GzipCheckpoint.POSITION_FIELD, Long.parseLong(fields[1]));
+                entry.put(GzipCheckpoint.WINDOW_FIELD, fields[2]);
+                checkpoints.add(GzipCheckpoint.fromOffset(entry));
+            }
+        }
+        return new GzipIndex(checkpoints);
+    }
+
+    public void write(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            Map<String, Object> entry = new HashMap<>();
+            for (GzipCheckpoint checkpoint : checkpoints) {
+                checkpoint.writeTo(entry);
+                writer.write(checkpoint.getBitOffset() + " " + checkpoint.getPosition() + " " + entry.get(GzipCheckpoint.WINDOW_FIELD));
+                writer.newLine();
+            }
+        }
+    }
+
+    public List<GzipCheckpoint> getCheckpoints() {
+        return Collections.unmodifiableList(checkpoints);
+    }
+
+    /**
+     * @return the last checkpoint at or before the uncompressed position, or null to start at the beginning of the file
+     */
+    public GzipCheckpoint checkpointFor(long position) {
+        GzipCheckpoint found = null;
+        for (GzipCheckpoint checkpoint : checkpoints) {
+            if (checkpoint.getPosition() > position) {
+                break;
+            }
+            found = checkpoint;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,39 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the SHA-256 hash of everything read through it, used to recognise a file that has been
+ * published again without changes.
+ */
+public class HashingInputStream extends DigestInputStream {
+
+    public HashingInputStream(InputStream in) {
+        super(in, newDigest());
+    }
+
+    /**
+     * @return the hex encoded hash of the bytes read so far. Resets the digest.
+     */
+    public String getHash() {
+        byte[] hash = getMessageDigest().digest();
+        StringBuilder builder = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -2,44 +2,308 @@ package io.confluent.bootcamp.connect.http;
 
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 public class HttpCompressedSourceConfiguration extends AbstractConfig {
 
     final static String URL_CONFIG = "http.url";
+    final static String URL_TYPES_CONFIG = "http.url.types";
+    final static String URL_DAYS_CONFIG = "http.url.days";
+    // set by the connector for each task
+    final static String TASK_URLS_CONFIG = "task.urls";
+    final static String TASK_ID_CONFIG = "task.id";
+    // set by the worker, names the metrics of the tasks
+    final static String NAME_CONFIG = "name";
     final static String USERNAME_CONFIG = "http.user";
     final static String PASSWORD_CONFIG = "http.password";
     final static String TOPIC_CONFIG = "topic";
+    final static String CONNECT_TIMEOUT_CONFIG = "http.connect.timeout.ms";
+    final static long CONNECT_TIMEOUT_DEFAULT = 30 * 1_000; // 30 s
+    final static String READ_TIMEOUT_CONFIG = "http.read.timeout.ms";
+    final static long READ_TIMEOUT_DEFAULT = 60 * 1_000; // 1 min
 
     final static String PAGE_SIZE_CONFIG = "page.size.lines";
     final static int PAGE_SIZE_DEFAULT = 10000;
+    final static String PAGE_SIZE_BYTES_CONFIG = "page.size.bytes";
+    final static long PAGE_SIZE_BYTES_DEFAULT = 32 * 1024 * 1024; // 32 MB
+    final static String PAGE_MAX_LATENCY_CONFIG = "page.max.latency.ms";
+    final static long PAGE_MAX_LATENCY_DEFAULT = 0; // wait for a full page, as before
+    final static String MAX_UNACKNOWLEDGED_BYTES_CONFIG = "max.unacknowledged.bytes";
+    final static long MAX_UNACKNOWLEDGED_BYTES_DEFAULT = 0; // no limit, as before
     final static String TASK_PAUSE_CONFIG = "task.pause.ms";
     final static long TASK_PAUSE_DEFAULT = 5 * 60 * 1_000; // 5 min
+    final static String CHECK_INTERVAL_MIN_CONFIG = "check.interval.min.ms";
+    final static long CHECK_INTERVAL_MIN_DEFAULT = 60 * 1_000; // 1 min
+    final static String CHECK_WINDOWS_CONFIG = "check.windows";
+    final static String CHECK_TIMEZONE_CONFIG = "check.timezone";
+    final static String CHECK_TIMEZONE_DEFAULT = "UTC";
+    final static String CHECKPOINT_INTERVAL_CONFIG = "checkpoint.interval.bytes";
+    final static long CHECKPOINT_INTERVAL_DEFAULT = 0; // disabled
+    final static String CHANGE_DETECTION_CONFIG = "change.detection";
+    final static String CHANGE_DETECTION_CONDITIONAL = "conditional";
+    final static String CHANGE_DETECTION_HEAD = "head";
+    final static String OUTPUT_FORMAT_CONFIG = "output.format";
+    final static String OUTPUT_FORMAT_STRING = "string";
+    final static String OUTPUT_FORMAT_BYTES = "bytes";
+    final static String OUTPUT_FORMAT_STRUCT = "struct";
+    final static String STRUCT_PARSE_THREADS_CONFIG = "struct.parse.threads";
+    final static int STRUCT_PARSE_THREADS_DEFAULT = 1; // parse on the task thread
+    final static String PIPELINE_ENABLED_CONFIG = "pipeline.enabled";
+    final static boolean PIPELINE_ENABLED_DEFAULT = false;
+    final static String PIPELINE_BUFFER_BYTES_CONFIG = "pipeline.buffer.bytes";
+    final static long PIPELINE_BUFFER_BYTES_DEFAULT = 32 * 1024 * 1024; // 32 MB
+    final static String KEY_FIELDS_CONFIG = "key.fields";
+    final static String KEY_SEPARATOR_CONFIG = "key.separator";
+    final static String KEY_SEPARATOR_DEFAULT = "/";
+    final static String DELTA_ENABLED_CONFIG = "delta.enabled";
+    final static boolean DELTA_ENABLED_DEFAULT = false;
+    final static String DELTA_STATE_DIR_CONFIG = "delta.state.dir";
+    final static String TRANSACTION_COMMIT_CONFIG = "transaction.commit";
+    final static String TRANSACTION_COMMIT_PAGE = "page";
+    final static String TRANSACTION_COMMIT_BYTES = "bytes";
+    final static String TRANSACTION_COMMIT_FILE = "file";
+    final static String TRANSACTION_COMMIT_BYTES_CONFIG = "transaction.commit.bytes";
+    final static long TRANSACTION_COMMIT_BYTES_DEFAULT = 64 * 1024 * 1024; // 64 MB
+    final static String DECOMPRESSION_THREADS_CONFIG = "decompression.threads";
+    final static int DECOMPRESSION_THREADS_DEFAULT = 1; // inflate on the task thread
+    final static String DECOMPRESSION_CHUNK_BYTES_CONFIG = "decompression.chunk.bytes";
+    final static int DECOMPRESSION_CHUNK_BYTES_DEFAULT = 1024 * 1024; // 1 MB
+    final static String COMPRESSION_CODEC_CONFIG = "compression.codec";
+    final static String ROUTES_CONFIG = "routes";
+    final static String ROUTE_UNMATCHED_CONFIG = "route.unmatched";
+    final static String ROUTE_UNMATCHED_DROP = "drop";
+    final static String ROUTE_UNMATCHED_TOPIC = "topic";
+    final static String SHARDS_PER_FILE_CONFIG = "shards.per.file";
+    final static int SHARDS_PER_FILE_DEFAULT = 1; // one task reads the whole file
+    final static String TASK_SHARDS_CONFIG = "task.shards";
+    final static String SPOOL_DIR_CONFIG = "spool.dir";
+    final static String SPOOL_MAX_BYTES_CONFIG = "spool.max.bytes";
+    final static long SPOOL_MAX_BYTES_DEFAULT = 10L * 1024 * 1024 * 1024; // 10 GB
+    final static String SHARED_DOWNLOAD_CONFIG = "shared.download.enabled";
+    final static boolean SHARED_DOWNLOAD_DEFAULT = false;
+    final static String SHARED_BUFFER_BYTES_CONFIG = "shared.buffer.bytes";
+    final static long SHARED_BUFFER_BYTES_DEFAULT = 64 * 1024 * 1024; // 64 MB
+    final static String SHARED_SPILL_DIR_CONFIG = "shared.spill.dir";
+    final static String SHARED_SPILL_MAX_BYTES_CONFIG = "shared.spill.max.bytes";
+    final static long SHARED_SPILL_MAX_BYTES_DEFAULT = 10L * 1024 * 1024 * 1024; // 10 GB
+    final static String FEED_MODE_CONFIG = "feed.mode";
+    final static String FEED_MODE_FILE = "file";
+    final static String FEED_MODE_INCREMENTAL = "incremental";
+    final static String FEED_FULL_TYPE_CONFIG = "feed.full.type";
+    final static String FEED_FULL_TYPE_DEFAULT = "CIF_ALL_FULL_DAILY";
+    final static String FEED_FULL_DAY_CONFIG = "feed.full.day";
+    final static String FEED_FULL_DAY_DEFAULT = "toc-full";
+    final static String FEED_UPDATE_TYPE_CONFIG = "feed.update.type";
+    final static String FEED_UPDATE_TYPE_DEFAULT = "CIF_ALL_UPDATE_DAILY";
+    final static String FEED_UPDATE_DAY_PREFIX_CONFIG = "feed.update.day.prefix";
+    final static String FEED_UPDATE_DAY_PREFIX_DEFAULT = "toc-update-";
 
-    public String url;
+    public List<String> urls;
+    public List<String> taskUrls;
+    public String connectorName;
+    public String taskId;
     public String username;
     public String password;
     public String topic;
+    public long connectTimeout;
+    public long readTimeout;
     public int pageSize;
+    public long pageSizeBytes;
+    public long pageMaxLatency;
+    public long maxUnacknowledgedBytes;
     public long taskPause;
+    public long checkIntervalMin;
+    public List<String> checkWindows;
+    public ZoneId checkTimezone;
+    public long checkpointInterval;
+    public boolean headProbe;
+    public boolean bytesOutput;
+    public boolean structOutput;
+    public int structParseThreads;
+    public boolean pipelineEnabled;
+    public long pipelineBufferBytes;
+    public List<String> keyFields;
+    public String keySeparator;
+    public boolean deltaEnabled;
+    public String deltaStateDirectory;
+    public int decompressionThreads;
+    public String transactionCommit;
+    public long transactionCommitBytes;
+    public int decompressionChunkBytes;
+    public DecompressionCodec compressionCodec;
+    public List<LineRouter.Route> routes;
+    public boolean dropUnmatched;
+    public int shardsPerFile;
+    public List<FileShard> taskShards;
+    public String spoolDirectory;
+    public long spoolMaxBytes;
+    public boolean sharedDownload;
+    public long sharedBufferBytes;
+    public String sharedSpillDirectory;
+    public long sharedSpillMaxBytes;
+    public boolean incrementalFeed;
+    public String feedFullType;
+    public String feedFullDay;
+    public String feedUpdateType;
+    public String feedUpdateDayPrefix;
 
     static final ConfigDef CONFIG_DEF = new ConfigDef()
-            .define(URL_CONFIG, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE, ConfigDef.Importance.HIGH, "URL from which to read the compressed file ")
+            .define(URL_CONFIG, ConfigDef.Type.LIST, ConfigDef.NO_DEFAULT_VALUE, ConfigDef.Importance.HIGH, "URLs from which to read the compressed files")
+            .define(URL_TYPES_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM, "Values of the type parameter appended to each URL, for example CIF_ALL_FULL_DAILY")
+            .define(URL_DAYS_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM, "Values of the day parameter appended to each URL, for example toc-full or toc-update-mon")
             .define(USERNAME_CONFIG, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE, ConfigDef.Importance.HIGH, "Username for authentication")
             .define(PASSWORD_CONFIG, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE, ConfigDef.Importance.HIGH,"Password for authentication" )
             .define(TOPIC_CONFIG, ConfigDef.Type.STRING, ConfigDef.NO_DEFAULT_VALUE, ConfigDef.Importance.HIGH, "The topic to publish data to")
+            .define(CONNECT_TIMEOUT_CONFIG, ConfigDef.Type.LONG, CONNECT_TIMEOUT_DEFAULT, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, "Maximum time to establish a connection")
+            .define(READ_TIMEOUT_CONFIG, ConfigDef.Type.LONG, READ_TIMEOUT_DEFAULT, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, "Maximum time to wait for the response headers, and for more data while reading the file")
             .define(PAGE_SIZE_CONFIG, ConfigDef.Type.INT, PAGE_SIZE_DEFAULT, ConfigDef.Importance.MEDIUM, "Number of lines poll returns each go")
-            .define(TASK_PAUSE_CONFIG, ConfigDef.Type.LONG, TASK_PAUSE_DEFAULT, ConfigDef.Importance.MEDIUM, "Task pause before returning if nothing to do");
+            .define(PAGE_SIZE_BYTES_CONFIG, ConfigDef.Type.LONG, PAGE_SIZE_BYTES_DEFAULT, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, "Most bytes of lines poll returns each go, the page ends with the line that reaches it")
+            .define(PAGE_MAX_LATENCY_CONFIG, ConfigDef.Type.LONG, PAGE_MAX_LATENCY_DEFAULT, ConfigDef.Range.atLeast(0), ConfigDef.Importance.LOW, "Longest time poll spends filling a page before it returns the lines read so far, 0 waits for a full page")
+            .define(MAX_UNACKNOWLEDGED_BYTES_CONFIG, ConfigDef.Type.LONG, MAX_UNACKNOWLEDGED_BYTES_DEFAULT, ConfigDef.Range.atLeast(0), ConfigDef.Importance.LOW, "About how many bytes of records may be handed to the worker but not written to Kafka yet, pages shrink and poll waits when they reach it, 0 for no limit")
+            .define(TASK_PAUSE_CONFIG, ConfigDef.Type.LONG, TASK_PAUSE_DEFAULT, ConfigDef.Importance.MEDIUM, "Longest time between checks for a new file, the time between checks backs off to it")
+            .define(CHECK_INTERVAL_MIN_CONFIG, ConfigDef.Type.LONG, CHECK_INTERVAL_MIN_DEFAULT, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, "Time between the first checks for a new file after a file has been read, doubling up to task.pause.ms")
+            .define(CHECK_WINDOWS_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.LOW, "Daily windows HH:mm-HH:mm in which new files are published, checks outside them wait for the next window")
+            .define(CHECK_TIMEZONE_CONFIG, ConfigDef.Type.STRING, CHECK_TIMEZONE_DEFAULT, ConfigDef.Importance.LOW, "Time zone of the check windows and of the days of the incremental feed, for example Europe/London")
+            .define(CHECKPOINT_INTERVAL_CONFIG, ConfigDef.Type.LONG, CHECKPOINT_INTERVAL_DEFAULT, ConfigDef.Range.atLeast(0), ConfigDef.Importance.LOW, "Compressed bytes between resume checkpoints stored in the offset, 0 disables checkpoints")
+            .define(CHANGE_DETECTION_CONFIG, ConfigDef.Type.STRING, CHANGE_DETECTION_CONDITIONAL, ConfigDef.ValidString.in(CHANGE_DETECTION_CONDITIONAL, CHANGE_DETECTION_HEAD), ConfigDef.Importance.LOW, "Check for a new file with a conditional GET or with a HEAD request")
+            .define(OUTPUT_FORMAT_CONFIG, ConfigDef.Type.STRING, OUTPUT_FORMAT_STRING, ConfigDef.ValidString.in(OUTPUT_FORMAT_STRING, OUTPUT_FORMAT_BYTES, OUTPUT_FORMAT_STRUCT), ConfigDef.Importance.MEDIUM, "Write lines as strings, as raw bytes (to be used with the ByteArrayConverter) or parsed into structs")
+            .define(STRUCT_PARSE_THREADS_CONFIG, ConfigDef.Type.INT, STRUCT_PARSE_THREADS_DEFAULT, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, "Threads parsing lines into structs, 1 parses on the task thread")
+            .define(PIPELINE_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN, PIPELINE_ENABLED_DEFAULT, ConfigDef.Importance.LOW, "Download and decompress on a background thread, poll only hands out buffered lines")
+            .define(PIPELINE_BUFFER_BYTES_CONFIG, ConfigDef.Type.LONG, PIPELINE_BUFFER_BYTES_DEFAULT, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, "Maximum memory used by lines buffered in pipelined mode")
+            .define(KEY_FIELDS_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM, "JSON fields that make up the record key, fields joined with + are combined, the first entry present in a line is used")
+            .define(KEY_SEPARATOR_CONFIG, ConfigDef.Type.STRING, KEY_SEPARATOR_DEFAULT, ConfigDef.Importance.LOW, "Separator between combined key fields")
+            .define(DELTA_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN, DELTA_ENABLED_DEFAULT, ConfigDef.Importance.MEDIUM, "Only write lines that were not in the previous version of the file, and tombstones for keys that are gone")
+            .define(DELTA_STATE_DIR_CONFIG, ConfigDef.Type.STRING, "", ConfigDef.Importance.MEDIUM, "Local directory holding the fingerprints of the previous version of each file, required in delta mode")
+            .define(DECOMPRESSION_THREADS_CONFIG, ConfigDef.Type.INT, DECOMPRESSION_THREADS_DEFAULT, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, "Threads inflating the file in parallel, 1 inflates on a single thread with the JDK inflater")
+            .define(ROUTES_CONFIG, ConfigDef.Type.LIST, "", ConfigDef.Importance.MEDIUM, "Names of the routes that pick the topic of a line, each configured with routes.<name>.type, routes.<name>.match and routes.<name>.topic")
+            .define(ROUTE_UNMATCHED_CONFIG, ConfigDef.Type.STRING, ROUTE_UNMATCHED_DROP, ConfigDef.ValidString.in(ROUTE_UNMATCHED_DROP, ROUTE_UNMATCHED_TOPIC), ConfigDef.Importance.MEDIUM, "With routes, drop the lines no route matches or write them to topic")
+            .define(SHARDS_PER_FILE_CONFIG, ConfigDef.Type.INT, SHARDS_PER_FILE_DEFAULT, ConfigDef.Range.between(1, 64), ConfigDef.Importance.MEDIUM, "Number of byte ranges each gzip file is split into, to be read by different tasks")
+            .define(SPOOL_DIR_CONFIG, ConfigDef.Type.STRING, "", ConfigDef.Importance.MEDIUM, "Local directory to which files are downloaded at full speed before their lines are read, empty to read them straight from the network")
+            .define(SPOOL_MAX_BYTES_CONFIG, ConfigDef.Type.LONG, SPOOL_MAX_BYTES_DEFAULT, ConfigDef.Range.atLeast(0), ConfigDef.Importance.LOW, "Size of spool.dir above which the least recently used files are deleted")
+            .define(SHARED_DOWNLOAD_CONFIG, ConfigDef.Type.BOOLEAN, SHARED_DOWNLOAD_DEFAULT, ConfigDef.Importance.MEDIUM, "Share one download and decompression of each version of a file between all tasks of the worker that read the same URL")
+            .define(SHARED_BUFFER_BYTES_CONFIG, ConfigDef.Type.LONG, SHARED_BUFFER_BYTES_DEFAULT, ConfigDef.Range.atLeast(0), ConfigDef.Importance.LOW, "Memory used by the lines of a shared download that have not been read by all of its tasks")
+            .define(SHARED_SPILL_DIR_CONFIG, ConfigDef.Type.STRING, "", ConfigDef.Importance.LOW, "Local directory for the lines of a shared download that do not fit into shared.buffer.bytes, empty for the temporary directory")
+            .define(SHARED_SPILL_MAX_BYTES_CONFIG, ConfigDef.Type.LONG, SHARED_SPILL_MAX_BYTES_DEFAULT, ConfigDef.Range.atLeast(0), ConfigDef.Importance.LOW, "Size of the spilled lines of a shared download above which it waits for its slowest task")
+            .define(FEED_MODE_CONFIG, ConfigDef.Type.STRING, FEED_MODE_FILE, ConfigDef.ValidString.in(FEED_MODE_FILE, FEED_MODE_INCREMENTAL), ConfigDef.Importance.HIGH, "Read each URL as a file whenever it changes, or as a feed: its full file once, then the update file of every following day")
+            .define(FEED_FULL_TYPE_CONFIG, ConfigDef.Type.STRING, FEED_FULL_TYPE_DEFAULT, ConfigDef.Importance.LOW, "Value of the type parameter of the full file of the incremental feed")
+            .define(FEED_FULL_DAY_CONFIG, ConfigDef.Type.STRING, FEED_FULL_DAY_DEFAULT, ConfigDef.Importance.LOW, "Value of the day parameter of the full file of the incremental feed")
+            .define(FEED_UPDATE_TYPE_CONFIG, ConfigDef.Type.STRING, FEED_UPDATE_TYPE_DEFAULT, ConfigDef.Importance.LOW, "Value of the type parameter of the update files of the incremental feed")
+            .define(FEED_UPDATE_DAY_PREFIX_CONFIG, ConfigDef.Type.STRING, FEED_UPDATE_DAY_PREFIX_DEFAULT, ConfigDef.Importance.LOW, "Value of the day parameter of the update files of the incremental feed, followed by mon to sun")
+            .define(COMPRESSION_CODEC_CONFIG, ConfigDef.Type.STRING, DecompressionCodecs.AUTO, ConfigDef.ValidString.in(DecompressionCodecs.names().toArray(new String[0])), ConfigDef.Importance.MEDIUM, "Compression of the files, auto tells it from the first bytes of the file, or from the Content-Encoding or Content-Type of the response")
+            .define(DECOMPRESSION_CHUNK_BYTES_CONFIG, ConfigDef.Type.INT, DECOMPRESSION_CHUNK_BYTES_DEFAULT, ConfigDef.Range.atLeast(64 * 1024), ConfigDef.Importance.LOW, "Compressed bytes inflated per parallel task")
+            .define(TRANSACTION_COMMIT_CONFIG, ConfigDef.Type.STRING, TRANSACTION_COMMIT_PAGE, ConfigDef.ValidString.in(TRANSACTION_COMMIT_PAGE, TRANSACTION_COMMIT_BYTES, TRANSACTION_COMMIT_FILE), ConfigDef.Importance.LOW, "With transaction.boundary=connector, commit a transaction after every page, after transaction.commit.bytes of lines, or after every file")
+            .define(TRANSACTION_COMMIT_BYTES_CONFIG, ConfigDef.Type.LONG, TRANSACTION_COMMIT_BYTES_DEFAULT, ConfigDef.Range.atLeast(1), ConfigDef.Importance.LOW, "Bytes of lines per transaction with transaction.commit=bytes, rounded up to whole pages");
 
     public HttpCompressedSourceConfiguration(Map<?, ?> originals) {
         super(CONFIG_DEF, originals);
 
-        url = getString(URL_CONFIG);
+        urls = expandUrls(getList(URL_CONFIG), getList(URL_TYPES_CONFIG), getList(URL_DAYS_CONFIG));
+        var assigned = originalsStrings().get(TASK_URLS_CONFIG);
+        taskUrls = assigned != null ? split(assigned) : urls;
+        taskShards = new ArrayList<>();
+        for (String shard : split(originalsStrings().getOrDefault(TASK_SHARDS_CONFIG, ""))) {
+            taskShards.add(FileShard.parse(shard));
+        }
+        connectorName = originalsStrings().getOrDefault(NAME_CONFIG, "http-compressed-source");
+        taskId = originalsStrings().getOrDefault(TASK_ID_CONFIG, "0");
         username = getString(USERNAME_CONFIG);
         password = getString(PASSWORD_CONFIG);
         topic = getString(TOPIC_CONFIG);
+        connectTimeout = getLong(CONNECT_TIMEOUT_CONFIG);
+        readTimeout = getLong(READ_TIMEOUT_CONFIG);
         pageSize = getInt(PAGE_SIZE_CONFIG);
+        pageSizeBytes = getLong(PAGE_SIZE_BYTES_CONFIG);
+        pageMaxLatency = getLong(PAGE_MAX_LATENCY_CONFIG);
+        maxUnacknowledgedBytes = getLong(MAX_UNACKNOWLEDGED_BYTES_CONFIG);
         taskPause = getLong(TASK_PAUSE_CONFIG);
+        checkIntervalMin = getLong(CHECK_INTERVAL_MIN_CONFIG);
+        checkWindows = getList(CHECK_WINDOWS_CONFIG);
+        CheckScheduler.parseWindows(checkWindows);
+        try {
+            checkTimezone = ZoneId.of(getString(CHECK_TIMEZONE_CONFIG));
+        } catch (DateTimeException e) {
+            throw new ConfigException(CHECK_TIMEZONE_CONFIG, getString(CHECK_TIMEZONE_CONFIG), e.getMessage());
+        }
+        checkpointInterval = getLong(CHECKPOINT_INTERVAL_CONFIG);
+        headProbe = CHANGE_DETECTION_HEAD.equals(getString(CHANGE_DETECTION_CONFIG));
+        bytesOutput = OUTPUT_FORMAT_BYTES.equals(getString(OUTPUT_FORMAT_CONFIG));
+        structOutput = OUTPUT_FORMAT_STRUCT.equals(getString(OUTPUT_FORMAT_CONFIG));
+        structParseThreads = getInt(STRUCT_PARSE_THREADS_CONFIG);
+        pipelineEnabled = getBoolean(PIPELINE_ENABLED_CONFIG);
+        pipelineBufferBytes = getLong(PIPELINE_BUFFER_BYTES_CONFIG);
+        keyFields = getList(KEY_FIELDS_CONFIG);
+        keySeparator = getString(KEY_SEPARATOR_CONFIG);
+        deltaEnabled = getBoolean(DELTA_ENABLED_CONFIG);
+        deltaStateDirectory = getString(DELTA_STATE_DIR_CONFIG);
+        if (deltaEnabled && deltaStateDirectory.isEmpty()) {
+            throw new ConfigException(DELTA_STATE_DIR_CONFIG, deltaStateDirectory, "Delta mode needs a state directory");
+        }
+        spoolDirectory = getString(SPOOL_DIR_CONFIG);
+        spoolMaxBytes = getLong(SPOOL_MAX_BYTES_CONFIG);
+        incrementalFeed = FEED_MODE_INCREMENTAL.equals(getString(FEED_MODE_CONFIG));
+        if (incrementalFeed && !(getList(URL_TYPES_CONFIG).isEmpty() && getList(URL_DAYS_CONFIG).isEmpty())) {
+            throw new ConfigException(URL_TYPES_CONFIG, getList(URL_TYPES_CONFIG), "The incremental feed picks the type and day of its files itself");
+        }
+        if (incrementalFeed && deltaEnabled) {
+            throw new ConfigException(DELTA_ENABLED_CONFIG, true, "Delta mode compares versions of a whole file, the incremental feed reads updates");
+        }
+        feedFullType = getString(FEED_FULL_TYPE_CONFIG);
+        feedFullDay = getString(FEED_FULL_DAY_CONFIG);
+        feedUpdateType = getString(FEED_UPDATE_TYPE_CONFIG);
+        feedUpdateDayPrefix = getString(FEED_UPDATE_DAY_PREFIX_CONFIG);
+        shardsPerFile = getInt(SHARDS_PER_FILE_CONFIG);
+        if (shardsPerFile > 1 && (deltaEnabled || incrementalFeed)) {
+            throw new ConfigException(SHARDS_PER_FILE_CONFIG, shardsPerFile, "Shards cannot be combined with delta mode or the incremental feed, which read whole files");
+        }
+        if (shardsPerFile > 1 && !spoolDirectory.isEmpty()) {
+            throw new ConfigException(SPOOL_DIR_CONFIG, spoolDirectory, "Shards are read with Range requests and cannot be spooled");
+        }
+        sharedDownload = getBoolean(SHARED_DOWNLOAD_CONFIG);
+        sharedBufferBytes = getLong(SHARED_BUFFER_BYTES_CONFIG);
+        sharedSpillDirectory = getString(SHARED_SPILL_DIR_CONFIG);
+        if (sharedSpillDirectory.isEmpty()) {
+            sharedSpillDirectory = System.getProperty("java.io.tmpdir");
+        }
+        sharedSpillMaxBytes = getLong(SHARED_SPILL_MAX_BYTES_CONFIG);
+        if (sharedDownload && (shardsPerFile > 1 || !spoolDirectory.isEmpty())) {
+            throw new ConfigException(SHARED_DOWNLOAD_CONFIG, true, "A shared download reads whole files from the network, it cannot be combined with shards or a spool");
+        }
+        decompressionThreads = getInt(DECOMPRESSION_THREADS_CONFIG);
+        decompressionChunkBytes = getInt(DECOMPRESSION_CHUNK_BYTES_CONFIG);
+        compressionCodec = DecompressionCodecs.forName(getString(COMPRESSION_CODEC_CONFIG));
+        routes = LineRouter.parse(getList(ROUTES_CONFIG), originalsStrings(), topic);
+        dropUnmatched = ROUTE_UNMATCHED_DROP.equals(getString(ROUTE_UNMATCHED_CONFIG));
+        transactionCommit = getString(TRANSACTION_COMMIT_CONFIG);
+        transactionCommitBytes = getLong(TRANSACTION_COMMIT_BYTES_CONFIG);
+    }
+
+    /**
+     * Adds every combination of the type and day parameters to every URL, the way RailScheduleDownloader builds its URL.
+     */
+    static List<String> expandUrls(List<String> baseUrls, List<String> types, List<String> days) {
+        return appendParameter(appendParameter(baseUrls, "type", types), "day", days);
+    }
+
+    private static List<String> split(String values) {
+        return values.isEmpty() ? List.of() : List.of(values.split(","));
+    }
+
+    private static List<String> appendParameter(List<String> urls, String name, List<String> values) {
+        if (values.isEmpty()) {
+            return urls;
+        }
+        List<String> expanded = new ArrayList<>();
+        for (String url : urls) {
+            for (String value : values) {
+                expanded.add(url + (url.contains("?") ? "&" : "?") + name + "=" + value);
+            }
+        }
+        return expanded;
     }
 }
@@ -2,19 +2,33 @@ package io.confluent.bootcamp.connect.http;
 
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.connect.connector.Task;
+import org.apache.kafka.connect.source.ConnectorTransactionBoundaries;
 import org.apache.kafka.connect.source.ExactlyOnceSupport;
 import org.apache.kafka.connect.source.SourceConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 public class HttpCompressedSourceConnector extends SourceConnector {
+    private static final Logger logger = LoggerFactory.getLogger(HttpCompressedSourceConnector.class);
 
     private Map<String, String> props;
+    private List<String> urls;
+    private ShardPlanner planner = null;
     @Override
     public void start(Map<String, String> props) {
         this.props = props;
+        HttpCompressedSourceConfiguration config = new HttpCompressedSourceConfiguration(props);
+        this.urls = config.urls;
+        if (config.shardsPerFile > 1) {
+            // the tasks are configured again whenever a file has been split anew
+            planner = new ShardPlanner(config, context);
+            planner.start();
+        }
     }
 
     @Override
@@ -24,17 +38,74 @@ public class HttpCompressedSourceConnector extends SourceConnector {
 
     @Override
     public List<Map<String, String>> taskConfigs(int maxTasks) {
+        if (planner != null) {
+            return shardConfigs(maxTasks);
+        }
+
+        // Each file is read by one task only, hand them out round-robin
+        int tasks = Math.min(maxTasks, urls.size());
+        List<List<String>> assignments = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            assignments.add(new ArrayList<>());
+        }
+        for (int i = 0; i < urls.size(); i++) {
+            assignments.get(i % tasks).add(urls.get(i));
+        }
+
         List<Map<String, String>> configs = new ArrayList<>();
+        for (List<String> assignment : assignments) {
+            Map<String, String> config = new HashMap<>(props);
+            config.put(HttpCompressedSourceConfiguration.TASK_URLS_CONFIG, String.join(",", assignment));
+            config.put(HttpCompressedSourceConfiguration.TASK_ID_CONFIG, String.valueOf(configs.size()));
+            configs.add(config);
+        }
+        logger.info("Distributing {} file(s) across {} task(s)", urls.size(), configs.size());
+
+        return configs;
+    }
 
-        // Only one input stream makes sense.
-        configs.add(props);
+    /**
+     * Hands out the shards of the files split so far round-robin, so that the shards of a file go to different
+     * tasks. A file that could not be split is read as a whole. There are no tasks until a file has been split.
+     */
+    private List<Map<String, String>> shardConfigs(int maxTasks) {
+        List<FileShard> shards = planner.getShards();
+        int tasks = Math.min(maxTasks, shards.size());
+        List<List<String>> urlAssignments = new ArrayList<>();
+        List<List<String>> shardAssignments = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            urlAssignments.add(new ArrayList<>());
+            shardAssignments.add(new ArrayList<>());
+        }
+        for (int i = 0; i < shards.size(); i++) {
+            FileShard shard = shards.get(i);
+            if (shard.getCount() == 1) {
+                urlAssignments.get(i % tasks).add(shard.getUrl());
+            }
+            else {
+                shardAssignments.get(i % tasks).add(shard.toString());
+            }
+        }
+
+        List<Map<String, String>> configs = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            Map<String, String> config = new HashMap<>(props);
+            config.put(HttpCompressedSourceConfiguration.TASK_URLS_CONFIG, String.join(",", urlAssignments.get(i)));
+            config.put(HttpCompressedSourceConfiguration.TASK_SHARDS_CONFIG, String.join(",", shardAssignments.get(i)));
+            config.put(HttpCompressedSourceConfiguration.TASK_ID_CONFIG, String.valueOf(i));
+            configs.add(config);
+        }
+        logger.info("Distributing {} shard(s) of {} file(s) across {} task(s)", shards.size(), urls.size(), configs.size());
 
         return configs;
     }
 
     @Override
     public void stop() {
-        // nothing to do?
+        if (planner != null) {
+            planner.close();
+        }
+        planner = null;
     }
 
     @Override
@@ -49,6 +120,17 @@ public class HttpCompressedSourceConnector extends SourceConnector {
 
     @Override
     public ExactlyOnceSupport exactlyOnceSupport(Map<String, String> props) {
-        return ExactlyOnceSupport.UNSUPPORTED;
+        if (new HttpCompressedSourceConfiguration(props).deltaEnabled) {
+            // the fingerprints of delta mode are kept on local disk, outside of the transactions
+            return ExactlyOnceSupport.UNSUPPORTED;
+        }
+        // the offset of the last record of every page says exactly where to continue, spooled and shared
+        // downloads only hold the content of the version the offset belongs to
+        return ExactlyOnceSupport.SUPPORTED;
+    }
+
+    @Override
+    public ConnectorTransactionBoundaries canDefineTransactionBoundaries(Map<String, String> props) {
+        return ConnectorTransactionBoundaries.SUPPORTED;
     }
 }
@@ -1,41 +1,52 @@
 package io.confluent.bootcamp.connect.http;
 
-import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.source.SourceTask;
+import org.apache.kafka.connect.source.TransactionContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.net.Authenticator;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import org.apache.kafka.connect.errors.ConnectException;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.zip.GZIPInputStream;
-
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the files assigned to this task by the connector. A file is read to its end (or until there is nothing to do)
+ * before the task moves on to the next one, and the task only pauses once none of its files has anything to do.
+ */
 public class HttpCompressedSourceTask extends SourceTask {
     private static final Logger logger = LoggerFactory.getLogger(HttpCompressedSourceTask.class);
-    private static final String URL_FIELD = "url";
-    private static final String TIMESTAMP_FIELD = "timestamp";
-    private static final String CURRENT_LINE_FIELD = "current_line";
-    private static final String EOF_REACHED_FIELD = "eof_reached";
     public static final String EOF_TRUE = "{\"EOF\":true}";
-
-    private HttpURLConnection httpConn;
+    static final byte[] EOF_TRUE_BYTES = EOF_TRUE.getBytes(StandardCharsets.US_ASCII);
+    // longest time poll() waits for the next check, so that the worker gets its thread back regularly
+    private static final long MAX_IDLE_WAIT_MS = 1000;
+    // time between looks at the acknowledged records while the producer is behind
+    private static final long ACKNOWLEDGEMENT_WAIT_MS = 10;
 
     private HttpCompressedSourceConfiguration config;
-    private BufferedReader bufferedReader = null;
-
-    long lastModified = 0;
-    long totalLines = 0;
-
-    boolean reachedOEF = false;
+    private HttpTransport transport;
+    private TaskMetrics metrics;
+    private ExecutorService inflaters = null;
+    private ForkJoinPool parsers = null;
+    private StructParser structParser = null;
+    // replaced as a whole, never changed, so that stop() can close the sources while poll() goes through them
+    private volatile List<HttpFileSource> sources = List.of();
+    private int nextSource = 0;
+    private TransactionContext transactionContext = null;
+    private long transactionBytes = 0;
+    private final CountDownLatch stopping = new CountDownLatch(1);
+    // records handed to the worker that the producer has not acknowledged yet, see commitRecord
+    private final AtomicLong unacknowledgedRecords = new AtomicLong();
+    private long returnedRecords = 0;
+    private long returnedBytes = 0;
 
     @Override
     public String version() {
@@ -47,253 +58,221 @@ public class HttpCompressedSourceTask extends SourceTask {
         logger.info("Starting HttpCompressedSource Connector");
         config = new HttpCompressedSourceConfiguration(props);
 
-        Authenticator.setDefault(new BasicAuthenticator(config.username, config.password));
-    }
-
-    @Override
-    public List<SourceRecord> poll() throws InterruptedException {
-        long linesToSkip = 0;
-
-        if (httpConn == null) {
-            lastModified = openHttpConnection();
-
-            Map<String, Object> offset = context.offsetStorageReader().offset(Collections.singletonMap(URL_FIELD, config.url));
-            if (offset != null) {
-                //   Find the date first from the offset and compare it with the date from the header
-                //   Is it the same date?
-                //      Look for the EOF marker
-                //      If Set --> Synchronized Wait
-                //      Else
-                //         Find offset
-                //           Skip offset messages
-                //         Edge case -> Offset date is set but nothing read yet ?? Not possible
-                Long lastTimestamp = (Long) offset.get(TIMESTAMP_FIELD);
-                Long current_line = (Long) offset.get(CURRENT_LINE_FIELD);
-                Boolean eof_set = (Boolean) offset.get(EOF_REACHED_FIELD);
+        // a client of its own, so that connectors with different credentials do not get in each other's way
+        transport = new HttpTransport(config.username, config.password, config.connectTimeout, config.readTimeout);
+        metrics = new TaskMetrics(config.connectorName, config.taskId);
 
-                if (lastTimestamp == lastModified) {
-                    if (!eof_set) {
-                        if (!reachedOEF) {
-                            // We have been here before but got interrupted.
-                            linesToSkip = current_line;
-                            totalLines = current_line;
-                            logger.info("Found current line in offset {}", current_line);
-                        }
-                        else {
-                            // offset have not caught up yet, disconnect and sleep for a while
-                            httpConn.disconnect();
-                            httpConn = null;
-
-                            logger.info("Offset has not caught up yet, offset at {}, totalLines at {}. Sleep for {} ms", current_line, totalLines, config.taskPause);
-
-                            synchronized (this) {
-                                this.wait(config.taskPause);
-                            }
-
-                            return null;
-                        }
-                    }
-                    else {
-                        // standard case: we have processed today's file and there is nothing to do for now
-                        httpConn.disconnect();
-                        httpConn = null;
-
-                        logger.info("Nothing to do, sleeping for {} ms", config.taskPause);
-
-                        synchronized (this) {
-                            this.wait(config.taskPause);
-                        }
-
-                        return null;
-                    }
-                }
-                else {
-                    // need to reset the state
-                    resetState();
-                }
+        if (config.deltaEnabled && config.checkpointInterval > 0) {
+            logger.warn("Delta mode reads files from their start, ignoring {}", HttpCompressedSourceConfiguration.CHECKPOINT_INTERVAL_CONFIG);
+            config.checkpointInterval = 0;
+        }
+        if (!config.spoolDirectory.isEmpty() && config.checkpointInterval > 0) {
+            logger.warn("Spooled downloads continue from the bytes on disk, ignoring {}", HttpCompressedSourceConfiguration.CHECKPOINT_INTERVAL_CONFIG);
+            config.checkpointInterval = 0;
+        }
+        if (config.sharedDownload && config.checkpointInterval > 0) {
+            logger.warn("Shared downloads are read from their start, ignoring {}", HttpCompressedSourceConfiguration.CHECKPOINT_INTERVAL_CONFIG);
+            config.checkpointInterval = 0;
+        }
 
+        if (config.decompressionThreads > 1) {
+            if (config.checkpointInterval > 0) {
+                logger.warn("Checkpoints need the sequential inflater, ignoring {}", HttpCompressedSourceConfiguration.DECOMPRESSION_THREADS_CONFIG);
             }
-            // If there is no offset, we have not tried to read anything yet -> start fresh
             else {
-                resetState();
+                inflaters = Executors.newFixedThreadPool(config.decompressionThreads, new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "HttpCompressedSourceTask-inflater-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
             }
         }
 
-        // skip lines if call was interrupted
-        // read n lines from stream (pagination)
-        //    Create Record with line, set line as offset
-        //    If EOF encountered (and/or stream closed), set EOF marker, close stream, exit method with remaining records
-        //    if maximum lines hit, exit the method with the records
-
-        try {
-            if (bufferedReader == null) {
-                GZIPInputStream uncompressStream = new GZIPInputStream(httpConn.getInputStream());
-                Reader decoder = new InputStreamReader(uncompressStream, StandardCharsets.US_ASCII);
-                bufferedReader = new BufferedReader(decoder);
+        if (config.structOutput) {
+            if (config.structParseThreads > 1) {
+                parsers = new ForkJoinPool(config.structParseThreads);
             }
+            structParser = new StructParser(parsers);
+        }
 
-            if (linesToSkip > 0) {
-                logger.info("Skipping {} lines", linesToSkip);
-                while (linesToSkip > 0 && bufferedReader.ready()) {
-                    bufferedReader.readLine();
-                    linesToSkip -= 1;
-                }
-                if (linesToSkip > 0) {
-                    logger.warn("Could not skip all lines, lines left to skip : {}", linesToSkip);
+        // only there if the worker runs exactly once with transaction.boundary=connector
+        transactionContext = context.transactionContext();
+        if (transactionContext != null) {
+            logger.info("Committing a transaction per {}", config.transactionCommit);
+        }
+
+        List<HttpFileSource> sources = new ArrayList<>();
+        for (String url : config.taskUrls) {
+            sources.add(new HttpFileSource(url, config, transport, inflaters, context.offsetStorageReader(), metrics.forFile(url)));
+        }
+        for (FileShard shard : config.taskShards) {
+            sources.add(new HttpFileSource(shard, config, transport, inflaters, context.offsetStorageReader(),
+                    metrics.forFile(shard.getUrl() + "#shard-" + shard.getIndex())));
+            logger.info("Reading shard {} of {}", shard.getName(), shard.getUrl());
+        }
+        this.sources = List.copyOf(sources);
+        logger.info("Reading {} file(s): {}", config.taskUrls.size(), config.taskUrls);
+    }
+
+    @Override
+    public List<SourceRecord> poll() throws InterruptedException {
+        if (isStopping()) {
+            return null;
+        }
+        long started = System.nanoTime();
+        List<HttpFileSource> sources = this.sources;
+        TaskMetrics metrics = this.metrics;
+        long maxBytes = unacknowledgedBudget();
+        if (maxBytes <= 0) {
+            // the producer is behind, leave the worker time to send what it has
+            stopping.await(ACKNOWLEDGEMENT_WAIT_MS, TimeUnit.MILLISECONDS);
+            return null;
+        }
+        for (int checked = 0; checked < sources.size(); checked++) {
+            HttpFileSource source = sources.get(nextSource);
+            List<SourceRecord> records;
+            try {
+                records = source.poll(maxBytes);
+            } catch (RuntimeException e) {
+                if (isStopping()) {
+                    // stop() closed the download under the source
+                    logger.debug("Ignoring error of a stopped task", e);
+                    return null;
                 }
+                throw e;
+            }
+            if (isStopping()) {
+                return null;
             }
 
-            int currentLine = 0;
-            List<SourceRecord> records = new ArrayList<>();
-            while (bufferedReader.ready()) {
-                String line = bufferedReader.readLine();
-                if (line.equals(EOF_TRUE)) {
-                    reachedOEF = true;
-                }
-                else {
-                    // prevents edge case of closing page on EOF if number hit just that leve
-                    currentLine++;
+            if (!source.isBusy()) {
+                // done with this file for now, give the next one a turn
+                nextSource = (nextSource + 1) % sources.size();
+            }
+            if (records != null || source.isBusy()) {
+                if (records != null) {
+                    countReturned(records);
                 }
-
-                totalLines++;
-
-                records.add(
-                        new SourceRecord(
-                                offsetKey(),
-                                offsetValue(lastModified, totalLines, reachedOEF),
-                                config.topic,
-                                null,
-                                null,
-                                null,
-                                Schema.STRING_SCHEMA,
-                                line,
-                                System.currentTimeMillis())
-                );
-
-                if (currentLine >= config.pageSize) {
-                    logger.info("Page Size {} reached, returning {} records, total lines {}", config.pageSize, records.size(), totalLines);
-                    return records;
+                if (transactionContext != null && records != null) {
+                    defineTransactionBoundary(source, records);
                 }
-                if (reachedOEF) {
-                    closeReaderAndConnection();
-                    logger.info("EOF reached, returning {} records, total lines {}", records.size(), totalLines);
-
-                    return records;
+                if (structParser != null && records != null) {
+                    records = structParser.convert(records);
                 }
+                metrics.recordPoll(System.nanoTime() - started, records != null ? records.size() : 0);
+                return records;
             }
+        }
 
-            logger.warn("Should never get here. This means the file did not end with {}}",EOF_TRUE);
-
-            // Add dummy record to ensure the connector pauses until the timestamp changes
-
-            reachedOEF = true;
-
-            records.add(
-                    new SourceRecord(
-                            offsetKey(),
-                            offsetValue(lastModified, totalLines, true),
-                            config.topic,
-                            null,
-                            null,
-                            null,
-                            Schema.STRING_SCHEMA,
-                            EOF_TRUE,
-                            System.currentTimeMillis())
-            );
-            closeReaderAndConnection();
-
-            return records;
-        } catch (IOException e) {
-            // Something went wrong. Log it, return null
-            logger.error("Something went wrong!", e);
+        // nothing to do until the next check, wait for it a little while unless the task is stopped
+        long nextCheck = Long.MAX_VALUE;
+        for (HttpFileSource source : sources) {
+            nextCheck = Math.min(nextCheck, source.getNextCheck());
         }
+        long wait = Math.min(MAX_IDLE_WAIT_MS, nextCheck - System.currentTimeMillis());
+        if (wait > 0) {
+            stopping.await(wait, TimeUnit.MILLISECONDS);
+        }
+
         return null;
     }
 
-    private void resetState() {
-        logger.info("Resetting state");
-
-        totalLines = 0;
-        reachedOEF = false;
+    /**
+     * @return how many more bytes of lines the next page may hold before max.unacknowledged.bytes is reached, estimated
+     * from the number of unacknowledged records and the average size of a line so far, as records in struct format
+     * no longer have a size of their own
+     */
+    private long unacknowledgedBudget() {
+        if (config.maxUnacknowledgedBytes == 0 || returnedRecords == 0) {
+            return Long.MAX_VALUE;
+        }
+        long averageBytes = returnedBytes / returnedRecords;
+        return config.maxUnacknowledgedBytes - unacknowledgedRecords.get() * averageBytes;
     }
 
-    private void closeReaderAndConnection() throws IOException {
-        logger.info("Closing reader and connection");
-
-        bufferedReader.close();
-        bufferedReader = null;
-        httpConn.disconnect();
-        httpConn = null;
+    private void countReturned(List<SourceRecord> records) {
+        unacknowledgedRecords.addAndGet(records.size());
+        returnedRecords += records.size();
+        for (SourceRecord record : records) {
+            returnedBytes += valueBytes(record);
+        }
     }
 
-    private Map<String, String> offsetKey() {
-        return Collections.singletonMap(URL_FIELD, config.url);
+    private static long valueBytes(SourceRecord record) {
+        Object value = record.value();
+        return value instanceof byte[] ? ((byte[]) value).length : value instanceof String ? ((String) value).length() : 0;
     }
 
-    private Map<String, ?> offsetValue(long timestamp, long currentLine, boolean eof) {
-        Map<String, Object> map = new HashMap<>();
-        map.put(TIMESTAMP_FIELD, timestamp);
-        map.put(CURRENT_LINE_FIELD, currentLine);
-        map.put(EOF_REACHED_FIELD, eof);
-
-        return map;
+    /**
+     * Called by the worker for every record once the producer has acknowledged it, or once it has been dropped by a
+     * transformation or an error that is tolerated.
+     */
+    @Override
+    public void commitRecord(SourceRecord record, RecordMetadata metadata) {
+        unacknowledgedRecords.decrementAndGet();
     }
-    private long openHttpConnection() {
-        long lastModified;
-        try {
-            URL obj = new URL(config.url);
-            httpConn = (HttpURLConnection) obj.openConnection();
-
-            int responseCode = httpConn.getResponseCode();
 
-            if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
-                logger.error("Failed to authenticate user {}", config.username);
-                throw new ConnectException("Failed to authenticate user " + config.username);
-            }
-            else if (responseCode != HttpURLConnection.HTTP_OK) {
-                logger.error("Failed for unknown reason with {}", responseCode);
-                throw new ConnectException("Failed for unknown reason with " + responseCode);
-            }
-            else { // we got 200, let's proceed
-                var disposition = httpConn.getHeaderField("Content-Disposition");
-                var contentType = httpConn.getContentType();
-                var contentLength = httpConn.getContentLength();
-                lastModified = httpConn.getLastModified();
-                var lastModifiedFromHeader = httpConn.getHeaderField("Last-Modified");
-
-                logger.info("HttpURLConnection::Disposition: {}", disposition);
-                logger.info("HttpURLConnection::contentType: {}", contentType);
-                logger.info("HttpURLConnection::contentLength: {}", contentLength);
-                logger.info("HttpURLConnection::lastModified: {}", lastModifiedFromHeader);
-            }
-
-        } catch (MalformedURLException e) {
-            logger.error("Error in URL {}", config.url, e);
-            throw new ConnectException(e);
-        } catch (IOException e) {
-            logger.error("Error while connecting to {}", config.url, e);
-            throw new ConnectException(e);
+    /**
+     * Commits the transaction after this batch of records if it completes a page, enough bytes or the file.
+     * Transactions always end with a page, whose last record carries the offset to continue from.
+     */
+    private void defineTransactionBoundary(HttpFileSource source, List<SourceRecord> records) {
+        boolean endOfFile = !source.isBusy();
+        switch (config.transactionCommit) {
+            case HttpCompressedSourceConfiguration.TRANSACTION_COMMIT_PAGE:
+                transactionContext.commitTransaction();
+                return;
+            case HttpCompressedSourceConfiguration.TRANSACTION_COMMIT_BYTES:
+                for (SourceRecord record : records) {
+                    transactionBytes += valueBytes(record);
+                }
+                if (endOfFile || transactionBytes >= config.transactionCommitBytes) {
+                    transactionContext.commitTransaction();
+                    transactionBytes = 0;
+                }
+                return;
+            default:
+                if (endOfFile) {
+                    transactionContext.commitTransaction();
+                }
         }
+    }
 
-        return lastModified;
+    private boolean isStopping() {
+        return stopping.getCount() == 0;
     }
 
+    /**
+     * Called by the worker, possibly while poll() is running on another thread. Closing the sources unblocks a poll
+     * waiting on the network, which then returns nothing, as does every poll after this.
+     */
     @Override
     public void stop() {
         logger.info("Invoked stop"); // TODO should be trace
+        stopping.countDown();
 
-        if (bufferedReader != null) {
-            try {
-                bufferedReader.close();
-            } catch (IOException e) {
-                throw new ConnectException(e);
-            }
+        for (HttpFileSource source : sources) {
+            source.close();
+        }
+
+        if (inflaters != null) {
+            inflaters.shutdownNow();
+        }
+        inflaters = null;
+
+        if (parsers != null) {
+            parsers.shutdownNow();
         }
-        bufferedReader = null;
+        parsers = null;
 
-        if (httpConn != null) {
-            httpConn.disconnect();
+        if (metrics != null) {
+            metrics.close();
         }
-        httpConn = null;
+        metrics = null;
     }
 }
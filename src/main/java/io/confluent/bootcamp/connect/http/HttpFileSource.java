@@ -0,0 +1,1180 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.storage.OffsetStorageReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipException;
+
+/**
+ * Downloads one compressed file and turns its lines into records, keeping its own offsets keyed by the URL.
+ * In incremental feed mode, the URL is that of a feed whose full and update files are read in turn, see
+ * {@link UpdateFeed}. With shards, it reads one {@link FileShard} of the file, keeping its offsets keyed by the URL
+ * and the shard. With shared downloads, the lines of a version of the file come from a {@link SharedDownload} that
+ * other tasks of the worker read as well. A {@link HttpCompressedSourceTask} polls one or more of these in turn.
+ */
+public class HttpFileSource {
+    private static final Logger logger = LoggerFactory.getLogger(HttpFileSource.class);
+    private static final String URL_FIELD = "url";
+    private static final String SHARD_FIELD = "shard";
+    private static final String TIMESTAMP_FIELD = "timestamp";
+    private static final String CURRENT_LINE_FIELD = "current_line";
+    private static final String EOF_REACHED_FIELD = "eof_reached";
+    private static final String POSITION_FIELD = "position";
+    private static final String ETAG_FIELD = "etag";
+    private static final String CONTENT_LENGTH_FIELD = "content_length";
+    private static final String CONTENT_HASH_FIELD = "content_hash";
+    private static final long NOTHING_TO_DO = -1;
+    private static final long ALREADY_INGESTED = -2;
+    // downloads of a version that may break off and be continued before the next check continues it
+    private static final int MAX_RETRIES = 3;
+    private static final DateTimeFormatter HTTP_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+
+    private final String url;
+    private final FileShard shard;
+    private final HttpCompressedSourceConfiguration config;
+    private final HttpTransport transport;
+    private final ExecutorService inflaters;
+    private final OffsetStorageReader offsetStorageReader;
+    private final TaskMetrics.FileMetrics metrics;
+    private final KeyExtractor keyExtractor;
+    private final LineRouter router;
+    private final DeltaTracker delta;
+    private final UpdateFeed feed;
+    private final DownloadSpool spool;
+    private final CheckScheduler scheduler;
+    private final Map<String, String> sourcePartition;
+
+    private HttpResponse<InputStream> response;
+    // the body of the response has been handed to a shared download, which closes it
+    private boolean responseShared = false;
+    private LineReader lineReader = null;
+
+    long lastModified = 0;
+    String lastModifiedHeader = null;
+    String etag = null;
+    long contentLength = -1;
+    String contentHash = null;
+    long totalLines = 0;
+
+    boolean reachedOEF = false;
+    // downloads of failedVersion that broke off, and the last version that turned out to be corrupt
+    private int failedAttempts = 0;
+    private long failedVersion = 0;
+    private long brokenVersion = 0;
+    // a download that broke off and could not be reopened yet, the next poll tries again from the same place
+    private boolean resumePending = false;
+    private GzipCheckpoint resumeCheckpoint = null;
+    private long resumePosition = 0;
+    // offset of the last record handed out, shared by all records of the current page but its last one
+    private Map<String, ?> pageOffset = null;
+
+    /**
+     * @param inflaters threads for parallel decompression, null to inflate on the polling thread
+     */
+    public HttpFileSource(String url, HttpCompressedSourceConfiguration config, HttpTransport transport,
+                          ExecutorService inflaters, OffsetStorageReader offsetStorageReader, TaskMetrics.FileMetrics metrics) {
+        this(url, null, config, transport, inflaters, offsetStorageReader, metrics);
+    }
+
+    /**
+     * Reads one shard of the version of the file it was split from.
+     */
+    public HttpFileSource(FileShard shard, HttpCompressedSourceConfiguration config, HttpTransport transport,
+                          ExecutorService inflaters, OffsetStorageReader offsetStorageReader, TaskMetrics.FileMetrics metrics) {
+        this(shard.getUrl(), shard, config, transport, inflaters, offsetStorageReader, metrics);
+    }
+
+    private HttpFileSource(String url, FileShard shard, HttpCompressedSourceConfiguration config, HttpTransport transport,
+                           ExecutorService inflaters, OffsetStorageReader offsetStorageReader, TaskMetrics.FileMetrics metrics) {
+        this.url = url;
+        this.shard = shard;
+        this.config = config;
+        this.transport = transport;
+        this.inflaters = inflaters;
+        this.offsetStorageReader = offsetStorageReader;
+        this.metrics = metrics;
+        this.keyExtractor = config.keyFields.isEmpty() ? null : new KeyExtractor(config.keyFields, config.keySeparator);
+        this.router = config.routes.isEmpty() ? null : new LineRouter(config.routes, config.dropUnmatched ? null : config.topic);
+        this.delta = config.deltaEnabled ? new DeltaTracker(Path.of(config.deltaStateDirectory), url) : null;
+        this.feed = config.incrementalFeed ? new UpdateFeed(url, config) : null;
+        this.spool = config.spoolDirectory.isEmpty() ? null : new DownloadSpool(Path.of(config.spoolDirectory), config.spoolMaxBytes, transport, url);
+        this.scheduler = new CheckScheduler(config.checkIntervalMin, config.taskPause, config.checkWindows, config.checkTimezone);
+        this.sourcePartition = shard == null ? Collections.singletonMap(URL_FIELD, url) : Map.of(URL_FIELD, url, SHARD_FIELD, shard.getName());
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the time of the next check for a new file in milliseconds since the epoch, in the past if it is due
+     */
+    public long getNextCheck() {
+        return scheduler.getNextCheck();
+    }
+
+    /**
+     * @return true while a download is open, false once the file has been read to the end or there was nothing to do
+     */
+    public boolean isBusy() {
+        return response != null || lineReader != null || resumePending;
+    }
+
+    /**
+     * Checks for a new file if no download is open, and reads the next page of lines.
+     *
+     * @return the records read, or null if there is nothing to do or the download is behind
+     */
+    public List<SourceRecord> poll() {
+        return poll(Long.MAX_VALUE);
+    }
+
+    /**
+     * Reads the next page, which ends after page.size.lines lines, after page.size.bytes or maxBytes bytes of lines
+     * (whichever is less), or once page.max.latency.ms have passed, whatever comes first.
+     *
+     * @return the records read, or null if there is nothing to do or the download is behind
+     */
+    public List<SourceRecord> poll(long maxBytes) {
+        long started = System.nanoTime();
+        long linesToSkip = 0;
+
+        if (resumePending) {
+            resume(resumeCheckpoint, resumePosition);
+            if (response == null) {
+                return null;
+            }
+        }
+        else if (response == null) {
+            if (!scheduler.isDue(System.currentTimeMillis())) {
+                return null;
+            }
+            Map<String, Object> offset = offsetStorageReader.offset(sourcePartition);
+            pageOffset = null;
+
+            linesToSkip = shard != null ? openShard(offset) : feed != null ? openFeedDownload(offset) : openDownload(offset);
+            if (linesToSkip == NOTHING_TO_DO) {
+                scheduler.unchanged(System.currentTimeMillis());
+                logger.info("Nothing new at {}, next check at {}", fileUrl(), Instant.ofEpochMilli(scheduler.getNextCheck()));
+                return null;
+            }
+            if (linesToSkip == ALREADY_INGESTED) {
+                // Record the new timestamp, so that the same content is not checked again
+                reachedOEF = true;
+                Long current_line = (Long) offset.get(CURRENT_LINE_FIELD);
+                totalLines = current_line != null ? current_line : 0;
+                SourceRecord eofRecord = eofRecord();
+                metrics.recordsReturned(lastModified);
+                completed();
+
+                return Collections.singletonList(eofRecord);
+            }
+            if (response == null) {
+                // the download could not be resumed, see resume()
+                return null;
+            }
+        }
+
+        // skip lines if call was interrupted
+        // read n lines from stream (pagination)
+        //    Create Record with line, set line as offset
+        //    If EOF encountered (and/or stream closed), set EOF marker, close stream, exit method with remaining records
+        //    if maximum lines hit, exit the method with the records
+
+        List<SourceRecord> records = new ArrayList<>();
+        try {
+            if (lineReader == null) {
+                openReader(response.body());
+            }
+
+            if (linesToSkip > 0) {
+                skipLines(linesToSkip);
+            }
+            if (pageOffset == null) {
+                pageOffset = offsetValue(lastModified, totalLines, false);
+            }
+
+            long timestamp = System.currentTimeMillis();
+            int currentLine = 0;
+            long pageBytes = 0;
+            long byteLimit = Math.min(config.pageSizeBytes, maxBytes);
+            long latencyLimit = config.pageMaxLatency > 0 ? TimeUnit.MILLISECONDS.toNanos(config.pageMaxLatency) : Long.MAX_VALUE;
+            while (true) {
+                if (!records.isEmpty() && !lineReader.ready()) {
+                    // pipelined download is behind, hand out what we have instead of waiting
+                    return completePage(records);
+                }
+                byte[] line = lineReader.readLine();
+                if (line == null) {
+                    if (!lineReader.isFinished()) {
+                        return records.isEmpty() ? null : completePage(records);
+                    }
+                    break;
+                }
+
+                if (LineSplitter.isEofMarker(line)) {
+                    reachedOEF = true;
+                    finishDownload();
+                    addTombstones(records, timestamp);
+                }
+                else {
+                    // prevents edge case of closing page on EOF if number hit just that leve
+                    currentLine++;
+                    pageBytes += line.length;
+                }
+
+                totalLines++;
+
+                String topic = reachedOEF ? config.topic : route(line);
+                byte[] key = topic != null ? extractKey(line) : null;
+                // in delta mode, lines that were in the previous version only count towards the page
+                if (topic != null && (delta == null || reachedOEF || delta.isNew(line, deltaKey(topic, key)))) {
+                    records.add(
+                            new SourceRecord(
+                                    sourcePartition,
+                                    reachedOEF ? offsetValue(lastModified, totalLines, true) : pageOffset,
+                                    topic,
+                                    null,
+                                    keySchema(),
+                                    key(key),
+                                    valueSchema(),
+                                    value(line),
+                                    timestamp)
+                    );
+                }
+
+                if (shard != null && !reachedOEF && lineReader.getPosition() >= shard.getEnd()) {
+                    return completeShard(records);
+                }
+                if (currentLine >= config.pageSize) {
+                    logger.info("Page Size {} reached, returning {} records, total lines {}", config.pageSize, records.size(), totalLines);
+                    return completePage(records);
+                }
+                if (!reachedOEF && pageBytes >= byteLimit) {
+                    logger.debug("{} bytes of lines read, returning {} records, total lines {}", pageBytes, records.size(), totalLines);
+                    return completePage(records);
+                }
+                if (!reachedOEF && !records.isEmpty() && System.nanoTime() - started >= latencyLimit) {
+                    // the download is slow, hand out what we have rather than keep the worker waiting
+                    logger.debug("Page took {} ms, returning {} records, total lines {}", config.pageMaxLatency, records.size(), totalLines);
+                    return completePage(records);
+                }
+                if (reachedOEF) {
+                    closeReaderAndConnection();
+                    logger.info("EOF reached, returning {} records, total lines {}", records.size(), totalLines);
+                    metrics.recordsReturned(lastModified);
+                    completed();
+
+                    return records;
+                }
+            }
+
+            logger.warn("Should never get here. This means the file did not end with {}}", HttpCompressedSourceTask.EOF_TRUE);
+
+            // Add dummy record to ensure the connector pauses until the timestamp changes
+
+            reachedOEF = true;
+            contentHash = lineReader.getContentHash();
+
+            addTombstones(records, System.currentTimeMillis());
+            records.add(eofRecord());
+            closeReaderAndConnection();
+            metrics.recordsReturned(lastModified);
+            completed();
+
+            return records;
+        } catch (IOException e) {
+            GzipCheckpoint checkpoint = lineReader != null ? lineReader.getCheckpoint() : null;
+            completePage(records);
+            if (e instanceof ZipException) {
+                // a CRC or a trailer that does not match, or data that is not deflate: no download of this version
+                // gets any further, read the next one. A body that ends early is an EOFException and resumed below.
+                logger.error("Version {} of {} is corrupt after line {}, waiting for a new version", lastModified, fileUrl(), totalLines, e);
+                brokenVersion = lastModified;
+                closeQuietly();
+                scheduler.unchanged(System.currentTimeMillis());
+            }
+            else if (!mayRetry()) {
+                retryAtNextCheck(e);
+            }
+            else if (shard != null) {
+                logger.warn("Download of shard {} interrupted after line {}, resuming", shard.getName(), totalLines, e);
+                resume(checkpoint != null ? checkpoint : shard.getCheckpoint(), lineReader != null ? lineReader.getPosition() : shard.getStart());
+            }
+            else if (checkpoint != null) {
+                // The download broke off, continue from the last checkpoint instead of starting over
+                logger.warn("Download interrupted after line {}, resuming from compressed byte {}", totalLines, checkpoint.getByteOffset(), e);
+                resume(checkpoint, lineReader.getPosition());
+            }
+            else {
+                logger.warn("Download interrupted after line {}, downloading the file again", totalLines, e);
+                resume(null, 0);
+            }
+            return records.isEmpty() ? null : records;
+        }
+    }
+
+    /**
+     * Opens the download again after it broke off: a shard or the file from the checkpoint, or from the start without
+     * one, with the reader positioned at the line that starts at position. If that breaks off as well, the next poll
+     * tries again from the same place, until {@link #mayRetry()} gives up and the next check continues.
+     *
+     * @return false if the download is not open, a shard also if the file has changed since it was split
+     */
+    private boolean resume(GzipCheckpoint checkpoint, long position) {
+        resumePending = false;
+        try {
+            if (shard != null) {
+                return readShard(checkpoint, position);
+            }
+            if (checkpoint != null) {
+                resumeFromCheckpoint(checkpoint, position);
+            }
+            else {
+                restartDownload();
+            }
+            return true;
+        } catch (IOException e) {
+            if (!mayRetry()) {
+                retryAtNextCheck(e);
+                return false;
+            }
+            logger.warn("Could not resume the download of {} at line {}, trying again", fileUrl(), totalLines, e);
+            closeQuietly();
+            resumePending = true;
+            resumeCheckpoint = checkpoint;
+            resumePosition = position;
+            return false;
+        }
+    }
+
+    private void retryAtNextCheck(IOException e) {
+        logger.error("Download of version {} of {} broke off {} times after line {}, continuing at the next check",
+                lastModified, fileUrl(), MAX_RETRIES + 1, totalLines, e);
+        failedAttempts = 0;
+        closeQuietly();
+        scheduler.unchanged(System.currentTimeMillis());
+    }
+
+    /**
+     * Counts the downloads of the current version that broke off, to be continued straight away MAX_RETRIES times.
+     */
+    private boolean mayRetry() {
+        if (failedVersion != lastModified) {
+            failedVersion = lastModified;
+            failedAttempts = 0;
+        }
+        failedAttempts++;
+        return failedAttempts <= MAX_RETRIES;
+    }
+
+    /**
+     * Gives the last record of the page the current offset, the others keep the offset of the previous page.
+     * Connect only stores the offset of the last record sent before a commit, so a restart at worst repeats one page.
+     */
+    private List<SourceRecord> completePage(List<SourceRecord> records) {
+        int last = records.size() - 1;
+        if (last >= 0 && records.get(last).sourceOffset() == pageOffset) {
+            SourceRecord record = records.get(last);
+            pageOffset = offsetValue(lastModified, totalLines, false);
+            records.set(last, new SourceRecord(sourcePartition, pageOffset, record.topic(), record.kafkaPartition(),
+                    record.keySchema(), record.key(), record.valueSchema(), record.value(), record.timestamp()));
+        }
+        if (last >= 0) {
+            metrics.recordsReturned(lastModified);
+        }
+        return records;
+    }
+
+    /**
+     * The last line of the shard has been read, its record gets the offset that marks the shard as done. Only the
+     * last shard, which ends with the file, writes the EOF record.
+     */
+    private List<SourceRecord> completeShard(List<SourceRecord> records) throws IOException {
+        reachedOEF = true;
+        int last = records.size() - 1;
+        if (last >= 0) {
+            SourceRecord record = records.get(last);
+            pageOffset = offsetValue(lastModified, totalLines, true);
+            records.set(last, new SourceRecord(sourcePartition, pageOffset, record.topic(), record.kafkaPartition(),
+                    record.keySchema(), record.key(), record.valueSchema(), record.value(), record.timestamp()));
+            metrics.recordsReturned(lastModified);
+        }
+        closeReaderAndConnection();
+        logger.info("End of shard {} reached, returning {} records, total lines {}", shard.getName(), records.size(), totalLines);
+        completed();
+        return records;
+    }
+
+    /**
+     * Adds a tombstone for every key of the previous version of the file that is gone in this one.
+     */
+    private void addTombstones(List<SourceRecord> records, long timestamp) throws IOException {
+        if (delta == null) {
+            return;
+        }
+        for (byte[] key : delta.finish()) {
+            String topic = config.topic;
+            if (router != null) {
+                // the key of a routed line starts with its topic
+                int end = indexOf(key, (byte) 0);
+                topic = new String(key, 0, end, StandardCharsets.UTF_8);
+                key = Arrays.copyOfRange(key, end + 1, key.length);
+            }
+            records.add(new SourceRecord(
+                    sourcePartition,
+                    pageOffset,
+                    topic,
+                    null,
+                    keySchema(),
+                    key(key),
+                    null,
+                    null,
+                    timestamp));
+        }
+    }
+
+    /**
+     * The file has been read to its end. The next check comes after check.interval.min.ms, or straight away if the
+     * update feed is catching up on days it missed.
+     */
+    private void completed() {
+        long now = System.currentTimeMillis();
+        if (feed != null) {
+            feed.completed(lastModified);
+            if (feed.isBehind(now)) {
+                logger.info("Catching up with the update of {} for {}", feed.getTarget(), url);
+                scheduler.catchUp(now);
+                return;
+            }
+        }
+        scheduler.completed(now);
+    }
+
+    private SourceRecord eofRecord() {
+        return new SourceRecord(
+                sourcePartition,
+                offsetValue(lastModified, totalLines, true),
+                config.topic,
+                null,
+                keySchema(),
+                null,
+                valueSchema(),
+                value(HttpCompressedSourceTask.EOF_TRUE_BYTES),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Opens the download, if there is anything to download, based on the stored offset.
+     *
+     * @return the number of lines to skip, {@link #NOTHING_TO_DO} if the file has not changed, or
+     * {@link #ALREADY_INGESTED} if the file has a new timestamp but the same content as the file last ingested.
+     */
+    private long openDownload(Map<String, Object> offset) {
+        // If there is no offset, we have not tried to read anything yet -> start fresh
+        if (offset == null) {
+            if (brokenVersion != 0) {
+                return openAfterBroken(null);
+            }
+            lastModified = openHttpConnection(0);
+            resetState();
+            return 0;
+        }
+
+        Long lastTimestamp = (Long) offset.get(TIMESTAMP_FIELD);
+        Long current_line = (Long) offset.get(CURRENT_LINE_FIELD);
+        Boolean eof_set = (Boolean) offset.get(EOF_REACHED_FIELD);
+
+        if (!eof_set) {
+            if (reachedOEF) {
+                logger.info("Offset has not caught up yet, offset at {}, totalLines at {}", current_line, totalLines);
+                return NOTHING_TO_DO;
+            }
+
+            if (lastTimestamp == brokenVersion) {
+                return openAfterBroken((String) offset.get(ETAG_FIELD));
+            }
+
+            // We have been here before but got interrupted.
+            GzipCheckpoint checkpoint = config.checkpointInterval > 0 ? GzipCheckpoint.fromOffset(offset) : null;
+            Long linePosition = (Long) offset.get(POSITION_FIELD);
+            if (checkpoint != null && linePosition != null) {
+                // go straight to the Range request, If-Range makes sure it is still the same file
+                lastModified = lastTimestamp;
+                lastModifiedHeader = formatHttpDate(lastTimestamp);
+                etag = (String) offset.get(ETAG_FIELD);
+                contentLength = offset.get(CONTENT_LENGTH_FIELD) != null ? (Long) offset.get(CONTENT_LENGTH_FIELD) : -1;
+                totalLines = current_line;
+                logger.info("Found current line in offset {}", current_line);
+
+                resume(checkpoint, linePosition);
+                return 0;
+            }
+
+            lastModified = openHttpConnection(0);
+            if (lastTimestamp == lastModified) {
+                totalLines = current_line;
+                logger.info("Found current line in offset {}", current_line);
+                return current_line;
+            }
+            resetState();
+            return 0;
+        }
+
+        // standard case: we have processed a file, only download again once it has changed
+        if (!openIfChanged(lastTimestamp, (String) offset.get(ETAG_FIELD))) {
+            return NOTHING_TO_DO;
+        }
+        if (hasSameContent(offset)) {
+            logger.info("File was published again at {} with unchanged content, skipping it", lastModifiedHeader);
+            disconnect();
+            return ALREADY_INGESTED;
+        }
+        resetState();
+        return 0;
+    }
+
+    /**
+     * Opens the download once the corrupt version has been replaced by a new one.
+     *
+     * @return 0, or {@link #NOTHING_TO_DO} if it is still the same version
+     */
+    private long openAfterBroken(String lastEtag) {
+        if (!openIfChanged(brokenVersion, lastEtag)) {
+            return NOTHING_TO_DO;
+        }
+        resetState();
+        return 0;
+    }
+
+    /**
+     * Opens the shard at its start, or where the offset left off if it is from the same version of the file.
+     *
+     * @return 0, or {@link #NOTHING_TO_DO} if the shard has been read or the file has changed since it was split
+     */
+    private long openShard(Map<String, Object> offset) {
+        boolean sameVersion = offset != null && Long.valueOf(shard.getVersion()).equals(offset.get(TIMESTAMP_FIELD));
+        if ((sameVersion && (Boolean) offset.get(EOF_REACHED_FIELD)) || (reachedOEF && lastModified == shard.getVersion())
+                || brokenVersion == shard.getVersion()) {
+            // the connector hands out new shards once the file changes
+            return NOTHING_TO_DO;
+        }
+
+        lastModified = shard.getVersion();
+        lastModifiedHeader = formatHttpDate(lastModified);
+        etag = null;
+        GzipCheckpoint checkpoint = shard.getCheckpoint();
+        long position = shard.getStart();
+        if (sameVersion && offset.get(POSITION_FIELD) != null) {
+            totalLines = (Long) offset.get(CURRENT_LINE_FIELD);
+            position = (Long) offset.get(POSITION_FIELD);
+            GzipCheckpoint stored = GzipCheckpoint.fromOffset(offset);
+            if (stored != null) {
+                checkpoint = stored;
+            }
+            logger.info("Found current line in offset {}", totalLines);
+        }
+        else {
+            resetState();
+        }
+        return resume(checkpoint, position) || resumePending ? 0 : NOTHING_TO_DO;
+    }
+
+    /**
+     * Requests the file from the checkpoint on, or from its start without one, and positions the reader at the line
+     * that starts at position.
+     *
+     * @return false if the file has changed since it was split into shards
+     */
+    private boolean readShard(GzipCheckpoint checkpoint, long position) throws IOException {
+        closeQuietly();
+
+        long modified = reopen(checkpoint != null ? checkpoint.getByteOffset() : 0);
+        boolean partial = response.statusCode() == HttpURLConnection.HTTP_PARTIAL;
+        if (checkpoint != null ? !partial : modified != lastModified) {
+            logger.warn("{} has changed since it was split into shards, or the server ignores Range requests", url);
+            disconnect();
+            return false;
+        }
+
+        InputStream body = metrics.meter(response.body());
+        var shardStream = checkpoint != null
+                ? new CheckpointingGzipInputStream(body, checkpoint, config.checkpointInterval)
+                : new CheckpointingGzipInputStream(body, config.checkpointInterval);
+        skipTo(shardStream, position);
+        setLineReader(new DecompressingLineReader(shardStream, position));
+
+        logger.info("Reading shard {} of {} from line {} at uncompressed byte {}", shard.getName(), url, totalLines, position);
+        return true;
+    }
+
+    private static void skipTo(CheckpointingGzipInputStream in, long position) throws IOException {
+        long bytesToSkip = position - in.getPosition();
+        while (bytesToSkip > 0) {
+            long skipped = in.skip(bytesToSkip);
+            if (skipped <= 0) {
+                throw new EOFException("Could not skip to position " + position);
+            }
+            bytesToSkip -= skipped;
+        }
+    }
+
+    /**
+     * Opens the next file of the update feed: the file in the offset as in {@link #openDownload}, otherwise the
+     * update of the next day once it has been published, or the full file.
+     *
+     * @return the number of lines to skip, or {@link #NOTHING_TO_DO} if the update has not been published yet
+     */
+    private long openFeedDownload(Map<String, Object> offset) {
+        Boolean eof = offset != null ? (Boolean) offset.get(EOF_REACHED_FIELD) : null;
+        feed.start(offset, eof != null && eof);
+        if (feed.isCurrent(offset)) {
+            return openDownload(offset);
+        }
+        if (feed.isFull()) {
+            logger.info("Reading the full file of {}", url);
+            return openDownload(null);
+        }
+
+        // the update of the next day replaces that of the same day last week, which is older than the file read last
+        long previous = lastModified != 0 ? lastModified : (Long) offset.get(TIMESTAMP_FIELD);
+        if (!openIfChanged(previous, null)) {
+            if (!feed.isMissed(System.currentTimeMillis())) {
+                return NOTHING_TO_DO;
+            }
+            logger.warn("The update of {} is not available any more, reading the full file of {} again", feed.getTarget(), url);
+            feed.snapshot();
+            return openDownload(null);
+        }
+        if (feed.isMissed(lastModified)) {
+            logger.warn("The update of {} has been replaced by a later one, reading the full file of {} again", feed.getTarget(), url);
+            disconnect();
+            feed.snapshot();
+            return openDownload(null);
+        }
+        logger.info("Reading the update of {} for {}", feed.getTarget(), url);
+        resetState();
+        return 0;
+    }
+
+    /**
+     * Checks whether the file changed since it was last read, either with a conditional GET (a 304 response means
+     * unchanged) or with a HEAD request. On a change, the connection to the new file is left open.
+     */
+    private boolean openIfChanged(long lastTimestamp, String lastEtag) {
+        Map<String, String> conditions = new HashMap<>();
+        conditions.put("If-Modified-Since", formatHttpDate(lastTimestamp));
+        if (lastEtag != null) {
+            conditions.put("If-None-Match", lastEtag);
+        }
+
+        if (config.headProbe) {
+            int responseCode = connect("HEAD", conditions);
+            boolean unchanged = responseCode == HttpURLConnection.HTTP_NOT_MODIFIED
+                    || HttpTransport.lastModified(response) == lastTimestamp
+                    || (lastEtag != null && lastEtag.equals(HttpTransport.header(response, "ETag")));
+            finishEmptyResponse();
+            if (unchanged) {
+                return false;
+            }
+            lastModified = openHttpConnection(0);
+            return true;
+        }
+
+        int responseCode = connect("GET", conditions);
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            finishEmptyResponse();
+            return false;
+        }
+        lastModified = readResponseHeaders(responseCode, false);
+        if (lastModified == lastTimestamp) {
+            // the server ignored the conditions
+            disconnect();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Second guard against reading the same file twice: a strong ETag that did not change, or a file of the same
+     * length whose compressed bytes hash to the value stored when the last file was read completely.
+     * The latter reads the open download to the end without inflating it and reconnects if the content differs.
+     */
+    private boolean hasSameContent(Map<String, Object> offset) {
+        String lastEtag = (String) offset.get(ETAG_FIELD);
+        if (etag != null && !etag.startsWith("W/") && etag.equals(lastEtag)) {
+            contentHash = (String) offset.get(CONTENT_HASH_FIELD);
+            return true;
+        }
+
+        String lastHash = (String) offset.get(CONTENT_HASH_FIELD);
+        Long lastLength = (Long) offset.get(CONTENT_LENGTH_FIELD);
+        if (lastHash == null || lastLength == null || contentLength < 0 || contentLength != lastLength) {
+            return false;
+        }
+
+        logger.info("File has the same length as the last one, comparing content hashes");
+        try (HashingInputStream in = new HashingInputStream(response.body())) {
+            in.transferTo(OutputStream.nullOutputStream());
+            if (lastHash.equals(in.getHash())) {
+                contentHash = lastHash;
+                return true;
+            }
+        } catch (IOException e) {
+            logger.warn("Could not compare content hashes", e);
+        }
+
+        disconnect();
+        lastModified = openHttpConnection(0);
+        return false;
+    }
+
+    /**
+     * Reads past the EOF marker to the end of the download, so that the hash of the compressed content is complete.
+     */
+    private void finishDownload() throws IOException {
+        while (!lineReader.isFinished()) {
+            byte[] line = lineReader.readLine();
+            if (line != null) {
+                logger.warn("Ignoring line after {}", HttpCompressedSourceTask.EOF_TRUE);
+            }
+        }
+        contentHash = lineReader.getContentHash();
+    }
+
+    private void resetState() {
+        logger.info("Resetting state");
+
+        totalLines = 0;
+        reachedOEF = false;
+        contentHash = null;
+        pageOffset = null;
+    }
+
+    private void openReader(InputStream compressed) throws IOException {
+        if (delta != null) {
+            delta.start(lastModified);
+        }
+        if (config.sharedDownload) {
+            responseShared = true;
+            setLineReader(SharedDownload.open(fileUrl(), lastModified, config, compressed, () -> decompressingReader(compressed)));
+        }
+        else {
+            setLineReader(decompressingReader(compressed));
+        }
+    }
+
+    private LineReader decompressingReader(InputStream compressed) throws IOException {
+        if (spool != null) {
+            // the download goes to disk at full speed, the lines are read from there
+            compressed = spool.open(fileUrl(), lastModified, ifRange(), response);
+        }
+        // buffered, so that the codec can be told from the first bytes
+        InputStream in = new BufferedInputStream(metrics.meter(compressed), 64 * 1024);
+        DecompressionCodec codec = DecompressionCodecs.select(config.compressionCodec, response, in);
+        if (codec != DecompressionCodecs.GZIP && (config.checkpointInterval > 0 || inflaters != null)) {
+            logger.warn("Checkpoints and parallel decompression need gzip, reading {} compressed with {} on a single thread", url, codec);
+        }
+        else {
+            logger.debug("Reading {} compressed with {}", url, codec);
+        }
+        return new DecompressingLineReader(in, codec, config.checkpointInterval, true,
+                inflaters, config.decompressionThreads, config.decompressionChunkBytes);
+    }
+
+    private void setLineReader(LineReader reader) {
+        reader = metrics.meter(reader);
+        if (config.pipelineEnabled) {
+            lineReader = new PipelinedLineReader(reader, config.pipelineBufferBytes, "HttpCompressedSourceTask-reader-" + url);
+        }
+        else {
+            lineReader = reader;
+        }
+    }
+
+    private void skipLines(long linesToSkip) throws IOException {
+        logger.info("Skipping {} lines", linesToSkip);
+        long requested = linesToSkip;
+        while (linesToSkip > 0) {
+            byte[] line = lineReader.readLine();
+            if (line == null) {
+                if (lineReader.isFinished()) {
+                    break;
+                }
+                continue;
+            }
+            if (delta != null) {
+                String topic = router != null ? router.route(line) : config.topic;
+                if (topic != null) {
+                    delta.isNew(line, deltaKey(topic, extractKey(line)));
+                }
+            }
+            linesToSkip -= 1;
+        }
+        if (linesToSkip > 0) {
+            logger.warn("Could not skip all lines, lines left to skip : {}", linesToSkip);
+        }
+        metrics.linesSkipped(requested - linesToSkip);
+    }
+
+    /**
+     * Reopens the download with a Range request starting at the checkpoint and positions the reader at linePosition,
+     * the end of the last line handed out. If the server ignores the Range request, the full file is read again
+     * and totalLines lines are skipped instead.
+     */
+    private void resumeFromCheckpoint(GzipCheckpoint checkpoint, long linePosition) throws IOException {
+        closeQuietly();
+
+        long modified = reopen(checkpoint.getByteOffset());
+
+        if (response.statusCode() == HttpURLConnection.HTTP_PARTIAL) {
+            var checkpointStream = new CheckpointingGzipInputStream(metrics.meter(response.body()), checkpoint, config.checkpointInterval);
+            skipTo(checkpointStream, linePosition);
+            setLineReader(new DecompressingLineReader(checkpointStream, linePosition));
+
+            logger.info("Resumed at line {} from checkpoint at compressed byte {}, uncompressed byte {}",
+                    totalLines, checkpoint.getByteOffset(), checkpoint.getPosition());
+        }
+        else {
+            if (modified == lastModified) {
+                logger.warn("Server ignored Range request, skipping {} lines instead", totalLines);
+            }
+            readFromStart(modified);
+        }
+    }
+
+    /**
+     * Downloads the whole file again after the download broke off without a checkpoint to resume from.
+     */
+    private void restartDownload() throws IOException {
+        closeQuietly();
+
+        readFromStart(reopen(0));
+    }
+
+    /**
+     * Reads the download of the whole file up to the totalLines lines handed out already, or from the start if
+     * the file has changed in the meantime.
+     */
+    private void readFromStart(long modified) throws IOException {
+        if (modified != lastModified) {
+            logger.warn("File changed to {} in the middle of reading it, starting over", modified);
+            lastModified = modified;
+            resetState();
+            openReader(response.body());
+        }
+        else {
+            openReader(response.body());
+            skipLines(totalLines);
+        }
+    }
+
+    private void closeQuietly() {
+        // disconnect first, this unblocks a pipeline thread waiting on the network
+        disconnect();
+
+        if (lineReader != null) {
+            try {
+                lineReader.close();
+            } catch (IOException e) {
+                logger.debug("Ignoring error while closing reader", e);
+            }
+        }
+        lineReader = null;
+    }
+
+    private void closeReaderAndConnection() throws IOException {
+        logger.info("Closing reader and connection");
+
+        lineReader.close();
+        lineReader = null;
+        disconnect();
+    }
+
+    /**
+     * Closes the response, which cancels the download unless it has been read to the end.
+     */
+    private void disconnect() {
+        if (response != null && !responseShared) {
+            try {
+                response.body().close();
+            } catch (IOException e) {
+                logger.debug("Ignoring error while closing response", e);
+            }
+        }
+        response = null;
+        responseShared = false;
+    }
+
+    /**
+     * Reads the end of a response without a body, which keeps the connection open for the next check.
+     */
+    private void finishEmptyResponse() {
+        try (InputStream body = response.body()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            logger.debug("Ignoring error while finishing response", e);
+        }
+        response = null;
+    }
+
+    private Schema keySchema() {
+        if (keyExtractor == null) {
+            return null;
+        }
+        return config.bytesOutput ? Schema.OPTIONAL_BYTES_SCHEMA : Schema.OPTIONAL_STRING_SCHEMA;
+    }
+
+    /**
+     * @return the topic of the line, or null if no route wants it
+     */
+    private String route(byte[] line) {
+        if (router == null) {
+            return config.topic;
+        }
+        String topic = router.route(line);
+        if (topic == null) {
+            metrics.lineDropped();
+        }
+        return topic;
+    }
+
+    /**
+     * @return the key as the delta state keeps it, prefixed with its topic if lines are routed, so that the
+     * tombstone of a key that is gone goes to the topic it was written to
+     */
+    private byte[] deltaKey(String topic, byte[] key) {
+        if (router == null || key == null) {
+            return key;
+        }
+        byte[] prefix = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] prefixed = Arrays.copyOf(prefix, prefix.length + 1 + key.length);
+        System.arraycopy(key, 0, prefixed, prefix.length + 1, key.length);
+        return prefixed;
+    }
+
+    private static int indexOf(byte[] bytes, byte b) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return bytes.length;
+    }
+
+    private byte[] extractKey(byte[] line) {
+        return keyExtractor != null ? keyExtractor.extract(line) : null;
+    }
+
+    private Object key(byte[] key) {
+        if (key == null) {
+            return null;
+        }
+        return config.bytesOutput ? key : new String(key, StandardCharsets.US_ASCII);
+    }
+
+    // lines to be parsed into structs are handed to the task as bytes
+    private Schema valueSchema() {
+        return config.bytesOutput || config.structOutput ? Schema.BYTES_SCHEMA : Schema.STRING_SCHEMA;
+    }
+
+    private Object value(byte[] line) {
+        return config.bytesOutput || config.structOutput ? line : new String(line, StandardCharsets.US_ASCII);
+    }
+
+    private Map<String, ?> offsetValue(long timestamp, long currentLine, boolean eof) {
+        Map<String, Object> map = new HashMap<>();
+        map.put(TIMESTAMP_FIELD, timestamp);
+        map.put(CURRENT_LINE_FIELD, currentLine);
+        map.put(EOF_REACHED_FIELD, eof);
+        if (etag != null) {
+            map.put(ETAG_FIELD, etag);
+        }
+        if (contentLength >= 0) {
+            map.put(CONTENT_LENGTH_FIELD, contentLength);
+        }
+        if (eof && contentHash != null) {
+            map.put(CONTENT_HASH_FIELD, contentHash);
+        }
+        if (feed != null) {
+            feed.writeTo(map, eof, timestamp);
+        }
+
+        if (lineReader != null) {
+            map.put(POSITION_FIELD, lineReader.getPosition());
+
+            GzipCheckpoint checkpoint = lineReader.getCheckpoint();
+            if (checkpoint != null) {
+                checkpoint.writeTo(map);
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * @param rangeStart first byte to request, 0 for the whole file. Partial requests are tied to the
+     *                   Last-Modified value of the previous download with If-Range.
+     */
+    private long openHttpConnection(long rangeStart) {
+        try {
+            return reopen(rangeStart);
+        } catch (IOException e) {
+            logger.error("Error while connecting to {}", fileUrl(), e);
+            throw new ConnectException(e);
+        }
+    }
+
+    /**
+     * Like {@link #openHttpConnection}, for a download that broke off: a connection that fails is left to the
+     * caller, which tries again.
+     */
+    private long reopen(long rangeStart) throws IOException {
+        Map<String, String> requestHeaders = new HashMap<>();
+        if (rangeStart > 0) {
+            requestHeaders.put("Range", "bytes=" + rangeStart + "-");
+            if (ifRange() != null) {
+                requestHeaders.put("If-Range", ifRange());
+            }
+        }
+
+        int responseCode = send("GET", requestHeaders);
+
+        return readResponseHeaders(responseCode, rangeStart > 0);
+    }
+
+    /**
+     * @return the validator that ties a Range request to the version of the file read so far: a strong ETag, or
+     * the Last-Modified value otherwise
+     */
+    private String ifRange() {
+        return etag != null && !etag.startsWith("W/") ? etag : lastModifiedHeader;
+    }
+
+    /**
+     * Sends the request with the given headers, the response is kept open in response.
+     *
+     * @return the response code
+     */
+    private int connect(String method, Map<String, String> requestHeaders) {
+        try {
+            return send(method, requestHeaders);
+        } catch (IOException e) {
+            logger.error("Error while connecting to {}", fileUrl(), e);
+            throw new ConnectException(e);
+        }
+    }
+
+    private int send(String method, Map<String, String> requestHeaders) throws IOException {
+        try {
+            response = transport.send(fileUrl(), method, requestHeaders);
+            responseShared = false;
+            scheduler.cacheHeaders(response, System.currentTimeMillis());
+
+            int responseCode = response.statusCode();
+
+            if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED) {
+                disconnect();
+                logger.error("Failed to authenticate user {}", config.username);
+                throw new ConnectException("Failed to authenticate user " + config.username);
+            }
+            return responseCode;
+        } catch (IllegalArgumentException e) {
+            logger.error("Error in URL {}", fileUrl(), e);
+            throw new ConnectException(e);
+        }
+    }
+
+    /**
+     * Checks the response code and takes the file's metadata from the response headers.
+     *
+     * @return the Last-Modified timestamp of the file
+     */
+    private long readResponseHeaders(int responseCode, boolean partialAllowed) {
+        if (responseCode != HttpURLConnection.HTTP_OK
+                && !(partialAllowed && responseCode == HttpURLConnection.HTTP_PARTIAL)) {
+            disconnect();
+            logger.error("Failed for unknown reason with {}", responseCode);
+            throw new ConnectException("Failed for unknown reason with " + responseCode);
+        }
+
+        // we got 200 (or 206 for a range), let's proceed
+        var disposition = HttpTransport.header(response, "Content-Disposition");
+        var contentType = HttpTransport.header(response, "Content-Type");
+        var length = HttpTransport.contentLength(response);
+        var lastModifiedFromHeader = HttpTransport.header(response, "Last-Modified");
+        lastModifiedHeader = lastModifiedFromHeader;
+
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+            // a partial response describes the remaining bytes only
+            contentLength = length;
+            etag = HttpTransport.header(response, "ETag");
+        }
+        metrics.downloadStarted(responseCode == HttpURLConnection.HTTP_PARTIAL && contentLength >= 0 ? contentLength - length : 0, contentLength);
+
+        logger.info("HttpResponse::Version: {}", response.version());
+        logger.info("HttpResponse::Disposition: {}", disposition);
+        logger.info("HttpResponse::contentType: {}", contentType);
+        logger.info("HttpResponse::contentLength: {}", length);
+        logger.info("HttpResponse::lastModified: {}", lastModifiedFromHeader);
+        logger.info("HttpResponse::ETag: {}", HttpTransport.header(response, "ETag"));
+
+        return HttpTransport.lastModified(response);
+    }
+
+    /**
+     * @return the URL of the file to download, which in incremental feed mode depends on the file being read
+     */
+    private String fileUrl() {
+        return feed != null ? feed.getUrl() : url;
+    }
+
+    private static String formatHttpDate(long timestamp) {
+        return HTTP_DATE_FORMAT.format(Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC));
+    }
+
+    /**
+     * Closes an open download, the committed offsets allow to continue from there.
+     */
+    public void close() {
+        // disconnect first, this unblocks a pipeline thread waiting on the network
+        disconnect();
+
+        if (lineReader != null) {
+            try {
+                lineReader.close();
+            } catch (IOException e) {
+                throw new ConnectException(e);
+            }
+        }
+        lineReader = null;
+
+        if (delta != null) {
+            try {
+                delta.close();
+            } catch (IOException e) {
+                throw new ConnectException(e);
+            }
+        }
+    }
+}
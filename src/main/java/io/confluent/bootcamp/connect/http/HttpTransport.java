@@ -0,0 +1,87 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+/**
+ * HTTP client with its own credentials and timeouts, shared by the downloads of one task or tool.
+ * <p>
+ * Connections are kept alive and reused between requests, and HTTP/2 is used where the server offers it.
+ * The credentials are only sent when the server asks for them, so they do not follow redirects to other hosts.
+ */
+public class HttpTransport {
+    private final HttpClient client;
+    private final long readTimeout;
+
+    /**
+     * @param connectTimeout milliseconds to establish a connection
+     * @param readTimeout    milliseconds to wait for the response headers, and for more data while reading the body
+     */
+    public HttpTransport(String username, String password, long connectTimeout, long readTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .authenticator(new BasicAuthenticator(username, password))
+                .build();
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Sends the request and returns once the response headers are in. The body has to be read to its end or closed.
+     *
+     * @throws IllegalArgumentException if the URL is not valid
+     */
+    public HttpResponse<InputStream> send(String url, String method, Map<String, String> headers) throws IOException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(readTimeout));
+        headers.forEach(request::header);
+
+        try {
+            return client.send(request.build(), responseInfo -> new ResponseBodyStream(readTimeout));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while requesting " + url);
+        }
+    }
+
+    /**
+     * @return the value of the header, or null if the response does not have it
+     */
+    public static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    /**
+     * @return the Last-Modified timestamp of the response in milliseconds, 0 if it has none
+     */
+    public static long lastModified(HttpResponse<?> response) {
+        String lastModified = header(response, "Last-Modified");
+        if (lastModified == null) {
+            return 0;
+        }
+        try {
+            return ZonedDateTime.parse(lastModified, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the Content-Length of the response, -1 if it has none
+     */
+    public static long contentLength(HttpResponse<?> response) {
+        return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+    }
+}
@@ -0,0 +1,228 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Takes the record key from fields of a JSON line in a single pass over its bytes, without parsing the line.
+ * <p>
+ * Each key definition is a field name, or several names joined with '+' whose values are joined with the separator,
+ * for example {@code CIF_train_uid+schedule_start_date}. The first definition whose fields all occur in the line is used.
+ * The first occurrence of a field counts, wherever it is nested. String values are taken as they are in the line,
+ * without their quotes and without unescaping. Fields that are null, objects or arrays count as missing, as does a
+ * value that runs into the end of a cut off line.
+ * <p>
+ * Instances keep scan state between calls and are not thread safe.
+ */
+public class KeyExtractor {
+    private static final int NOT_FOUND = -1;
+    private static final long QUOTES = 0x2222222222222222L;
+
+    private final byte[][] names;
+    private final int[][] definitions;
+    private final byte[] separator;
+    private final int[] valueStart;
+    private final int[] valueEnd;
+
+    public KeyExtractor(List<String> keyFields, String separator) {
+        List<String> distinct = new ArrayList<>();
+        definitions = new int[keyFields.size()][];
+        for (int i = 0; i < keyFields.size(); i++) {
+            String[] fields = keyFields.get(i).split("\\+");
+            definitions[i] = new int[fields.length];
+            for (int j = 0; j < fields.length; j++) {
+                String field = fields[j].trim();
+                if (!distinct.contains(field)) {
+                    distinct.add(field);
+                }
+                definitions[i][j] = distinct.indexOf(field);
+            }
+        }
+
+        names = new byte[distinct.size()][];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = distinct.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        this.separator = separator.getBytes(StandardCharsets.UTF_8);
+        valueStart = new int[names.length];
+        valueEnd = new int[names.length];
+    }
+
+    /**
+     * @return the key, or null if none of the key definitions is complete in this line
+     */
+    public byte[] extract(byte[] line) {
+        Arrays.fill(valueStart, NOT_FOUND);
+        scan(line);
+
+        for (int[] definition : definitions) {
+            if (isComplete(definition)) {
+                return key(line, definition);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether every field of the first key definition is in the line with one of the given values, compared
+     * byte by byte the way the key would be taken from the line.
+     *
+     * @param accepted the values accepted for each field of the definition, in its order
+     */
+    boolean matches(byte[] line, byte[][][] accepted) {
+        Arrays.fill(valueStart, NOT_FOUND);
+        scan(line);
+
+        int[] definition = definitions[0];
+        for (int i = 0; i < definition.length; i++) {
+            int field = definition[i];
+            if (valueStart[field] == NOT_FOUND || !isOneOf(line, valueStart[field], valueEnd[field], accepted[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOneOf(byte[] line, int start, int end, byte[][] values) {
+        for (byte[] value : values) {
+            if (Arrays.equals(value, 0, value.length, line, start, end)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scan(byte[] line) {
+        int length = line.length;
+        int found = 0;
+        int i = 0;
+        while (i < length) {
+            i = LineSplitter.indexOf(line, QUOTES, i, length);
+            if (i < 0) {
+                return;
+            }
+            int nameStart = ++i;
+            i = skipString(line, i);
+            int nameEnd = i++;
+
+            int colon = skipWhitespace(line, i);
+            if (colon >= length || line[colon] != ':') {
+                // a string value
+                continue;
+            }
+            i = colon + 1;
+            int field = indexOfName(line, nameStart, nameEnd);
+            if (field == NOT_FOUND || valueStart[field] != NOT_FOUND) {
+                continue;
+            }
+
+            int start = skipWhitespace(line, i);
+            if (start >= length || line[start] == '{' || line[start] == '[') {
+                continue;
+            }
+            boolean quoted = line[start] == '"';
+            int end;
+            if (quoted) {
+                start++;
+                end = skipString(line, start);
+                i = end + 1;
+            }
+            else {
+                end = start;
+                while (end < length && line[end] != ',' && line[end] != '}' && line[end] != ']' && line[end] > ' ') {
+                    end++;
+                }
+                i = end;
+            }
+            if (end >= length) {
+                // the line is cut off in the value, whatever it holds is not the whole value
+                return;
+            }
+            if (!quoted && end - start == 4 && line[start] == 'n' && line[start + 1] == 'u' && line[start + 2] == 'l' && line[start + 3] == 'l') {
+                continue;
+            }
+            valueStart[field] = start;
+            valueEnd[field] = end;
+
+            found++;
+            if (found == names.length || isComplete(definitions[0])) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the index of the closing quote of the string starting at {@code i}, or the line length if unterminated
+     */
+    private static int skipString(byte[] line, int i) {
+        while (true) {
+            i = LineSplitter.indexOf(line, QUOTES, i, line.length);
+            if (i < 0) {
+                return line.length;
+            }
+            if (!isEscaped(line, i)) {
+                return i;
+            }
+            i++;
+        }
+    }
+
+    /**
+     * @return true if the byte at {@code i} is preceded by an odd number of backslashes
+     */
+    private static boolean isEscaped(byte[] line, int i) {
+        int backslashes = 0;
+        while (i - backslashes > 0 && line[i - backslashes - 1] == '\\') {
+            backslashes++;
+        }
+        return (backslashes & 1) == 1;
+    }
+
+    private static int skipWhitespace(byte[] line, int i) {
+        while (i < line.length && (line[i] == ' ' || line[i] == '\t' || line[i] == '\r' || line[i] == '\n')) {
+            i++;
+        }
+        return i;
+    }
+
+    private int indexOfName(byte[] line, int start, int end) {
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i];
+            if (name.length == end - start && Arrays.equals(name, 0, name.length, line, start, end)) {
+                return i;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private boolean isComplete(int[] definition) {
+        for (int field : definition) {
+            if (valueStart[field] == NOT_FOUND) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] key(byte[] line, int[] definition) {
+        int length = separator.length * (definition.length - 1);
+        for (int field : definition) {
+            length += valueEnd[field] - valueStart[field];
+        }
+
+        byte[] key = new byte[length];
+        int position = 0;
+        for (int i = 0; i < definition.length; i++) {
+            if (i > 0) {
+                System.arraycopy(separator, 0, key, position, separator.length);
+                position += separator.length;
+            }
+            int field = definition[i];
+            System.arraycopy(line, valueStart[field], key, position, valueEnd[field] - valueStart[field]);
+            position += valueEnd[field] - valueStart[field];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,42 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of the lines of the downloaded file, keeping track of where in the file the last line ended.
+ */
+public interface LineReader extends Closeable {
+
+    /**
+     * @return the next line without its terminator, or null if there is no line (yet).
+     * {@link #isFinished()} tells the two cases apart.
+     */
+    byte[] readLine() throws IOException;
+
+    /**
+     * @return true if {@link #readLine()} can return without waiting for more data to arrive
+     */
+    boolean ready();
+
+    /**
+     * @return true once the end of the file has been reached and all lines have been returned
+     */
+    boolean isFinished();
+
+    /**
+     * @return number of uncompressed bytes up to the end of the line last returned
+     */
+    long getPosition();
+
+    /**
+     * @return the latest gzip checkpoint at or before {@link #getPosition()}, or null if checkpoints are disabled
+     */
+    GzipCheckpoint getCheckpoint();
+
+    /**
+     * @return SHA-256 hash of the compressed file once it has been read to the end, or null if it is not known
+     * (not finished yet, or the file was not read from the start)
+     */
+    String getContentHash();
+}
@@ -0,0 +1,133 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.common.config.ConfigException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks the topic of a line from its record type and the values of its fields, on the bytes of the line, so that
+ * lines no route wants are dropped before anything is allocated for them.
+ * <p>
+ * Routes are configured like transformations: {@code routes} names them, and for each name
+ * {@code routes.<name>.type} is the record type (the first field of the line, for example {@code JsonScheduleV1}),
+ * {@code routes.<name>.match} a comma separated list of {@code field=value} conditions that must all hold, where a
+ * field can have several values separated by {@code |}, and {@code routes.<name>.topic} the topic. The first route
+ * that matches the line wins. Fields are found the way {@link KeyExtractor} finds key fields.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class LineRouter {
+    static final String PREFIX = "routes.";
+    static final String TYPE_SUFFIX = ".type";
+    static final String MATCH_SUFFIX = ".match";
+    static final String TOPIC_SUFFIX = ".topic";
+
+    private final Route[] routes;
+    private final KeyExtractor[] matchers;
+    private final String unmatchedTopic;
+
+    /**
+     * A route as configured, shared by the routers of all files.
+     */
+    public static class Route {
+        final String topic;
+        // "<type>" with its quotes, or null for lines of any type
+        final byte[] quotedType;
+        final List<String> fields;
+        // the values accepted for each field
+        final byte[][][] accepted;
+
+        Route(String topic, String type, List<String> fields, List<byte[][]> accepted) {
+            this.topic = topic;
+            this.quotedType = type.isEmpty() ? null : ("\"" + type + "\"").getBytes(StandardCharsets.UTF_8);
+            this.fields = fields;
+            this.accepted = accepted.toArray(new byte[0][][]);
+        }
+    }
+
+    /**
+     * @param unmatchedTopic topic of lines no route matches, null to drop them
+     */
+    public LineRouter(List<Route> routes, String unmatchedTopic) {
+        this.routes = routes.toArray(new Route[0]);
+        this.matchers = new KeyExtractor[this.routes.length];
+        for (int i = 0; i < matchers.length; i++) {
+            Route route = this.routes[i];
+            if (!route.fields.isEmpty()) {
+                matchers[i] = new KeyExtractor(List.of(String.join("+", route.fields)), "");
+            }
+        }
+        this.unmatchedTopic = unmatchedTopic;
+    }
+
+    /**
+     * @param originals the connector configuration
+     * @param defaultTopic topic of routes without one of their own
+     * @throws ConfigException if a condition is not of the form field=value
+     */
+    static List<Route> parse(List<String> names, Map<String, String> originals, String defaultTopic) {
+        List<Route> routes = new ArrayList<>();
+        for (String name : names) {
+            String type = originals.getOrDefault(PREFIX + name + TYPE_SUFFIX, "").trim();
+            String topic = originals.getOrDefault(PREFIX + name + TOPIC_SUFFIX, defaultTopic).trim();
+            List<String> fields = new ArrayList<>();
+            List<byte[][]> accepted = new ArrayList<>();
+
+            String match = originals.getOrDefault(PREFIX + name + MATCH_SUFFIX, "").trim();
+            for (String condition : match.isEmpty() ? new String[0] : match.split(",")) {
+                String[] fieldAndValues = condition.split("=", 2);
+                if (fieldAndValues.length != 2 || fieldAndValues[0].isBlank() || fieldAndValues[0].contains("+")) {
+                    throw new ConfigException(PREFIX + name + MATCH_SUFFIX, match, "Expected field=value conditions, separated by commas");
+                }
+                String[] values = fieldAndValues[1].trim().split("\\|");
+                byte[][] bytes = new byte[values.length][];
+                for (int i = 0; i < values.length; i++) {
+                    bytes[i] = values[i].trim().getBytes(StandardCharsets.UTF_8);
+                }
+                fields.add(fieldAndValues[0].trim());
+                accepted.add(bytes);
+            }
+            routes.add(new Route(topic, type, fields, accepted));
+        }
+        return routes;
+    }
+
+    /**
+     * @return the topic of the line, or null if it is to be dropped
+     */
+    public String route(byte[] line) {
+        for (int i = 0; i < routes.length; i++) {
+            Route route = routes[i];
+            if (route.quotedType != null && !hasType(line, route.quotedType)) {
+                continue;
+            }
+            if (matchers[i] != null && !matchers[i].matches(line, route.accepted)) {
+                continue;
+            }
+            return route.topic;
+        }
+        return unmatchedTopic;
+    }
+
+    /**
+     * @return true if the first field of the line is the given quoted name
+     */
+    private static boolean hasType(byte[] line, byte[] quotedType) {
+        int i = 0;
+        while (i < line.length && line[i] == ' ') {
+            i++;
+        }
+        if (i >= line.length || line[i] != '{') {
+            return false;
+        }
+        i++;
+        while (i < line.length && line[i] == ' ') {
+            i++;
+        }
+        return i + quotedType.length <= line.length && Arrays.equals(quotedType, 0, quotedType.length, line, i, i + quotedType.length);
+    }
+}
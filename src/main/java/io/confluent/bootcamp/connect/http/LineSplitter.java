@@ -0,0 +1,175 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Splits an uncompressed stream into lines without decoding it into characters.
+ * <p>
+ * Lines are terminated by '\n' (a preceding '\r' is dropped, as BufferedReader does) and returned as byte arrays.
+ * The newline search looks at eight bytes at a time.
+ */
+public class LineSplitter implements Closeable {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long NEWLINES = 0x0A0A0A0A0A0A0A0AL;
+    private static final long LOW_BITS = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int start = 0;
+    private int limit = 0;
+    private boolean endOfInput = false;
+    private long position;
+
+    public LineSplitter(InputStream in) {
+        this(in, 0);
+    }
+
+    /**
+     * @param position uncompressed position of the first byte of {@code in} in the file
+     */
+    public LineSplitter(InputStream in, long position) {
+        this.in = in;
+        this.position = position;
+    }
+
+    /**
+     * @return number of bytes of the file up to the end of the line last returned, including its line terminator
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the next line without its terminator, or null at the end of the stream
+     */
+    public byte[] readLine() throws IOException {
+        int scanFrom = start;
+        while (true) {
+            int newline = indexOfNewline(buffer, scanFrom, limit);
+            if (newline >= 0) {
+                byte[] line = slice(start, newline);
+                position += newline + 1 - start;
+                start = newline + 1;
+                return line;
+            }
+            if (endOfInput) {
+                if (start == limit) {
+                    return null;
+                }
+                // last line without a terminator
+                byte[] line = slice(start, limit);
+                position += limit - start;
+                start = limit;
+                return line;
+            }
+            scanFrom = limit - start;
+            fill();
+        }
+    }
+
+    /**
+     * Skips bytes of the stream, regardless of line boundaries.
+     *
+     * @return the number of bytes skipped, less than requested only at the end of the stream
+     */
+    public long skip(long bytes) throws IOException {
+        long skipped = Math.min(bytes, limit - start);
+        start += (int) skipped;
+
+        while (skipped < bytes) {
+            long n = in.skip(bytes - skipped);
+            if (n <= 0) {
+                // skip() may return 0 before the end, read() tells for sure
+                if (in.read() < 0) {
+                    endOfInput = true;
+                    break;
+                }
+                n = 1;
+            }
+            skipped += n;
+        }
+        position += skipped;
+
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * @return true if the line is the {"EOF":true} marker that ends the schedule files
+     */
+    public static boolean isEofMarker(byte[] line) {
+        return Arrays.equals(line, HttpCompressedSourceTask.EOF_TRUE_BYTES);
+    }
+
+    /**
+     * Finds the first '\n' in b[from, to).
+     */
+    static int indexOfNewline(byte[] b, int from, int to) {
+        return indexOf(b, NEWLINES, from, to);
+    }
+
+    /**
+     * Finds the first occurrence of a byte in b[from, to) by checking eight bytes at a time for a zero byte after XOR
+     * with the byte repeated in all eight positions.
+     *
+     * @param pattern the byte to find, repeated eight times, as in {@code 0x0101010101010101L * value}
+     */
+    static int indexOf(byte[] b, long pattern, int from, int to) {
+        int i = from;
+        for (; i + Long.BYTES <= to; i += Long.BYTES) {
+            long word = (long) LONGS.get(b, i) ^ pattern;
+            long found = (word - LOW_BITS) & ~word & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        byte value = (byte) pattern;
+        for (; i < to; i++) {
+            if (b[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] slice(int from, int to) {
+        if (to > from && buffer[to - 1] == '\r') {
+            to--;
+        }
+        return Arrays.copyOfRange(buffer, from, to);
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer, growing it if a single line fills all of it, and reads more.
+     */
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start);
+            limit -= start;
+            start = 0;
+        }
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            endOfInput = true;
+        }
+        else {
+            limit += n;
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates a gzip stream on the threads of an executor and returns the output in order.
+ * <p>
+ * BGZF files (a series of small members that carry their compressed size, as written by bgzip) are inflated a group
+ * of members per task. Any other file is read in chunks of {@code chunkSize} compressed bytes and each chunk is
+ * decoded speculatively by {@link GzipChunkDecoder}, starting at the first dynamic block found in it. The output of a
+ * chunk is used if the preceding chunk ended exactly where the guess started, otherwise the chunk is inflated again
+ * on the reading thread. Only the last 32 KiB of a chunk are resolved in order to pass the window on, replacing the
+ * markers in the rest of its output is left to the executor as well. CRC and length of every member are verified.
+ */
+public class ParallelGzipInputStream extends InputStream {
+    private static final int WINDOW_SIZE = DeflateTables.WINDOW_SIZE;
+    private static final int MAX_EXPECTED_OUTPUT = 64 * 1024 * 1024;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final InputStream in;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final int lookahead;
+
+    private boolean started = false;
+    private boolean bgzf = false;
+    // the whole stream has been handed to the executor (BGZF) or accepted in order (chunks)
+    private boolean finished = false;
+    private final Deque<Output> outputs = new ArrayDeque<>();
+
+    // chunks of compressed input, released once they have been inflated
+    private final List<byte[]> chunks = new ArrayList<>();
+    private long compressedLength = 0;
+    private int releasedChunks = 0;
+    private boolean endOfInput = false;
+    private final Deque<Part> pending = new ArrayDeque<>();
+    private int nextChunk = 0;
+
+    private long expectedBit = 0;
+    private long inflatedLength = 0;
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowLength = 0;
+
+    // BGZF: members are read one by one, and the rest is handed to GZIPInputStream once a member without size shows up
+    private InputStream members;
+    private InputStream tail;
+
+    // output being handed out, in up to two segments
+    private Output current;
+    private byte[] segment = EMPTY;
+    private int segmentPosition = 0;
+    private int segmentLimit = 0;
+
+    // member verification of the chunked path
+    private final CRC32 crc = new CRC32();
+    private long memberSize = 0;
+    private int trailerIndex = 0;
+    private long outputPosition = 0;
+
+    /**
+     * @param threads number of threads of the executor, decides how far ahead chunks are inflated
+     */
+    public ParallelGzipInputStream(InputStream in, ExecutorService executor, int threads, int chunkSize) {
+        this.in = in;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.lookahead = threads + 1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        int n = read(single, 0, 1);
+        return n == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (segmentPosition == segmentLimit) {
+            if (current != null && segment != current.bytes && current.end > current.start) {
+                setSegment(current.bytes, current.start, current.end);
+            }
+            else if (!nextOutput()) {
+                return tail != null ? tail.read(b, off, len) : -1;
+            }
+        }
+
+        int n = Math.min(len, segmentLimit - segmentPosition);
+        if (trailerIndex < current.trailers.size()) {
+            n = (int) Math.min(n, current.trailers.get(trailerIndex).position - outputPosition);
+        }
+        System.arraycopy(segment, segmentPosition, b, off, n);
+        segmentPosition += n;
+
+        if (!bgzf) {
+            crc.update(b, off, n);
+            memberSize += n;
+            outputPosition += n;
+            verifyTrailers();
+        }
+        return n;
+    }
+
+    @Override
+    public int available() {
+        // like InflaterInputStream, signal that more data may follow until the end has been reached
+        return segmentPosition < segmentLimit ? segmentLimit - segmentPosition : (finished && outputs.isEmpty() ? 0 : 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        for (Part part : pending) {
+            part.future.cancel(true);
+        }
+        pending.clear();
+        outputs.clear();
+        chunks.clear();
+        in.close();
+    }
+
+    private void setSegment(byte[] bytes, int start, int limit) {
+        segment = bytes;
+        segmentPosition = start;
+        segmentLimit = limit;
+    }
+
+    /**
+     * Makes the next output current, starting with its resolved markers (or inflated members).
+     *
+     * @return false once all output has been handed out
+     */
+    private boolean nextOutput() throws IOException {
+        if (!started) {
+            start();
+        }
+        if (bgzf) {
+            while (outputs.size() < lookahead && members != null) {
+                submitMembers();
+            }
+        }
+        else {
+            if (outputs.isEmpty() && !finished) {
+                acceptChunk();
+            }
+            // get the markers of chunks that are already done replaced while this one is handed out
+            while (outputs.size() < lookahead && !finished && isNextChunkDone()) {
+                acceptChunk();
+            }
+        }
+
+        current = outputs.pollFirst();
+        if (current == null) {
+            return false;
+        }
+        byte[] first = await(current.resolved);
+        setSegment(first, 0, first.length);
+        trailerIndex = 0;
+        outputPosition = 0;
+        // a member may end before any of the output
+        verifyTrailers();
+        return true;
+    }
+
+    private void start() throws IOException {
+        started = true;
+        if (!readChunk()) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        bgzf = isBgzf(chunks.get(0));
+        if (bgzf) {
+            members = new SequenceInputStream(new ByteArrayInputStream(chunks.get(0)), in);
+            chunks.clear();
+        }
+        else {
+            submitChunks(0);
+        }
+    }
+
+    // chunked path
+
+    private int chunkOf(long bit) {
+        return (int) ((bit >>> 3) / chunkSize);
+    }
+
+    private boolean isNextChunkDone() {
+        Part part = pending.peekFirst();
+        return part != null && part.chunk == chunkOf(expectedBit) && part.future.isDone();
+    }
+
+    /**
+     * Takes the output of the chunk that continues where the previous one ended, or inflates it in order.
+     */
+    private void acceptChunk() throws IOException {
+        int chunk = chunkOf(expectedBit);
+        for (; releasedChunks < chunk; releasedChunks++) {
+            chunks.set(releasedChunks, null);
+        }
+
+        GzipChunkDecoder.Result result = null;
+        while (!pending.isEmpty() && pending.peekFirst().chunk <= chunk) {
+            Part part = pending.pollFirst();
+            if (part.chunk == chunk) {
+                result = await(part.future);
+            }
+            else {
+                part.future.cancel(true);
+            }
+        }
+        if (result == null || result.startBit != expectedBit || result.incomplete) {
+            result = decodeInOrder(chunk);
+        }
+        inflatedLength += result.size();
+        expectedBit = result.endBit;
+        finished = result.endOfStream;
+
+        Future<byte[]> resolved;
+        if (result.markerCount > 0) {
+            byte[] lookup = lookupTable();
+            char[] markers = result.markers;
+            int count = result.markerCount;
+            resolved = submit(() -> resolveMarkers(markers, 0, count, lookup));
+
+            // the window of the next chunk may reach back into the markers
+            int needed = Math.min(count, WINDOW_SIZE - Math.min(WINDOW_SIZE, result.bytesEnd - result.bytesStart));
+            updateWindow(resolveMarkers(markers, count - needed, count, lookup), 0, needed);
+        }
+        else {
+            resolved = CompletableFuture.completedFuture(EMPTY);
+        }
+        updateWindow(result.bytes, result.bytesStart, result.bytesEnd);
+        outputs.addLast(new Output(resolved, result.bytes, result.bytesStart, result.bytesEnd, result.trailers));
+
+        if (!finished) {
+            submitChunks(chunkOf(expectedBit));
+        }
+    }
+
+    /**
+     * Keeps {@code lookahead} chunks from the given one on being inflated. A chunk is only submitted once the one
+     * after it has been read, where its decoding normally ends.
+     */
+    private void submitChunks(int chunk) throws IOException {
+        nextChunk = Math.max(nextChunk, chunk);
+        while (nextChunk < chunk + lookahead) {
+            while (chunks.size() <= nextChunk + 1 && !endOfInput) {
+                readChunk();
+            }
+            if (nextChunk >= chunks.size()) {
+                break;
+            }
+
+            int number = nextChunk++;
+            GzipChunkDecoder decoder = decoder();
+            long startBit = (long) number * chunkSize * 8;
+            long stopBit = stopBit(number);
+            if (number == 0) {
+                pending.addLast(new Part(number, submit(() -> decoder.decode(0, EMPTY, 0, stopBit, true))));
+            }
+            else {
+                pending.addLast(new Part(number, submit(() -> decoder.decodeSpeculative(startBit, stopBit))));
+            }
+        }
+    }
+
+    /**
+     * Inflates from the end of the previous chunk with its window known, reading more input as needed.
+     */
+    private GzipChunkDecoder.Result decodeInOrder(int chunk) throws IOException {
+        while (true) {
+            while (chunks.size() <= chunk + 1 && !endOfInput) {
+                readChunk();
+            }
+            GzipChunkDecoder.Result result = decoder().decode(expectedBit, window, windowLength, stopBit(chunk), expectedBit == 0);
+            if (!result.incomplete) {
+                return result;
+            }
+            readChunk();
+        }
+    }
+
+    private GzipChunkDecoder decoder() {
+        // size the output by the compression ratio so far, schedule files typically inflate to ten times their size
+        double ratio = expectedBit > 0 ? (double) inflatedLength / (expectedBit >>> 3) : 10;
+        int expectedOutput = (int) Math.min(MAX_EXPECTED_OUTPUT, ratio * 1.125 * chunkSize);
+        return new GzipChunkDecoder(chunks.toArray(new byte[0][]), chunkSize, compressedLength, endOfInput, expectedOutput);
+    }
+
+    private long stopBit(int chunk) {
+        return (long) (chunk + 1) * chunkSize * 8;
+    }
+
+    private boolean readChunk() throws IOException {
+        if (endOfInput) {
+            return false;
+        }
+        byte[] chunk = in.readNBytes(chunkSize);
+        if (chunk.length < chunkSize) {
+            endOfInput = true;
+        }
+        if (chunk.length == 0) {
+            return false;
+        }
+        chunks.add(chunk);
+        compressedLength += chunk.length;
+        return true;
+    }
+
+    /**
+     * Maps every 16 bit value of the decoder output to its byte: literals to themselves, markers to the window.
+     * Markers into the part of the window that is not known come out as zeros, which makes the CRC check fail.
+     */
+    private byte[] lookupTable() {
+        byte[] lookup = new byte[256 + WINDOW_SIZE];
+        for (int i = 0; i < 256; i++) {
+            lookup[i] = (byte) i;
+        }
+        System.arraycopy(window, 0, lookup, 256, WINDOW_SIZE);
+        return lookup;
+    }
+
+    private static byte[] resolveMarkers(char[] markers, int from, int to, byte[] lookup) {
+        byte[] resolved = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            resolved[i - from] = lookup[markers[i]];
+        }
+        return resolved;
+    }
+
+    private void updateWindow(byte[] bytes, int start, int limit) {
+        int length = limit - start;
+        if (length >= WINDOW_SIZE) {
+            System.arraycopy(bytes, limit - WINDOW_SIZE, window, 0, WINDOW_SIZE);
+        }
+        else if (length > 0) {
+            System.arraycopy(window, length, window, 0, WINDOW_SIZE - length);
+            System.arraycopy(bytes, start, window, WINDOW_SIZE - length, length);
+        }
+        windowLength = Math.min(WINDOW_SIZE, windowLength + length);
+    }
+
+    private void verifyTrailers() throws ZipException {
+        while (trailerIndex < current.trailers.size() && current.trailers.get(trailerIndex).position == outputPosition) {
+            GzipChunkDecoder.Trailer trailer = current.trailers.get(trailerIndex++);
+            if (trailer.crc != crc.getValue() || trailer.size != (memberSize & 0xFFFFFFFFL)) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+            crc.reset();
+            memberSize = 0;
+        }
+    }
+
+    // BGZF path
+
+    /**
+     * @return true if the stream starts with a member that has a BC extra field holding its size
+     */
+    private static boolean isBgzf(byte[] header) {
+        return header.length >= 18 && blockSize(header) > 0;
+    }
+
+    /**
+     * @return the total size of the member starting with this header, or -1 if it does not record its size
+     */
+    private static int blockSize(byte[] header) {
+        if ((header[0] & 0xFF) != 0x1f || (header[1] & 0xFF) != 0x8b || header[2] != 8 || (header[3] & 4) == 0) {
+            return -1;
+        }
+        int extraLength = (header[10] & 0xFF) | (header[11] & 0xFF) << 8;
+        int position = 12;
+        while (position + 4 <= 12 + extraLength && position + 4 <= header.length) {
+            int fieldLength = (header[position + 2] & 0xFF) | (header[position + 3] & 0xFF) << 8;
+            if (header[position] == 'B' && header[position + 1] == 'C' && fieldLength == 2 && position + 6 <= header.length) {
+                return ((header[position + 4] & 0xFF) | (header[position + 5] & 0xFF) << 8) + 1;
+            }
+            position += 4 + fieldLength;
+        }
+        return -1;
+    }
+
+    /**
+     * Reads members up to about {@code chunkSize} compressed bytes and submits them to be inflated together.
+     */
+    private void submitMembers() throws IOException {
+        List<byte[]> group = new ArrayList<>();
+        long groupSize = 0;
+        while (groupSize < chunkSize) {
+            byte[] header = members.readNBytes(18);
+            int size = header.length == 18 ? blockSize(header) : -1;
+            if (size < 18 + 8) {
+                handOver(header);
+                members = null;
+                finished = true;
+                break;
+            }
+            byte[] member = new byte[size];
+            System.arraycopy(header, 0, member, 0, header.length);
+            if (members.readNBytes(member, header.length, size - header.length) < size - header.length) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            group.add(member);
+            groupSize += size;
+        }
+        if (!group.isEmpty()) {
+            outputs.addLast(new Output(submit(() -> inflateMembers(group)), EMPTY, 0, 0, List.of()));
+        }
+    }
+
+    /**
+     * Continues with a member that does not record its size the same way GZIPInputStream would, anything else
+     * following the members is ignored.
+     */
+    private void handOver(byte[] start) throws IOException {
+        if (start.length >= 2 && (start[0] & 0xFF) == 0x1f && (start[1] & 0xFF) == 0x8b) {
+            tail = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(start), members));
+        }
+    }
+
+    private static byte[] inflateMembers(List<byte[]> group) throws IOException {
+        long total = 0;
+        for (byte[] member : group) {
+            total += memberLength(member);
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new ZipException("BGZF members too large");
+        }
+
+        byte[] output = new byte[(int) total];
+        int position = 0;
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+        try {
+            for (byte[] member : group) {
+                int headerLength = 12 + ((member[10] & 0xFF) | (member[11] & 0xFF) << 8);
+                int length = (int) memberLength(member);
+                inflater.reset();
+                inflater.setInput(member, headerLength, member.length - headerLength - 8);
+                int n = 0;
+                while (n < length && !inflater.finished()) {
+                    int inflated = inflater.inflate(output, position + n, length - n);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += inflated;
+                }
+                if (n == length && !inflater.finished()) {
+                    // the end of the last block may still be unread, for an empty member like the BGZF end marker the
+                    // whole block, any output it still has is more than the trailer allows
+                    n += inflater.inflate(new byte[1]);
+                }
+                if (n != length || !inflater.finished()) {
+                    throw new ZipException("Corrupt GZIP trailer");
+                }
+
+                crc.reset();
+                crc.update(output, position, length);
+                int trailer = member.length - 8;
+                long expectedCrc = (member[trailer] & 0xFFL) | (member[trailer + 1] & 0xFFL) << 8
+                        | (member[trailer + 2] & 0xFFL) << 16 | (member[trailer + 3] & 0xFFL) << 24;
+                if (expectedCrc != crc.getValue()) {
+                    throw new ZipException("Corrupt GZIP trailer");
+                }
+                position += length;
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return output;
+    }
+
+    private static long memberLength(byte[] member) {
+        int trailer = member.length - 4;
+        return (member[trailer] & 0xFFL) | (member[trailer + 1] & 0xFFL) << 8
+                | (member[trailer + 2] & 0xFFL) << 16 | (member[trailer + 3] & 0xFFL) << 24;
+    }
+
+    private <T> Future<T> submit(Callable<T> task) throws IOException {
+        try {
+            return executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new InterruptedIOException("Inflater threads have been shut down");
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while inflating");
+        } catch (CancellationException e) {
+            throw new InterruptedIOException("Inflating was cancelled");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error while inflating", e.getCause());
+        }
+    }
+
+    /**
+     * Speculative inflation of a chunk.
+     */
+    private static final class Part {
+        final int chunk;
+        final Future<GzipChunkDecoder.Result> future;
+
+        Part(int chunk, Future<GzipChunkDecoder.Result> future) {
+            this.chunk = chunk;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Output accepted in order: the resolved markers (or inflated members) followed by plain bytes.
+     */
+    private static final class Output {
+        final Future<byte[]> resolved;
+        final byte[] bytes;
+        final int start;
+        final int end;
+        final List<GzipChunkDecoder.Trailer> trailers;
+
+        Output(Future<byte[]> resolved, byte[] bytes, int start, int end, List<GzipChunkDecoder.Trailer> trailers) {
+            this.resolved = resolved;
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+            this.trailers = trailers;
+        }
+    }
+}
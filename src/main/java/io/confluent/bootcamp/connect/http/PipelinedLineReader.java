@@ -0,0 +1,221 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reads lines from another {@link LineReader} on a dedicated thread and hands them out of a bounded buffer,
+ * so that network reads and inflation overlap with the Connect worker producing the records.
+ * <p>
+ * The buffer is limited by the (approximate) memory its lines take up. The reader thread blocks once the limit
+ * has been reached and continues when lines have been taken out again.
+ */
+public class PipelinedLineReader implements LineReader {
+    private static final Logger logger = LoggerFactory.getLogger(PipelinedLineReader.class);
+
+    // rough memory used per buffered line on top of its bytes
+    private static final int LINE_OVERHEAD = 64;
+    private static final long WAIT_MS = 1000;
+
+    private final LineReader delegate;
+    private final long maxBufferedBytes;
+    private final Thread thread;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Deque<Entry> buffer = new ArrayDeque<>();
+    private long bufferedBytes = 0;
+    private boolean endOfInput = false;
+    private IOException failure = null;
+    private volatile boolean closed = false;
+
+    // state of the line last handed out
+    private long position;
+    private GzipCheckpoint checkpoint;
+    private boolean finished = false;
+
+    public PipelinedLineReader(LineReader delegate, long maxBufferedBytes, String name) {
+        this.delegate = delegate;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.position = delegate.getPosition();
+        this.checkpoint = delegate.getCheckpoint();
+
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            byte[] line;
+            while (!closed && (line = delegate.readLine()) != null) {
+                put(new Entry(line, delegate.getPosition(), delegate.getCheckpoint()));
+            }
+            finish(null);
+        } catch (IOException e) {
+            finish(e);
+        } catch (InterruptedException e) {
+            finish(null);
+        } finally {
+            if (closed) {
+                closeDelegate();
+            }
+        }
+    }
+
+    private void closeDelegate() {
+        try {
+            delegate.close();
+        } catch (IOException e) {
+            logger.debug("Ignoring error while closing reader", e);
+        }
+    }
+
+    private void put(Entry entry) throws InterruptedException {
+        lock.lock();
+        try {
+            // always accept a line into an empty buffer, however long it is
+            while (!closed && !buffer.isEmpty() && bufferedBytes + entry.size() > maxBufferedBytes) {
+                notFull.await();
+            }
+            buffer.addLast(entry);
+            bufferedBytes += entry.size();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void finish(IOException e) {
+        lock.lock();
+        try {
+            endOfInput = true;
+            failure = e;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits a limited time for the next line, so that the worker thread gets control back while the download stalls.
+     * An error of the reader thread is thrown once all lines read before it have been handed out.
+     */
+    @Override
+    public byte[] readLine() throws IOException {
+        lock.lock();
+        try {
+            if (buffer.isEmpty() && !endOfInput && !closed) {
+                notEmpty.await(WAIT_MS, TimeUnit.MILLISECONDS);
+            }
+
+            Entry entry = buffer.pollFirst();
+            if (entry == null) {
+                if (endOfInput) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    finished = true;
+                }
+                return null;
+            }
+            bufferedBytes -= entry.size();
+            notFull.signal();
+
+            position = entry.position;
+            checkpoint = entry.checkpoint;
+
+            return entry.line;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean ready() {
+        lock.lock();
+        try {
+            return !buffer.isEmpty() || endOfInput;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public GzipCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    public String getContentHash() {
+        // safe to read from the delegate once the reader thread is done with it
+        return finished ? delegate.getContentHash() : null;
+    }
+
+    /**
+     * Stops the reader thread. A read blocked on the network only returns once the connection has been closed,
+     * so the connection should be disconnected before calling this.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+
+        lock.lock();
+        try {
+            buffer.clear();
+            bufferedBytes = 0;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        thread.interrupt();
+        try {
+            thread.join(WAIT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            // the thread closes the delegate itself once its read returns
+            logger.warn("Reader thread {} did not stop in time", thread.getName());
+        }
+    }
+
+    private static final class Entry {
+        final byte[] line;
+        final long position;
+        final GzipCheckpoint checkpoint;
+
+        Entry(byte[] line, long position, GzipCheckpoint checkpoint) {
+            this.line = line;
+            this.position = position;
+            this.checkpoint = checkpoint;
+        }
+
+        long size() {
+            return line.length + LINE_OVERHEAD;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response body as a stream, reading straight from the buffers the HTTP client receives.
+ * <p>
+ * The next batch of buffers is requested as soon as the reader starts on the current one, so the network stays busy
+ * while the inflater works, and at most two batches are held. A read waits at most the read timeout for data.
+ * Closing the stream before its end cancels the download.
+ */
+class ResponseBodyStream extends InputStream implements HttpResponse.BodySubscriber<InputStream> {
+    // a list of its own, the client may pass empty lists
+    private static final List<ByteBuffer> END = Collections.unmodifiableList(new ArrayList<>());
+
+    private final BlockingQueue<List<ByteBuffer>> batches = new LinkedBlockingQueue<>();
+    private final long readTimeout;
+    private volatile Flow.Subscription subscription;
+    private volatile Throwable failure;
+    private volatile boolean closed = false;
+
+    private Iterator<ByteBuffer> batch = Collections.emptyIterator();
+    private ByteBuffer buffer = null;
+    private boolean finished = false;
+
+    /**
+     * @param readTimeout milliseconds to wait for data before a read fails
+     */
+    ResponseBodyStream(long readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    @Override
+    public CompletionStage<InputStream> getBody() {
+        return CompletableFuture.completedFuture(this);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        if (closed) {
+            subscription.cancel();
+        }
+        else {
+            subscription.request(1);
+        }
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> item) {
+        batches.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        failure = throwable;
+        batches.add(END);
+    }
+
+    @Override
+    public void onComplete() {
+        batches.add(END);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextBuffer()) {
+            return -1;
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!nextBuffer()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return buffer != null ? buffer.remaining() : 0;
+    }
+
+    /**
+     * @return false at the end of the body
+     */
+    private boolean nextBuffer() throws IOException {
+        while (buffer == null || !buffer.hasRemaining()) {
+            if (batch.hasNext()) {
+                buffer = batch.next();
+                continue;
+            }
+            if (finished) {
+                return endOfBody();
+            }
+
+            List<ByteBuffer> next;
+            try {
+                next = batches.poll(readTimeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data");
+            }
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (next == null) {
+                throw new SocketTimeoutException("No data received for " + readTimeout + " ms");
+            }
+            if (next == END) {
+                finished = true;
+                return endOfBody();
+            }
+            batch = next.iterator();
+            subscription.request(1);
+        }
+        return true;
+    }
+
+    private boolean endOfBody() throws IOException {
+        if (failure != null) {
+            throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Flow.Subscription current = subscription;
+        if (current != null && !finished) {
+            current.cancel();
+        }
+        // wakes up a reader waiting for data
+        batches.add(END);
+    }
+}
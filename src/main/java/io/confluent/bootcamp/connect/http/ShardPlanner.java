@@ -0,0 +1,218 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.connect.connector.ConnectorContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits every file into shards that tasks read in parallel, for the connector.
+ * <p>
+ * A thread checks the files for a new version every task.pause.ms. It inflates a new version once to take
+ * checkpoints along the way and notes the first line that starts after each of them. The shards then start at the
+ * checkpoints closest to equal parts of the compressed file, and the connector is asked to hand them to its tasks
+ * again. Files that are not gzip compressed cannot be split and make up a single shard.
+ */
+public class ShardPlanner implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ShardPlanner.class);
+    // checkpoints taken per shard, to find one close to where each shard should start
+    private static final int CHECKPOINTS_PER_SHARD = 8;
+    private static final long MIN_CHECKPOINT_INTERVAL = 64 * 1024;
+
+    private final HttpCompressedSourceConfiguration config;
+    private final ConnectorContext context;
+    private final HttpTransport transport;
+    private final Map<String, List<FileShard>> plans = new LinkedHashMap<>();
+    private final CountDownLatch stopping = new CountDownLatch(1);
+    private final Thread thread;
+
+    public ShardPlanner(HttpCompressedSourceConfiguration config, ConnectorContext context) {
+        this.config = config;
+        this.context = context;
+        this.transport = new HttpTransport(config.username, config.password, config.connectTimeout, config.readTimeout);
+        this.thread = new Thread(this::run, "HttpCompressedSourceConnector-shard-planner");
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * @return the shards of all files planned so far, the shards of a file in order
+     */
+    public synchronized List<FileShard> getShards() {
+        List<FileShard> shards = new ArrayList<>();
+        for (String url : config.urls) {
+            shards.addAll(plans.getOrDefault(url, Collections.emptyList()));
+        }
+        return shards;
+    }
+
+    private void run() {
+        try {
+            do {
+                boolean changed = false;
+                for (String url : config.urls) {
+                    try {
+                        changed |= check(url);
+                    } catch (IOException | RuntimeException e) {
+                        logger.warn("Could not split {} into shards, trying again later", url, e);
+                    }
+                }
+                if (changed) {
+                    context.requestTaskReconfiguration();
+                }
+            } while (!stopping.await(config.taskPause, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            logger.debug("Shard planner interrupted");
+        }
+    }
+
+    /**
+     * @return true if there is a new version of the file, which has been split into shards
+     */
+    private boolean check(String url) throws IOException {
+        List<FileShard> current;
+        synchronized (this) {
+            current = plans.get(url);
+        }
+        Map<String, String> headers = new HashMap<>();
+        if (current != null) {
+            headers.put("If-Modified-Since", DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    Instant.ofEpochMilli(current.get(0).getVersion()).atZone(ZoneOffset.UTC)));
+        }
+
+        HttpResponse<InputStream> response = transport.send(url, "GET", headers);
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return false;
+            }
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Request for " + url + " failed with " + response.statusCode());
+            }
+            long version = HttpTransport.lastModified(response);
+            if (current != null && current.get(0).getVersion() == version) {
+                return false;
+            }
+            if (version <= 0) {
+                logger.warn("{} has no Last-Modified header, shards cannot be tied to a version of it", url);
+            }
+
+            long started = System.nanoTime();
+            List<FileShard> shards = plan(url, version, body, HttpTransport.contentLength(response), config.shardsPerFile);
+            logger.info("Split version {} of {} into {} shard(s) in {} ms", version, url, shards.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            synchronized (this) {
+                plans.put(url, shards);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Reads the whole file to split it into at most {@code count} shards of about the same compressed size.
+     */
+    static List<FileShard> plan(String url, long version, InputStream body, long contentLength, int count) throws IOException {
+        InputStream in = new BufferedInputStream(body, 64 * 1024);
+        if (count < 2 || DecompressionCodecs.detect(in) != DecompressionCodecs.GZIP) {
+            return Collections.singletonList(new FileShard(url, version, 0, 1, null, 0, Long.MAX_VALUE));
+        }
+
+        long interval = Math.max(MIN_CHECKPOINT_INTERVAL, contentLength / ((long) count * CHECKPOINTS_PER_SHARD));
+        List<GzipCheckpoint> checkpoints = new ArrayList<>();
+        List<Long> lineStarts = new ArrayList<>();
+        long length = 0;
+        try (CheckpointingGzipInputStream gzip = new CheckpointingGzipInputStream(in, interval)) {
+            byte[] buffer = new byte[64 * 1024];
+            GzipCheckpoint seen = null;
+            GzipCheckpoint pending = null;
+            int read;
+            while ((read = gzip.read(buffer)) != -1) {
+                long end = length + read;
+                GzipCheckpoint checkpoint = gzip.checkpointFor(end);
+                if (checkpoint != null && checkpoint != seen) {
+                    seen = checkpoint;
+                    byte[] window = checkpoint.getWindow();
+                    if (window[window.length - 1] == '\n') {
+                        checkpoints.add(checkpoint);
+                        lineStarts.add(checkpoint.getPosition());
+                        pending = null;
+                    }
+                    else {
+                        pending = checkpoint;
+                    }
+                }
+                if (pending != null) {
+                    // the next line starts after the first line break past the checkpoint
+                    for (long position = Math.max(pending.getPosition(), length); position < end; position++) {
+                        if (buffer[(int) (position - length)] == '\n') {
+                            checkpoints.add(pending);
+                            lineStarts.add(position + 1);
+                            pending = null;
+                            break;
+                        }
+                    }
+                }
+                length = end;
+            }
+        }
+
+        long compressed = contentLength > 0 ? contentLength : checkpoints.isEmpty() ? 0 : checkpoints.get(checkpoints.size() - 1).getByteOffset();
+        List<Integer> chosen = new ArrayList<>();
+        int next = 0;
+        for (int shard = 1; shard < count; shard++) {
+            long target = compressed * shard / count;
+            int best = -1;
+            for (int i = next; i < checkpoints.size(); i++) {
+                if (lineStarts.get(i) >= length || (!chosen.isEmpty() && lineStarts.get(i) <= lineStarts.get(chosen.get(chosen.size() - 1)))) {
+                    continue;
+                }
+                if (best < 0 || Math.abs(checkpoints.get(i).getByteOffset() - target) < Math.abs(checkpoints.get(best).getByteOffset() - target)) {
+                    best = i;
+                }
+                else if (checkpoints.get(i).getByteOffset() > target) {
+                    break;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            chosen.add(best);
+            next = best + 1;
+        }
+
+        int shards = chosen.size() + 1;
+        List<FileShard> plan = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            GzipCheckpoint checkpoint = shard == 0 ? null : checkpoints.get(chosen.get(shard - 1));
+            long start = shard == 0 ? 0 : lineStarts.get(chosen.get(shard - 1));
+            long end = shard == shards - 1 ? Long.MAX_VALUE : lineStarts.get(chosen.get(shard));
+            plan.add(new FileShard(url, version, shard, shards, checkpoint, start, end));
+        }
+        return plan;
+    }
+
+    @Override
+    public void close() {
+        stopping.countDown();
+        thread.interrupt();
+    }
+}
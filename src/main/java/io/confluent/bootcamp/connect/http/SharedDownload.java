@@ -0,0 +1,493 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One download and decompression of a version of a file, shared by the tasks of all connectors on the worker that
+ * read the same URL.
+ * <p>
+ * The first task to open a version hands its reader to a thread that reads the lines into segments, and every task
+ * reads them at its own pace through a {@link LineReader} of its own. The segments are kept in memory up to
+ * shared.buffer.bytes. Beyond that, the oldest segments some task still has to read are written to spill files and
+ * those all tasks have read are dropped. Once the spill files reach shared.spill.max.bytes, the download waits for
+ * the slowest task. A task that opens the same version later joins the download while its first segment is still
+ * there, otherwise it starts a download of its own.
+ */
+public class SharedDownload {
+    private static final Logger logger = LoggerFactory.getLogger(SharedDownload.class);
+    private static final int SEGMENT_BYTES = 4 * 1024 * 1024;
+    // length and position in front of every line of a segment
+    private static final int LINE_HEADER = Integer.BYTES + Long.BYTES;
+    private static final long WAIT_MS = 1000;
+
+    // the downloads of the worker, by codec, version and URL of the file
+    private static final Map<String, SharedDownload> downloads = new HashMap<>();
+
+    /**
+     * Opens the reader of the file, for the task that starts the download.
+     */
+    public interface Opener {
+        LineReader open() throws IOException;
+    }
+
+    private final String key;
+    private final String url;
+    private final long maxMemoryBytes;
+    private final Path spillRoot;
+    private final long maxSpillBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition released = lock.newCondition();
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<Reader> readers = new ArrayList<>();
+    // segments before firstInMemory have been spilled or dropped, those before firstSpilled have no file either
+    private int firstInMemory = 0;
+    private int firstSpilled = 0;
+    private long memoryBytes = 0;
+    private long spilledBytes = 0;
+    private Path spillDirectory = null;
+    private boolean endOfInput = false;
+    private IOException failure = null;
+    private String contentHash = null;
+    private volatile boolean stopped = false;
+    private Closeable connection = null;
+
+    private SharedDownload(String key, String url, HttpCompressedSourceConfiguration config) {
+        this.key = key;
+        this.url = url;
+        this.maxMemoryBytes = config.sharedBufferBytes;
+        this.spillRoot = Paths.get(config.sharedSpillDirectory);
+        this.maxSpillBytes = config.sharedSpillMaxBytes;
+    }
+
+    /**
+     * Returns a reader of the lines of the version of the file, joining the download of another task if there is
+     * one. The task has sent a request of its own to learn the version, which also makes sure that it may read it.
+     * When it joins, its connection is closed straight away. Otherwise opener reads the file on a thread of the
+     * download, which closes the connection once it is done.
+     *
+     * @param connection response body the opener reads from, closed to stop the download
+     */
+    public static LineReader open(String url, long lastModified, HttpCompressedSourceConfiguration config,
+                                  Closeable connection, Opener opener) throws IOException {
+        String codec = config.compressionCodec != null ? config.compressionCodec.name() : DecompressionCodecs.AUTO;
+        String key = codec + " " + lastModified + " " + url;
+        SharedDownload download;
+        Reader reader;
+        synchronized (downloads) {
+            download = downloads.get(key);
+            reader = download != null ? download.join() : null;
+            if (reader != null) {
+                logger.info("Joining the download of version {} of {}", lastModified, url);
+                closeQuietly(connection);
+                return reader;
+            }
+            download = new SharedDownload(key, url, config);
+            reader = download.join();
+            downloads.put(key, download);
+        }
+        download.start(connection, opener);
+        return reader;
+    }
+
+    private Reader join() {
+        lock.lock();
+        try {
+            boolean firstSegmentKept = segments.isEmpty() || segments.get(0).data != null || segments.get(0).file != null;
+            if (stopped || failure != null || !firstSegmentKept) {
+                return null;
+            }
+            Reader reader = new Reader();
+            readers.add(reader);
+            return reader;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void start(Closeable connection, Opener opener) throws IOException {
+        this.connection = connection;
+        LineReader source;
+        try {
+            source = opener.open();
+        } catch (IOException e) {
+            finish(e, null);
+            throw e;
+        } catch (RuntimeException e) {
+            finish(new IOException(e), null);
+            throw e;
+        }
+
+        Thread thread = new Thread(() -> run(source), "HttpCompressedSourceTask-shared-" + url);
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Started the shared download of {}", key);
+    }
+
+    private void run(LineReader source) {
+        IOException error = null;
+        String hash = null;
+        try {
+            byte[] line;
+            while (!stopped && (line = source.readLine()) != null) {
+                append(line, source.getPosition());
+            }
+            hash = source.getContentHash();
+        } catch (IOException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new IOException("Shared download of " + url + " failed", e);
+        } catch (InterruptedException e) {
+            error = new IOException("Shared download of " + url + " interrupted", e);
+        } finally {
+            closeQuietly(source);
+        }
+        finish(error, hash);
+    }
+
+    private void append(byte[] line, long position) throws IOException, InterruptedException {
+        int size = LINE_HEADER + line.length;
+        lock.lock();
+        try {
+            Segment current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (current == null || current.length + size > current.data.length) {
+                int capacity = Math.max(SEGMENT_BYTES, size);
+                makeRoom(capacity);
+                current = new Segment(segments.size(), capacity);
+                segments.add(current);
+                memoryBytes += capacity;
+            }
+            ByteBuffer.wrap(current.data, current.length, size).putInt(line.length).putLong(position).put(line);
+            current.length += size;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees memory for a new segment, dropping the oldest segments all tasks have read and spilling those some
+     * task still needs. Waits for the slowest task while the spill files are full.
+     */
+    private void makeRoom(int capacity) throws IOException, InterruptedException {
+        while (!stopped && memoryBytes + capacity > maxMemoryBytes && firstInMemory < segments.size()) {
+            Segment oldest = segments.get(firstInMemory);
+            if (oldest.index < slowestReader()) {
+                memoryBytes -= oldest.data.length;
+                oldest.data = null;
+                firstInMemory++;
+            }
+            else if (spilledBytes + oldest.length > maxSpillBytes) {
+                released.await(WAIT_MS, TimeUnit.MILLISECONDS);
+            }
+            else {
+                spill(oldest);
+            }
+        }
+    }
+
+    /**
+     * Writes the segment to a file of its own. The lock is released meanwhile, as the segment does not change any
+     * more and the tasks keep reading it from memory until it has been written.
+     */
+    private void spill(Segment segment) throws IOException {
+        if (spillDirectory == null) {
+            Files.createDirectories(spillRoot);
+            spillDirectory = Files.createTempDirectory(spillRoot, "http-compressed-source-");
+        }
+        Path file = spillDirectory.resolve(segment.index + ".spill");
+        lock.unlock();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(segment.data, 0, segment.length);
+        } finally {
+            lock.lock();
+        }
+        memoryBytes -= segment.data.length;
+        spilledBytes += segment.length;
+        segment.file = file;
+        segment.data = null;
+        firstInMemory++;
+    }
+
+    private int slowestReader() {
+        int slowest = segments.size();
+        for (Reader reader : readers) {
+            slowest = Math.min(slowest, reader.segment);
+        }
+        return slowest;
+    }
+
+    /**
+     * Deletes the spill files all tasks have read.
+     */
+    private void releaseSpilled() {
+        int slowest = Math.min(slowestReader(), firstInMemory);
+        while (firstSpilled < slowest) {
+            Segment segment = segments.get(firstSpilled++);
+            if (segment.file != null) {
+                deleteQuietly(segment.file);
+                spilledBytes -= segment.length;
+                segment.file = null;
+            }
+        }
+        released.signalAll();
+    }
+
+    private void finish(IOException error, String hash) {
+        boolean unused;
+        lock.lock();
+        try {
+            endOfInput = true;
+            failure = error;
+            contentHash = hash;
+            appended.signalAll();
+            unused = readers.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+
+        if (error != null && !stopped) {
+            logger.warn("Shared download of {} failed, its tasks download it again", url, error);
+        }
+        if (error != null || unused) {
+            // later tasks start a download of their own
+            unregister();
+        }
+        if (unused) {
+            cleanUp();
+        }
+    }
+
+    private void unregister() {
+        synchronized (downloads) {
+            downloads.remove(key, this);
+        }
+    }
+
+    private void cleanUp() {
+        closeQuietly(connection);
+        lock.lock();
+        try {
+            for (Segment segment : segments) {
+                if (segment.file != null) {
+                    deleteQuietly(segment.file);
+                }
+                segment.data = null;
+                segment.file = null;
+            }
+            if (spillDirectory != null) {
+                deleteQuietly(spillDirectory);
+            }
+        } finally {
+            lock.unlock();
+        }
+        logger.info("Closed the shared download of {}", key);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Ignoring error while closing", e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete {}", path, e);
+        }
+    }
+
+    private static final class Segment {
+        final int index;
+        // null once spilled or dropped
+        byte[] data;
+        // bytes of the lines written so far
+        int length = 0;
+        // null unless spilled
+        Path file = null;
+
+        Segment(int index, int capacity) {
+            this.index = index;
+            this.data = new byte[capacity];
+        }
+    }
+
+    /**
+     * The lines of the download as one task reads them.
+     */
+    private final class Reader implements LineReader {
+        private int segment = 0;
+        private int offset = 0;
+        // the current segment read from its spill file
+        private byte[] spilled = null;
+        private long position = 0;
+        private boolean finished = false;
+        private boolean closed = false;
+
+        /**
+         * Waits a limited time for the next line, like {@link PipelinedLineReader}. An error of the download is
+         * thrown once all lines read before it have been handed out.
+         */
+        @Override
+        public byte[] readLine() throws IOException {
+            if (spilled != null && offset < spilled.length) {
+                return next(spilled);
+            }
+
+            Path file;
+            lock.lock();
+            try {
+                boolean waited = false;
+                while (true) {
+                    if (closed) {
+                        return null;
+                    }
+                    if (segment < segments.size()) {
+                        Segment current = segments.get(segment);
+                        if (offset < current.length) {
+                            if (current.data != null) {
+                                return next(current.data);
+                            }
+                            file = current.file;
+                            break;
+                        }
+                        if (segment < segments.size() - 1) {
+                            advance();
+                            continue;
+                        }
+                    }
+                    if (endOfInput) {
+                        if (failure != null) {
+                            throw failure;
+                        }
+                        finished = true;
+                        return null;
+                    }
+                    if (waited) {
+                        return null;
+                    }
+                    appended.await(WAIT_MS, TimeUnit.MILLISECONDS);
+                    waited = true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } finally {
+                lock.unlock();
+            }
+
+            // the file is kept until this task has moved on to the next segment
+            spilled = Files.readAllBytes(file);
+            return next(spilled);
+        }
+
+        private void advance() {
+            segment++;
+            offset = 0;
+            spilled = null;
+            releaseSpilled();
+        }
+
+        private byte[] next(byte[] data) {
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, data.length - offset);
+            byte[] line = new byte[buffer.getInt()];
+            position = buffer.getLong();
+            buffer.get(line);
+            offset += LINE_HEADER + line.length;
+            return line;
+        }
+
+        @Override
+        public boolean ready() {
+            if (spilled != null && offset < spilled.length) {
+                return true;
+            }
+            lock.lock();
+            try {
+                return endOfInput || segment < segments.size() - 1
+                        || (segment < segments.size() && offset < segments.get(segment).length);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public GzipCheckpoint getCheckpoint() {
+            return null;
+        }
+
+        @Override
+        public String getContentHash() {
+            return finished ? contentHash : null;
+        }
+
+        /**
+         * Leaves the download. The last task to leave stops it and deletes its spill files.
+         */
+        @Override
+        public void close() {
+            boolean last;
+            boolean done;
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                readers.remove(this);
+                releaseSpilled();
+                last = readers.isEmpty();
+                done = last && endOfInput;
+                if (last) {
+                    stopped = true;
+                    appended.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (last) {
+                unregister();
+                if (done) {
+                    cleanUp();
+                }
+                else {
+                    // unblocks the download thread, which cleans up once its read returns
+                    closeQuietly(connection);
+                }
+            }
+        }
+    }
+}
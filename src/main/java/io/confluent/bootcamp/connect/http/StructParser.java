@@ -0,0 +1,362 @@
+package io.confluent.bootcamp.connect.http;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Replaces the raw JSON lines of records with Connect {@link Struct}s.
+ * <p>
+ * Every line is expected to be an object whose first field names the record type, like {@code {"JsonScheduleV1":{...}}}.
+ * The record types of the SCHEDULE extracts have the fixed schemas of {@link CifSchemas}, a line of those types with a
+ * field the schema does not have, or a value of another type, fails with a {@link DataException}.
+ * <p>
+ * The schema of any other record type is built from the first line of that type and reused for the following ones.
+ * A line with a field the schema does not have yet adds it as an optional field. Fields that are null or empty arrays
+ * are left out until they show up with a value. A field keeps the type of its first value, a line with a value of
+ * another type, like a number in a field that held strings before, fails with a {@link DataException}. The exception
+ * is a whole number in a field of decimals, which JSON writes without a fraction.
+ * <p>
+ * The lines of a page can be parsed on a fork-join pool, the records keep their order.
+ */
+public class StructParser {
+    private static final Logger logger = LoggerFactory.getLogger(StructParser.class);
+    // below this, handing the page to the pool costs more than parsing it
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    // read while parsing in parallel, changed on the polling thread only
+    private final Map<String, Schema> schemas = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool;
+
+    /**
+     * @param pool threads to parse on, null to parse on the calling thread
+     */
+    public StructParser(ForkJoinPool pool) {
+        this.pool = pool;
+        schemas.putAll(CifSchemas.SCHEMAS);
+    }
+
+    /**
+     * @param records records with the lines as byte arrays, or tombstones
+     * @return the records with Struct values, in the same order
+     */
+    public List<SourceRecord> convert(List<SourceRecord> records) {
+        // the struct, or the parsed line if the schema of its type has to change first
+        Object[] values = new Object[records.size()];
+        Schema[] valueSchemas = new Schema[records.size()];
+        if (pool != null && records.size() >= PARALLEL_THRESHOLD) {
+            try {
+                pool.submit(() -> IntStream.range(0, values.length).parallel()
+                        .forEach(i -> convert((byte[]) records.get(i).value(), i, values, valueSchemas))).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConnectException("Interrupted while parsing", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof DataException) {
+                    throw (DataException) e.getCause();
+                }
+                throw new ConnectException("Error while parsing", e.getCause());
+            }
+        }
+        else {
+            for (int i = 0; i < values.length; i++) {
+                convert((byte[]) records.get(i).value(), i, values, valueSchemas);
+            }
+        }
+
+        List<SourceRecord> converted = new ArrayList<>(records.size());
+        for (int i = 0; i < values.length; i++) {
+            SourceRecord record = records.get(i);
+            if (record.value() == null) {
+                converted.add(record);
+                continue;
+            }
+            if (valueSchemas[i] == null) {
+                // schemas only change here, on the calling thread
+                valueSchemas[i] = extendSchema(values[i], (byte[]) record.value());
+                values[i] = toConnect(valueSchemas[i], values[i]);
+            }
+            converted.add(record.newRecord(record.topic(), record.kafkaPartition(), record.keySchema(), record.key(),
+                    valueSchemas[i], values[i], record.timestamp()));
+        }
+        return converted;
+    }
+
+    /**
+     * Parses the line and converts it if the current schema of its type fits, otherwise leaves the schema empty.
+     */
+    private void convert(byte[] line, int i, Object[] values, Schema[] valueSchemas) {
+        if (line == null) {
+            // tombstone
+            return;
+        }
+        Map<String, Object> object = parse(line);
+        String type = recordType(object);
+        Schema schema = schemas.get(type);
+        if (schema != null && fitsLine(schema, object, type, line)) {
+            values[i] = toConnect(schema, object);
+            valueSchemas[i] = schema;
+        }
+        else if (CifSchemas.SCHEMAS.containsKey(type)) {
+            throw new DataException("Line has a field the schema of " + type + " does not have: " + abbreviate(line));
+        }
+        else {
+            values[i] = object;
+        }
+    }
+
+    private static boolean fitsLine(Schema schema, Map<String, Object> object, String type, byte[] line) {
+        try {
+            return merge(schema, object, type) == schema;
+        } catch (DataException e) {
+            throw new DataException(e.getMessage() + " in a line of type " + type + ": " + abbreviate(line));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> parse(byte[] line) {
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new DataException("Line is not a JSON object: " + abbreviate(line));
+            }
+            return (Map<String, Object>) readValue(parser);
+        } catch (IOException e) {
+            throw new DataException("Invalid JSON line: " + abbreviate(line), e);
+        }
+    }
+
+    private static Object readValue(JsonParser parser) throws IOException {
+        switch (parser.currentToken()) {
+            case START_OBJECT:
+                Map<String, Object> object = new LinkedHashMap<>();
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    object.put(name, readValue(parser));
+                }
+                return object;
+            case START_ARRAY:
+                List<Object> array = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    array.add(readValue(parser));
+                }
+                return array;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER ? parser.getText() : parser.getLongValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return null;
+            default:
+                throw new IOException("Unexpected token " + parser.currentToken());
+        }
+    }
+
+    private static String recordType(Map<String, Object> object) {
+        return object.isEmpty() ? "Empty" : object.keySet().iterator().next();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Schema extendSchema(Object value, byte[] line) {
+        String type = recordType((Map<String, Object>) value);
+        Schema schema = schemas.get(type);
+        Schema merged;
+        try {
+            merged = merge(schema, value, type);
+        } catch (DataException e) {
+            throw new DataException(e.getMessage() + " in a line of type " + type + ": " + abbreviate(line));
+        }
+        if (merged != schema) {
+            logger.info("{} schema for record type {}", schema == null ? "Created" : "Extended", type);
+            schemas.put(type, merged);
+        }
+        return merged;
+    }
+
+    /**
+     * @return a schema that fits both the schema and the value, the given schema itself if it fits the value already,
+     * or null if neither tells the type
+     */
+    @SuppressWarnings("unchecked")
+    private static Schema merge(Schema schema, Object value, String name) {
+        if (value == null) {
+            return schema;
+        }
+        if (value instanceof Map) {
+            if (schema != null && schema.type() != Schema.Type.STRUCT) {
+                throw new DataException("Field changes from " + schema.type() + " to an object");
+            }
+            return mergeStruct(schema, (Map<String, Object>) value, name);
+        }
+        if (value instanceof List) {
+            if (schema != null && schema.type() != Schema.Type.ARRAY) {
+                throw new DataException("Field changes from " + schema.type() + " to an array");
+            }
+            Schema elements = schema != null ? schema.valueSchema() : null;
+            for (Object element : (List<Object>) value) {
+                elements = merge(elements, element, null);
+            }
+            if (elements == null || (schema != null && elements == schema.valueSchema())) {
+                return schema;
+            }
+            return SchemaBuilder.array(elements).optional().build();
+        }
+
+        Schema scalar = scalarSchema(value);
+        if (schema == null) {
+            return scalar;
+        }
+        // JSON writes decimals that happen to be whole without a fraction
+        if (schema.type() == scalar.type() || (schema.type() == Schema.Type.FLOAT64 && scalar.type() == Schema.Type.INT64)) {
+            return schema;
+        }
+        throw new DataException("Field changes from " + schema.type() + " to " + scalar.type());
+    }
+
+    private static Schema mergeStruct(Schema schema, Map<String, Object> object, String name) {
+        if (schema != null && fits(schema, object)) {
+            return schema;
+        }
+        boolean changed = schema == null;
+        List<Field> fields = schema != null ? schema.fields() : List.of();
+        Schema[] fieldSchemas = new Schema[fields.size()];
+        for (Field field : fields) {
+            fieldSchemas[field.index()] = merge(field.schema(), object.get(field.name()), null);
+            changed |= fieldSchemas[field.index()] != field.schema();
+        }
+
+        Map<String, Schema> added = new LinkedHashMap<>();
+        for (var entry : object.entrySet()) {
+            if (schema == null || schema.field(entry.getKey()) == null) {
+                Schema fieldSchema = merge(null, entry.getValue(), null);
+                if (fieldSchema != null) {
+                    added.put(entry.getKey(), fieldSchema);
+                }
+            }
+        }
+        if (!changed && added.isEmpty()) {
+            return schema;
+        }
+
+        SchemaBuilder builder = SchemaBuilder.struct().optional();
+        if (name != null) {
+            builder.name(name);
+        }
+        for (Field field : fields) {
+            builder.field(field.name(), fieldSchemas[field.index()]);
+        }
+        added.forEach(builder::field);
+        return builder.build();
+    }
+
+    /**
+     * @return true if the struct schema has fitting fields for all values of the object
+     */
+    private static boolean fits(Schema schema, Map<String, Object> object) {
+        for (var entry : object.entrySet()) {
+            Field field = schema.field(entry.getKey());
+            if (field == null ? merge(null, entry.getValue(), null) != null : merge(field.schema(), entry.getValue(), null) != field.schema()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Schema scalarSchema(Object value) {
+        if (value instanceof String) {
+            return Schema.OPTIONAL_STRING_SCHEMA;
+        }
+        if (value instanceof Long) {
+            return Schema.OPTIONAL_INT64_SCHEMA;
+        }
+        if (value instanceof Double) {
+            return Schema.OPTIONAL_FLOAT64_SCHEMA;
+        }
+        return Schema.OPTIONAL_BOOLEAN_SCHEMA;
+    }
+
+    /**
+     * Converts the parsed value top-down: Struct.put validates nested structs and arrays completely, so children are
+     * put into their parents while still empty and filled afterwards, which validates every value only once.
+     */
+    @SuppressWarnings("unchecked")
+    private static Object toConnect(Schema schema, Object value) {
+        if (value == null) {
+            return null;
+        }
+        switch (schema.type()) {
+            case STRUCT:
+                Struct struct = new Struct(schema);
+                fill(struct, (Map<String, Object>) value);
+                return struct;
+            case ARRAY:
+                List<Object> array = (List<Object>) value;
+                List<Object> elements = new ArrayList<>(array.size());
+                fill(elements, schema.valueSchema(), array);
+                return elements;
+            case FLOAT64:
+                return ((Number) value).doubleValue();
+            default:
+                return value;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void fill(Struct struct, Map<String, Object> object) {
+        for (Field field : struct.schema().fields()) {
+            Object value = object.get(field.name());
+            if (value == null) {
+                continue;
+            }
+            switch (field.schema().type()) {
+                case STRUCT:
+                    Struct child = new Struct(field.schema());
+                    struct.put(field, child);
+                    fill(child, (Map<String, Object>) value);
+                    break;
+                case ARRAY:
+                    List<Object> array = (List<Object>) value;
+                    List<Object> elements = new ArrayList<>(array.size());
+                    struct.put(field, elements);
+                    fill(elements, field.schema().valueSchema(), array);
+                    break;
+                default:
+                    struct.put(field, toConnect(field.schema(), value));
+            }
+        }
+    }
+
+    private static void fill(List<Object> elements, Schema schema, List<Object> array) {
+        for (Object value : array) {
+            elements.add(toConnect(schema, value));
+        }
+    }
+
+    private static String abbreviate(byte[] line) {
+        return new String(line, 0, Math.min(line.length, 100), StandardCharsets.US_ASCII);
+    }
+}
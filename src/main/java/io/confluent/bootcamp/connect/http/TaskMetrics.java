@@ -0,0 +1,294 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Gauge;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Meter;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.utils.Time;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of one task, published over JMX as {@code kafka.connect:type=http-compressed-source-task-metrics} with the
+ * connector and task as tags, and {@code kafka.connect:type=http-compressed-source-file-metrics} per file.
+ * <p>
+ * Counters updated per line or per read are collected locally and recorded in batches, so that metering costs next
+ * to nothing on the hot path.
+ */
+public class TaskMetrics implements AutoCloseable {
+    private static final String TASK_GROUP = "http-compressed-source-task-metrics";
+    private static final String FILE_GROUP = "http-compressed-source-file-metrics";
+    // polls take milliseconds, one that takes longer than this is in the top bucket of the percentiles and in the max
+    private static final double MAX_POLL_TIME_MS = 2_000;
+    // bins that grow linearly from 1 us to 2 ms wide, 4 bytes each
+    private static final int POLL_TIME_BINS = 2_000;
+    private static final long BATCH_BYTES = 64 * 1024;
+
+    private final Metrics metrics;
+    private final Map<String, String> tags = new HashMap<>();
+    private final Sensor pollTime;
+    private final Sensor records;
+
+    public TaskMetrics(String connector, String task) {
+        metrics = new Metrics(new MetricConfig(), List.of(new JmxReporter()), Time.SYSTEM,
+                new KafkaMetricsContext("kafka.connect"));
+        tags.put("connector", connector);
+        tags.put("task", task);
+
+        pollTime = metrics.sensor("poll-time");
+        pollTime.add(taskMetric("poll-time-avg", "Average time of a poll that did not pause, in ms"), new Avg());
+        pollTime.add(taskMetric("poll-time-max", "Maximum time of a poll that did not pause, in ms"), new Max());
+        pollTime.add(new Percentiles(4 * POLL_TIME_BINS, MAX_POLL_TIME_MS, Percentiles.BucketSizing.LINEAR,
+                new Percentile(taskMetric("poll-time-p50", "Median time of a poll that did not pause, in ms"), 50),
+                new Percentile(taskMetric("poll-time-p95", "95th percentile of the time of a poll that did not pause, in ms"), 95),
+                new Percentile(taskMetric("poll-time-p99", "99th percentile of the time of a poll that did not pause, in ms"), 99)));
+
+        records = metrics.sensor("records");
+        records.add(new Meter(taskMetric("records-rate", "Records returned per second"),
+                taskMetric("records-total", "Records returned")));
+    }
+
+    /**
+     * Records a poll that did not pause for lack of work.
+     */
+    public void recordPoll(long nanos, int recordCount) {
+        pollTime.record(nanos / 1e6);
+        records.record(recordCount);
+    }
+
+    /**
+     * @return the metrics of one file of the task
+     */
+    public FileMetrics forFile(String url) {
+        return new FileMetrics(url);
+    }
+
+    private MetricName taskMetric(String name, String description) {
+        return metrics.metricName(name, TASK_GROUP, description, tags);
+    }
+
+    @Override
+    public void close() {
+        metrics.close();
+    }
+
+    /**
+     * Progress of the download and decompression of one file.
+     */
+    public class FileMetrics {
+        private final Map<String, String> fileTags = new HashMap<>(tags);
+        private final Sensor compressedBytes;
+        private final Sensor decompressedBytes;
+        private final Sensor lines;
+        private final Sensor linesSkipped;
+        private final Sensor networkTime;
+        private final Sensor decompressionTime;
+        private final KafkaMetric compressedRate;
+
+        // time blocked on the network so far, on the thread decompressing the file
+        private long networkNanos = 0;
+
+        // only written by the polling thread
+        private volatile long linesDropped = 0;
+        private volatile long downloadPosition = 0;
+        private volatile long downloadLength = -1;
+        private volatile double lag = Double.NaN;
+
+        private FileMetrics(String url) {
+            fileTags.put("file", url);
+            String prefix = "file-" + url + "-";
+
+            compressedBytes = metrics.sensor(prefix + "compressed-bytes");
+            compressedBytes.add(new Meter(fileMetric("compressed-bytes-rate", "Compressed bytes downloaded per second"),
+                    fileMetric("compressed-bytes-total", "Compressed bytes downloaded")));
+            decompressedBytes = metrics.sensor(prefix + "decompressed-bytes");
+            decompressedBytes.add(new Meter(fileMetric("decompressed-bytes-rate", "Uncompressed bytes read per second"),
+                    fileMetric("decompressed-bytes-total", "Uncompressed bytes read")));
+            lines = metrics.sensor(prefix + "lines");
+            lines.add(new Meter(fileMetric("lines-rate", "Lines read per second, including lines skipped on resume"),
+                    fileMetric("lines-total", "Lines read, including lines skipped on resume")));
+            linesSkipped = metrics.sensor(prefix + "lines-skipped");
+            linesSkipped.add(fileMetric("lines-skipped-total", "Lines read again and skipped when resuming a download"), new CumulativeSum());
+            networkTime = metrics.sensor(prefix + "network-time");
+            networkTime.add(new Meter(TimeUnit.NANOSECONDS, fileMetric("network-wait-ratio", "Fraction of time spent waiting for data from the server"),
+                    fileMetric("network-wait-time-ns-total", "Time spent waiting for data from the server")));
+            decompressionTime = metrics.sensor(prefix + "decompression-time");
+            decompressionTime.add(new Meter(TimeUnit.NANOSECONDS, fileMetric("decompression-ratio", "Fraction of time spent inflating and splitting lines"),
+                    fileMetric("decompression-time-ns-total", "Time spent inflating and splitting lines")));
+            compressedRate = metrics.metric(fileMetric("compressed-bytes-rate", ""));
+
+            metrics.addMetric(fileMetric("lines-dropped-total", "Lines no route matched, which were dropped"),
+                    (Gauge<Long>) (config, now) -> linesDropped);
+            metrics.addMetric(fileMetric("download-progress", "Fraction of the current download read, NaN without a Content-Length"),
+                    (Gauge<Double>) (config, now) -> downloadLength > 0 ? (double) downloadPosition / downloadLength : Double.NaN);
+            metrics.addMetric(fileMetric("download-remaining-ms", "Estimated time to finish the current download at the recent rate"),
+                    (Gauge<Double>) (config, now) -> {
+                        double rate = (double) compressedRate.metricValue();
+                        return downloadLength > 0 && rate > 0 ? (downloadLength - downloadPosition) / rate * 1000 : Double.NaN;
+                    });
+            metrics.addMetric(fileMetric("record-lag-ms", "Time from the Last-Modified of the file to the last record returned from it"),
+                    (Gauge<Double>) (config, now) -> lag);
+        }
+
+        private MetricName fileMetric(String name, String description) {
+            return metrics.metricName(name, FILE_GROUP, description, fileTags);
+        }
+
+        /**
+         * @param start  first byte of the file in the response, more than 0 for a Range request
+         * @param length length of the whole file, -1 if unknown
+         */
+        public void downloadStarted(long start, long length) {
+            downloadPosition = start;
+            downloadLength = length;
+        }
+
+        public void linesSkipped(long count) {
+            linesSkipped.record(count);
+        }
+
+        public void lineDropped() {
+            // a sensor would take a lock for every line
+            linesDropped++;
+        }
+
+        public void recordsReturned(long lastModified) {
+            lag = lastModified > 0 ? System.currentTimeMillis() - lastModified : Double.NaN;
+        }
+
+        /**
+         * @return the response body, counting the bytes read and the time spent waiting for them
+         */
+        public InputStream meter(InputStream body) {
+            return new FilterInputStream(body) {
+                private long bytes = 0;
+                private long nanos = 0;
+
+                @Override
+                public int read() throws IOException {
+                    long start = System.nanoTime();
+                    int b = super.read();
+                    count(b == -1 ? -1 : 1, System.nanoTime() - start);
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    long start = System.nanoTime();
+                    int n = super.read(buffer, offset, length);
+                    count(n, System.nanoTime() - start);
+                    return n;
+                }
+
+                private void count(int n, long elapsed) {
+                    networkNanos += elapsed;
+                    nanos += elapsed;
+                    if (n > 0) {
+                        bytes += n;
+                        downloadPosition += n;
+                    }
+                    if (bytes >= BATCH_BYTES || n < 0) {
+                        flush();
+                    }
+                }
+
+                private void flush() {
+                    compressedBytes.record(bytes);
+                    networkTime.record(nanos);
+                    bytes = 0;
+                    nanos = 0;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                    super.close();
+                }
+            };
+        }
+
+        /**
+         * @return the reader, counting lines and uncompressed bytes and the time spent on them apart from the network
+         */
+        public LineReader meter(LineReader reader) {
+            return new LineReader() {
+                private long lineCount = 0;
+                private long bytes = 0;
+                private long nanos = 0;
+
+                @Override
+                public byte[] readLine() throws IOException {
+                    long position = reader.getPosition();
+                    long network = networkNanos;
+                    long start = System.nanoTime();
+                    byte[] line = reader.readLine();
+                    nanos += Math.max(0, System.nanoTime() - start - (networkNanos - network));
+                    if (line != null) {
+                        lineCount++;
+                        bytes += reader.getPosition() - position;
+                    }
+                    if (bytes >= BATCH_BYTES || line == null) {
+                        flush();
+                    }
+                    return line;
+                }
+
+                private void flush() {
+                    lines.record(lineCount);
+                    decompressedBytes.record(bytes);
+                    decompressionTime.record(nanos);
+                    lineCount = 0;
+                    bytes = 0;
+                    nanos = 0;
+                }
+
+                @Override
+                public boolean ready() {
+                    return reader.ready();
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return reader.isFinished();
+                }
+
+                @Override
+                public long getPosition() {
+                    return reader.getPosition();
+                }
+
+                @Override
+                public GzipCheckpoint getCheckpoint() {
+                    return reader.getCheckpoint();
+                }
+
+                @Override
+                public String getContentHash() {
+                    return reader.getContentHash();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                    reader.close();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.TextStyle;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Follows a feed that publishes a full file and a daily update file per day of the week, each replacing the one of
+ * the week before, such as {@code toc-full} and {@code toc-update-mon} to {@code toc-update-sun} of the Network Rail
+ * schedule feed.
+ * <p>
+ * The full file is read once, after that the update of every following day in turn. The offset keeps the file being
+ * read and the last day applied, so that a task that was stopped for a few days catches up on the days it missed in
+ * order. Once the update of a day it needs has been replaced by that of the following week, it reads the full file
+ * again. The day of a file is the date of its Last-Modified time in check.timezone.
+ */
+public class UpdateFeed {
+    static final String FILE_FIELD = "feed_file";
+    static final String DAY_FIELD = "feed_day";
+    static final String FULL = "full";
+    // an update published this many days after its day is that of a later week
+    private static final int MISSED_AFTER_DAYS = 3;
+
+    private final String fullUrl;
+    private final String updateUrl;
+    private final String updateDayPrefix;
+    private final ZoneId zone;
+
+    // FULL or the day of the update being read or waited for
+    private String target = null;
+    private LocalDate appliedDay = null;
+
+    public UpdateFeed(String baseUrl, HttpCompressedSourceConfiguration config) {
+        this.fullUrl = HttpCompressedSourceConfiguration.expandUrls(List.of(baseUrl),
+                List.of(config.feedFullType), List.of(config.feedFullDay)).get(0);
+        this.updateUrl = HttpCompressedSourceConfiguration.expandUrls(List.of(baseUrl),
+                List.of(config.feedUpdateType), List.of()).get(0);
+        this.updateDayPrefix = config.feedUpdateDayPrefix;
+        this.zone = config.checkTimezone;
+    }
+
+    /**
+     * Picks up where the stored offset left off, the first time it is called: the file it was reading, or the
+     * update of the day after the last day applied. Without an offset, the feed starts with the full file.
+     */
+    public void start(Map<String, Object> offset, boolean eof) {
+        if (target != null) {
+            return;
+        }
+        String file = offset != null ? (String) offset.get(FILE_FIELD) : null;
+        String day = offset != null ? (String) offset.get(DAY_FIELD) : null;
+        appliedDay = day != null ? LocalDate.parse(day) : null;
+
+        if (file == null || (eof && appliedDay == null)) {
+            // no offset, or one written in file mode
+            target = FULL;
+        }
+        else {
+            target = eof ? appliedDay.plusDays(1).toString() : file;
+        }
+    }
+
+    /**
+     * @return true if the offset is that of the file to read, so that it can be resumed or checked for a change
+     */
+    public boolean isCurrent(Map<String, Object> offset) {
+        return offset != null && target.equals(offset.get(FILE_FIELD));
+    }
+
+    public boolean isFull() {
+        return FULL.equals(target);
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    public String getUrl() {
+        if (isFull()) {
+            return fullUrl;
+        }
+        String weekday = LocalDate.parse(target).getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.US);
+        return HttpCompressedSourceConfiguration.expandUrls(List.of(updateUrl), List.of(),
+                List.of(updateDayPrefix + weekday.toLowerCase(Locale.US))).get(0);
+    }
+
+    /**
+     * @return true if the update file has been published too long after the day it is read for, which means the
+     * update of that day has been replaced already
+     */
+    public boolean isMissed(long lastModified) {
+        return !isFull() && dayOf(lastModified).isAfter(LocalDate.parse(target).plusDays(MISSED_AFTER_DAYS));
+    }
+
+    /**
+     * Goes back to the full file, after the update of a day has been missed.
+     */
+    public void snapshot() {
+        target = FULL;
+    }
+
+    /**
+     * The file has been read to its end: its day has been applied, the next one is the update of the following day.
+     */
+    public void completed(long lastModified) {
+        appliedDay = appliedDay(lastModified);
+        target = appliedDay.plusDays(1).toString();
+    }
+
+    /**
+     * @return true if the update the feed waits for is that of a day that has begun already, so it is worth
+     * checking for it straight away
+     */
+    public boolean isBehind(long now) {
+        return !isFull() && !LocalDate.parse(target).isAfter(dayOf(now));
+    }
+
+    /**
+     * Adds the file being read and the last day applied, which is the day of the file once it has been read.
+     */
+    public void writeTo(Map<String, Object> offset, boolean eof, long lastModified) {
+        offset.put(FILE_FIELD, target);
+        LocalDate day = eof ? appliedDay(lastModified) : appliedDay;
+        if (day != null) {
+            offset.put(DAY_FIELD, day.toString());
+        }
+    }
+
+    private LocalDate appliedDay(long lastModified) {
+        return isFull() ? dayOf(lastModified) : LocalDate.parse(target);
+    }
+
+    private LocalDate dayOf(long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+    }
+}
@@ -0,0 +1,211 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SSLSession;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CheckSchedulerTest {
+    private static final long MIN_INTERVAL = 1_000;
+    private static final long MAX_INTERVAL = 8_000;
+    // Mon, 24 Jul 2023 12:00:00 GMT
+    private static final long NOW = 1_690_200_000_000L;
+
+    @Test
+    void waitsForMaxAge() {
+        assertFreshFor(60_000, "Cache-Control", "max-age=60");
+        assertFreshFor(60_000, "Cache-Control", "public, max-age=60");
+        assertFreshFor(60_000, "Cache-Control", "private,max-age=60,must-revalidate");
+        assertFreshFor(60_000, "Cache-Control", "max-age = \"60\"");
+        // directives are case-insensitive
+        assertFreshFor(60_000, "Cache-Control", "Public, MAX-AGE=60");
+        assertFreshFor(0, "Cache-Control", "max-age=0");
+    }
+
+    @Test
+    void takesTheAgeOffMaxAge() {
+        assertFreshFor(40_000, "Cache-Control", "max-age=60", "Age", "20");
+        // stale already
+        assertFreshFor(0, "Cache-Control", "max-age=60", "Age", "90");
+        assertFreshFor(60_000, "Cache-Control", "max-age=60", "Age", "soon");
+    }
+
+    @Test
+    void ignoresOtherDirectives() {
+        assertFreshFor(0, "Cache-Control", "s-maxage=60");
+        assertFreshFor(0, "Cache-Control", "x-max-age=60");
+        assertFreshFor(0, "Cache-Control", "max-age=sixty");
+        assertFreshFor(0, "Cache-Control", "public");
+    }
+
+    @Test
+    void neverWaitsForResponsesThatMustNotBeCached() {
+        assertFreshFor(0, "Cache-Control", "max-age=60, no-cache");
+        assertFreshFor(0, "Cache-Control", "no-store, max-age=60");
+        assertFreshFor(0, "Cache-Control", "No-Cache, max-age=60");
+        // not even with Expires
+        assertFreshFor(0, "Cache-Control", "no-cache", "Expires", date(NOW + 60_000));
+    }
+
+    /**
+     * Ages too large for a long are taken as 2^31 seconds instead of failing the poll.
+     */
+    @Test
+    void capsHugeMaxAge() {
+        assertFreshFor((1L << 31) * 1000, "Cache-Control", "max-age=99999999999999999999");
+        assertFreshFor((1L << 31) * 1000, "Cache-Control", "max-age=4294967296");
+        assertFreshFor(2_147_483_647_000L, "Cache-Control", "max-age=2147483647");
+    }
+
+    @Test
+    void waitsForExpiresRelativeToDate() {
+        // the server clock is an hour ahead, only the difference counts
+        assertFreshFor(120_000, "Date", date(NOW + 3_600_000), "Expires", date(NOW + 3_720_000));
+        assertFreshFor(30_000, "Expires", date(NOW + 30_000));
+        assertFreshFor(0, "Date", date(NOW), "Expires", date(NOW - 60_000));
+        // an invalid date means expired already
+        assertFreshFor(0, "Expires", "0");
+        assertFreshFor(0, "Expires", "tomorrow");
+    }
+
+    @Test
+    void prefersMaxAgeToExpires() {
+        assertFreshFor(60_000, "Cache-Control", "max-age=60", "Expires", date(NOW + 600_000));
+        assertFreshFor(600_000, "Cache-Control", "public", "Expires", date(NOW + 600_000));
+    }
+
+    @Test
+    void forgetsTheFreshnessOfEarlierResponses() {
+        CheckScheduler scheduler = scheduler(List.of());
+        scheduler.cacheHeaders(response("Cache-Control", "max-age=600"), NOW);
+        scheduler.cacheHeaders(response(), NOW);
+        scheduler.unchanged(NOW);
+
+        assertEquals(NOW + MIN_INTERVAL, scheduler.getNextCheck());
+    }
+
+    @Test
+    void backsOffWhileUnchanged() {
+        CheckScheduler scheduler = scheduler(List.of());
+        long[] expected = {1_000, 2_000, 4_000, 8_000, 8_000};
+        for (long interval : expected) {
+            scheduler.unchanged(NOW);
+            assertEquals(NOW + interval, scheduler.getNextCheck());
+        }
+
+        scheduler.completed(NOW);
+        assertEquals(NOW + MIN_INTERVAL, scheduler.getNextCheck());
+        scheduler.unchanged(NOW);
+        assertEquals(NOW + 2_000, scheduler.getNextCheck());
+
+        scheduler.catchUp(NOW);
+        assertEquals(true, scheduler.isDue(NOW));
+    }
+
+    @Test
+    void movesChecksIntoWindows() {
+        CheckScheduler scheduler = scheduler(List.of("22:00-02:00", " 6:30-7:00 "));
+
+        assertEquals(at(2023, 7, 24, 22, 0), scheduler.inWindow(at(2023, 7, 24, 12, 0)));
+        assertEquals(at(2023, 7, 24, 23, 0), scheduler.inWindow(at(2023, 7, 24, 23, 0)));
+        assertEquals(at(2023, 7, 25, 1, 59), scheduler.inWindow(at(2023, 7, 25, 1, 59)));
+        assertEquals(at(2023, 7, 25, 6, 30), scheduler.inWindow(at(2023, 7, 25, 2, 0)));
+        assertEquals(at(2023, 7, 25, 22, 0), scheduler.inWindow(at(2023, 7, 25, 7, 0)));
+    }
+
+    @Test
+    void rejectsMalformedWindows() {
+        for (String window : new String[] {"22:00", "22:00-", "25:00-01:00", "10:60-11:00", "ten-eleven"}) {
+            assertThrows(ConfigException.class, () -> CheckScheduler.parseWindows(List.of(window)), window);
+        }
+    }
+
+    /**
+     * @param headers names and values
+     */
+    private static void assertFreshFor(long fresh, String... headers) {
+        CheckScheduler scheduler = scheduler(List.of());
+        scheduler.cacheHeaders(response(headers), NOW);
+        scheduler.unchanged(NOW);
+
+        assertEquals(NOW + Math.max(fresh, MIN_INTERVAL), scheduler.getNextCheck(), String.join(": ", headers));
+    }
+
+    private static CheckScheduler scheduler(List<String> windows) {
+        return new CheckScheduler(MIN_INTERVAL, MAX_INTERVAL, windows, ZoneOffset.UTC);
+    }
+
+    private static String date(long millis) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC));
+    }
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    private static HttpResponse<Void> response(String... headers) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (int i = 0; i < headers.length; i += 2) {
+            map.put(headers[i], List.of(headers[i + 1]));
+        }
+        HttpHeaders httpHeaders = HttpHeaders.of(map, (name, value) -> true);
+
+        return new HttpResponse<>() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpRequest request() {
+                return HttpRequest.newBuilder(URI.create("http://localhost/")).build();
+            }
+
+            @Override
+            public Optional<HttpResponse<Void>> previousResponse() {
+                return Optional.empty();
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return httpHeaders;
+            }
+
+            @Override
+            public Void body() {
+                return null;
+            }
+
+            @Override
+            public Optional<SSLSession> sslSession() {
+                return Optional.empty();
+            }
+
+            @Override
+            public URI uri() {
+                return request().uri();
+            }
+
+            @Override
+            public HttpClient.Version version() {
+                return HttpClient.Version.HTTP_1_1;
+            }
+        };
+    }
+}
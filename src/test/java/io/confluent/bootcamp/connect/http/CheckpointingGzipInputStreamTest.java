@@ -0,0 +1,214 @@
+package io.confluent.bootcamp.connect.http;
+
+import io.confluent.bootcamp.connect.http.DeflateSamples.Sample;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointingGzipInputStreamTest {
+    private static final long CHECKPOINT_INTERVAL = 4096;
+
+    static Stream<Sample> samples() {
+        return DeflateSamples.samples();
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void inflatesLikeJavaUtilZip(Sample sample) throws IOException {
+        CheckpointingGzipInputStream in = new CheckpointingGzipInputStream(new ByteArrayInputStream(sample.gzip), CHECKPOINT_INTERVAL);
+
+        assertArrayEquals(sample.data, readInPieces(in, new Random(1)));
+        assertEquals(sample.data.length, in.getPosition());
+        assertEquals(-1, in.read());
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void resumesFromEveryCheckpoint(Sample sample) throws IOException {
+        List<GzipCheckpoint> checkpoints = checkpoints(sample);
+        if (sample.gzip.length > 16 * CHECKPOINT_INTERVAL) {
+            assertFalse(checkpoints.isEmpty(), "no checkpoints in " + sample.gzip.length + " bytes");
+        }
+
+        for (GzipCheckpoint checkpoint : checkpoints) {
+            // the checkpoint as it comes back from a source offset
+            Map<String, Object> offset = new HashMap<>();
+            checkpoint.writeTo(offset);
+            GzipCheckpoint restored = GzipCheckpoint.fromOffset(offset);
+            assertNotNull(restored);
+
+            CheckpointingGzipInputStream in = resume(sample, restored);
+            assertEquals(checkpoint.getPosition(), in.getPosition());
+            byte[] rest = in.readAllBytes();
+            assertArrayEquals(Arrays.copyOfRange(sample.data, (int) checkpoint.getPosition(), sample.data.length), rest,
+                    "resumed at bit " + checkpoint.getBitOffset() + ", position " + checkpoint.getPosition());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void skipsFromACheckpoint(Sample sample) throws IOException {
+        for (GzipCheckpoint checkpoint : checkpoints(sample)) {
+            long target = Math.min(checkpoint.getPosition() + 12_345, sample.data.length);
+
+            CheckpointingGzipInputStream in = resume(sample, checkpoint);
+            long skipped = 0;
+            while (skipped < target - checkpoint.getPosition()) {
+                long n = in.skip(target - checkpoint.getPosition() - skipped);
+                assertTrue(n > 0);
+                skipped += n;
+            }
+            assertEquals(target, in.getPosition());
+            assertArrayEquals(Arrays.copyOfRange(sample.data, (int) target, sample.data.length), in.readAllBytes());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void failsOnTruncatedInput(Sample sample) {
+        for (int cut : cutPoints(sample.gzip.length)) {
+            if (sample.isMemberEnd(cut)) {
+                continue;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = new CheckpointingGzipInputStream(new ByteArrayInputStream(sample.gzip, 0, cut), CHECKPOINT_INTERVAL);
+
+            assertThrows(IOException.class, () -> in.transferTo(out), "cut at " + cut);
+            assertPrefix(sample.data, out.toByteArray());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void failsOnCorruptTrailer(Sample sample) {
+        int length = sample.gzip.length;
+        // the last byte of the CRC and of the size
+        for (int index : new int[] {length - 5, length - 1}) {
+            byte[] corrupt = sample.gzip.clone();
+            corrupt[index] ^= 0x10;
+            InputStream in = new CheckpointingGzipInputStream(new ByteArrayInputStream(corrupt), CHECKPOINT_INTERVAL);
+
+            assertThrows(ZipException.class, in::readAllBytes);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void failsOnCorruptData(Sample sample) {
+        if (sample.memberEnds.length > 1 || sample.gzip.length < 1024) {
+            return;
+        }
+        Random random = new Random(sample.name.hashCode());
+        for (int i = 0; i < 50; i++) {
+            // stay clear of the header, the modification time and operating system are not checked
+            int index = sample.gzip.length / 10 + random.nextInt(sample.gzip.length * 9 / 10 - 8);
+            byte[] corrupt = sample.gzip.clone();
+            corrupt[index] ^= 1 << random.nextInt(8);
+            InputStream in = new CheckpointingGzipInputStream(new ByteArrayInputStream(corrupt), CHECKPOINT_INTERVAL);
+
+            // the bits that pad a stored block header to a whole byte are not part of the data
+            try {
+                assertArrayEquals(sample.data, in.readAllBytes(), "bit flipped at " + index);
+            } catch (IOException e) {
+                // detected
+            }
+        }
+    }
+
+    @Test
+    void rejectsOtherFormats() {
+        byte[] gzip = DeflateSamples.gzip(new byte[] {1, 2, 3}, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+        byte[] magic = gzip.clone();
+        magic[1] = 0;
+        assertThrows(ZipException.class, () -> new CheckpointingGzipInputStream(new ByteArrayInputStream(magic), CHECKPOINT_INTERVAL).readAllBytes());
+
+        byte[] method = gzip.clone();
+        method[2] = 7;
+        assertThrows(ZipException.class, () -> new CheckpointingGzipInputStream(new ByteArrayInputStream(method), CHECKPOINT_INTERVAL).readAllBytes());
+    }
+
+    /**
+     * Reads the whole sample in small pieces and keeps every checkpoint on the way.
+     */
+    private static List<GzipCheckpoint> checkpoints(Sample sample) throws IOException {
+        CheckpointingGzipInputStream in = new CheckpointingGzipInputStream(new ByteArrayInputStream(sample.gzip), CHECKPOINT_INTERVAL);
+        List<GzipCheckpoint> checkpoints = new ArrayList<>();
+        byte[] buffer = new byte[1000];
+        while (in.read(buffer) != -1) {
+            GzipCheckpoint checkpoint = in.checkpointFor(in.getPosition());
+            if (checkpoint != null && (checkpoints.isEmpty() || checkpoints.get(checkpoints.size() - 1) != checkpoint)) {
+                checkpoints.add(checkpoint);
+            }
+        }
+        return checkpoints;
+    }
+
+    private static CheckpointingGzipInputStream resume(Sample sample, GzipCheckpoint checkpoint) throws IOException {
+        int start = (int) checkpoint.getByteOffset();
+        InputStream rest = new ByteArrayInputStream(sample.gzip, start, sample.gzip.length - start);
+        return new CheckpointingGzipInputStream(rest, checkpoint, CHECKPOINT_INTERVAL);
+    }
+
+    private static byte[] readInPieces(InputStream in, Random random) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        while (true) {
+            if (random.nextInt(4) == 0) {
+                int b = in.read();
+                if (b == -1) {
+                    return out.toByteArray();
+                }
+                out.write(b);
+            }
+            else {
+                int n = in.read(buffer, 0, 1 + random.nextInt(buffer.length));
+                if (n == -1) {
+                    return out.toByteArray();
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    /**
+     * @return every offset within the header, the trailer and the first kilobyte, and a hundred in between
+     */
+    static int[] cutPoints(int length) {
+        return Stream.of(
+                        Stream.iterate(1, i -> i < Math.min(length, 1024), i -> i + 1),
+                        Stream.iterate(0, i -> i < 100, i -> i + 1).map(i -> (int) ((long) length * i / 100)),
+                        Stream.iterate(Math.max(1, length - 20), i -> i < length, i -> i + 1))
+                .flatMap(s -> s)
+                .filter(i -> i > 0)
+                .distinct()
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    static void assertPrefix(byte[] data, byte[] prefix) {
+        assertTrue(prefix.length <= data.length, "more output than data");
+        assertArrayEquals(Arrays.copyOf(data, prefix.length), prefix, "output is not a prefix of the data");
+    }
+}
@@ -0,0 +1,408 @@
+package io.confluent.bootcamp.connect.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Gzip streams to test the inflaters with, written by {@link Deflater} with every level and strategy that changes the
+ * kind of blocks it emits, and by a small encoder of fixed Huffman and stored blocks that java.util.zip only produces
+ * for some inputs.
+ */
+final class DeflateSamples {
+    private static final String[] WORDS = {
+            "train", "station", "platform", "departure", "arrival", "delayed", "cancelled", "on time", "schedule",
+            "London", "Bristol", "Leeds", "York", "Edinburgh", "\n", ", ", "0", "12:45", "17:03", "{\"id\": ", "}"
+    };
+
+    private static List<Sample> samples;
+
+    private DeflateSamples() {
+    }
+
+    /**
+     * A gzip stream together with what it inflates to.
+     */
+    static final class Sample {
+        final String name;
+        final byte[] data;
+        final byte[] gzip;
+        // offsets at which a member ends, the stream is still complete when cut there
+        final long[] memberEnds;
+
+        Sample(String name, byte[] data, byte[] gzip, long[] memberEnds) {
+            this.name = name;
+            this.data = data;
+            this.gzip = gzip;
+            this.memberEnds = memberEnds;
+        }
+
+        Sample(String name, byte[] data, byte[] gzip) {
+            this(name, data, gzip, new long[] {gzip.length});
+        }
+
+        boolean isMemberEnd(long offset) {
+            return Arrays.stream(memberEnds).anyMatch(end -> end == offset);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static synchronized Stream<Sample> samples() {
+        if (samples == null) {
+            samples = createSamples();
+        }
+        return samples.stream();
+    }
+
+    private static List<Sample> createSamples() {
+        Random random = new Random(42);
+        byte[] text = text(random, 300_000);
+        byte[] noise = random(random, 200_000);
+        byte[] zeros = new byte[200_000];
+        byte[] periodic = periodic(random, 100_000, DeflateTables.WINDOW_SIZE);
+
+        List<Sample> samples = new ArrayList<>();
+        samples.add(new Sample("empty", new byte[0], gzip(new byte[0], Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0)));
+        samples.add(new Sample("one byte", new byte[] {'x'}, gzip(new byte[] {'x'}, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0)));
+        samples.add(new Sample("zeros", zeros, gzip(zeros, Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0)));
+        samples.add(new Sample("text, level 1", text, gzip(text, Deflater.BEST_SPEED, Deflater.DEFAULT_STRATEGY, 0)));
+        samples.add(new Sample("text, level 6", text, gzip(text, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0)));
+        samples.add(new Sample("text, level 9", text, gzip(text, Deflater.BEST_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0)));
+        samples.add(new Sample("text, filtered", text, gzip(text, Deflater.DEFAULT_COMPRESSION, Deflater.FILTERED, 0)));
+        samples.add(new Sample("text, huffman only", text, gzip(text, Deflater.DEFAULT_COMPRESSION, Deflater.HUFFMAN_ONLY, 0)));
+        samples.add(new Sample("text, stored", text, gzip(text, Deflater.NO_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0)));
+        // small flushes make zlib choose fixed Huffman blocks, each flush adds an empty stored block
+        samples.add(new Sample("text, flushed", Arrays.copyOf(text, 50_000), gzip(Arrays.copyOf(text, 50_000), Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 100)));
+        samples.add(new Sample("random", noise, gzip(noise, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0)));
+        samples.add(new Sample("periodic, fixed and stored", periodic, fixedAndStored(periodic, 20_000)));
+        samples.add(new Sample("text, fixed and stored", Arrays.copyOf(text, 100_000), fixedAndStored(Arrays.copyOf(text, 100_000), 7_000)));
+        samples.add(new Sample("header fields", text, withHeaderFields(gzip(text, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0))));
+        samples.add(multiMember(
+                gzip(Arrays.copyOf(text, 100_000), Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0), Arrays.copyOf(text, 100_000),
+                gzip(new byte[0], Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0), new byte[0],
+                gzip(Arrays.copyOf(noise, 50_000), Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0), Arrays.copyOf(noise, 50_000),
+                fixedAndStored(Arrays.copyOf(periodic, 60_000), 20_000), Arrays.copyOf(periodic, 60_000)));
+        samples.add(bgzf(text, 60_000));
+
+        for (Sample sample : samples) {
+            if (!Arrays.equals(sample.data, gunzip(sample.gzip))) {
+                throw new IllegalStateException("GZIPInputStream does not agree with sample " + sample.name);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * @return words and numbers in random order, compressing to dynamic blocks with plenty of back-references
+     */
+    static byte[] text(Random random, int length) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + 32);
+        while (out.size() < length) {
+            out.writeBytes(WORDS[random.nextInt(WORDS.length)].getBytes(StandardCharsets.UTF_8));
+            out.write(' ');
+        }
+        return Arrays.copyOf(out.toByteArray(), length);
+    }
+
+    static byte[] random(Random random, int length) {
+        byte[] data = new byte[length];
+        random.nextBytes(data);
+        return data;
+    }
+
+    /**
+     * @return random bytes repeating after {@code period}, so that back-references reach exactly that far
+     */
+    static byte[] periodic(Random random, int length, int period) {
+        byte[] pattern = random(random, period);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = pattern[i % period];
+        }
+        return data;
+    }
+
+    /**
+     * Compresses like GZIPOutputStream, but with any level and strategy.
+     *
+     * @param flushEvery bytes between sync flushes, or 0 to flush only at the end
+     */
+    static byte[] gzip(byte[] data, int level, int strategy, int flushEvery) {
+        Deflater deflater = new Deflater(level, true);
+        deflater.setStrategy(strategy);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+
+        byte[] buffer = new byte[64 * 1024];
+        int step = flushEvery > 0 ? flushEvery : Math.max(data.length, 1);
+        int flush = flushEvery > 0 ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH;
+        for (int start = 0; start < data.length; start += step) {
+            deflater.setInput(data, start, Math.min(step, data.length - start));
+            int n;
+            while ((n = deflater.deflate(buffer, 0, buffer.length, flush)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+
+        writeTrailer(out, data);
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses into alternating fixed Huffman and stored blocks of {@code blockSize} bytes, with back-references
+     * across block boundaries, of the maximum length and the maximum distance.
+     */
+    static byte[] fixedAndStored(byte[] data, int blockSize) {
+        BitWriter out = new BitWriter();
+        out.bytes(new byte[] {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff});
+
+        int[] head = new int[1 << 16];
+        Arrays.fill(head, -1);
+        boolean fixed = true;
+        int start = 0;
+        do {
+            int end = Math.min(start + blockSize, data.length);
+            boolean last = end == data.length;
+            out.bits(last ? 1 : 0, 1);
+            if (fixed) {
+                out.bits(1, 2);
+                int i = start;
+                while (i < end) {
+                    int match = 0;
+                    int distance = 0;
+                    if (i + 2 < end) {
+                        int hash = hash(data, i);
+                        int candidate = head[hash];
+                        head[hash] = i;
+                        if (candidate >= 0 && i - candidate <= DeflateTables.WINDOW_SIZE) {
+                            while (match < DeflateTables.MAX_MATCH && i + match < end && data[candidate + match] == data[i + match]) {
+                                match++;
+                            }
+                            distance = i - candidate;
+                        }
+                    }
+                    if (match >= 3) {
+                        out.length(match);
+                        out.distance(distance);
+                        for (int j = i + 1; j < i + match && j + 2 < data.length; j++) {
+                            head[hash(data, j)] = j;
+                        }
+                        i += match;
+                    }
+                    else {
+                        out.literal(data[i] & 0xFF);
+                        i++;
+                    }
+                }
+                out.literal(256);
+            }
+            else {
+                out.bits(0, 2);
+                out.align();
+                int length = end - start;
+                out.bits(length, 16);
+                out.bits(~length & 0xFFFF, 16);
+                out.bytes(Arrays.copyOfRange(data, start, end));
+                for (int j = start; j < end && j + 2 < data.length; j++) {
+                    head[hash(data, j)] = j;
+                }
+            }
+            fixed = !fixed;
+            start = end;
+        } while (start < data.length);
+
+        out.align();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        result.writeBytes(out.toByteArray());
+        writeTrailer(result, data);
+        return result.toByteArray();
+    }
+
+    /**
+     * Sets the FEXTRA, FNAME, FCOMMENT and FHCRC flags of a member and adds the fields.
+     */
+    static byte[] withHeaderFields(byte[] gzip) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(gzip, 0, 3);
+        out.write(4 | 8 | 16 | 2);
+        out.write(gzip, 4, 6);
+        out.writeBytes(new byte[] {6, 0, 'A', 'B', 2, 0, 1, 2});
+        out.writeBytes("schedule.json\0".getBytes(StandardCharsets.ISO_8859_1));
+        out.writeBytes("a comment\0".getBytes(StandardCharsets.ISO_8859_1));
+        CRC32 crc = new CRC32();
+        crc.update(out.toByteArray());
+        out.write((int) crc.getValue() & 0xFF);
+        out.write((int) (crc.getValue() >>> 8) & 0xFF);
+        out.write(gzip, 10, gzip.length - 10);
+        return out.toByteArray();
+    }
+
+    /**
+     * @param parts gzip members, each followed by what it inflates to
+     */
+    static Sample multiMember(byte[]... parts) {
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        long[] memberEnds = new long[parts.length / 2];
+        for (int i = 0; i < parts.length; i += 2) {
+            gzip.writeBytes(parts[i]);
+            data.writeBytes(parts[i + 1]);
+            memberEnds[i / 2] = gzip.size();
+        }
+        return new Sample("multiple members", data.toByteArray(), gzip.toByteArray(), memberEnds);
+    }
+
+    /**
+     * Compresses blocks of {@code blockSize} bytes into members that record their size in a BC extra field, followed
+     * by the empty member that marks the end of a BGZF file.
+     */
+    static Sample bgzf(byte[] data, int blockSize) {
+        List<byte[]> parts = new ArrayList<>();
+        for (int start = 0; start <= data.length; start += blockSize) {
+            byte[] block = Arrays.copyOfRange(data, start, Math.min(start + blockSize, data.length));
+            byte[] member = gzip(block, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int size = member.length + 8;
+            out.writeBytes(new byte[] {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0});
+            out.write((size - 1) & 0xFF);
+            out.write((size - 1) >>> 8);
+            out.write(member, 10, member.length - 10);
+            parts.add(out.toByteArray());
+            parts.add(block);
+        }
+        Sample sample = multiMember(parts.toArray(new byte[0][]));
+        return new Sample("bgzf", sample.data, sample.gzip, sample.memberEnds);
+    }
+
+    static byte[] gunzip(byte[] gzip) {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int hash(byte[] data, int i) {
+        return ((data[i] & 0xFF) << 8 ^ (data[i + 1] & 0xFF) << 4 ^ (data[i + 2] & 0xFF)) & 0xFFFF;
+    }
+
+    private static void writeTrailer(ByteArrayOutputStream out, byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        long value = crc.getValue();
+        long size = data.length & 0xFFFFFFFFL;
+        for (int i = 0; i < 4; i++) {
+            out.write((int) (value >>> (8 * i)) & 0xFF);
+        }
+        for (int i = 0; i < 4; i++) {
+            out.write((int) (size >>> (8 * i)) & 0xFF);
+        }
+    }
+
+    /**
+     * Writes bits least significant first and Huffman codes most significant first, as RFC 1951 has it.
+     */
+    private static final class BitWriter {
+        private static final int[] LENGTH_BASE = {
+                3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258
+        };
+        private static final int[] LENGTH_EXTRA = {
+                0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+        };
+        private static final int[] DISTANCE_BASE = {
+                1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073,
+                4097, 6145, 8193, 12289, 16385, 24577
+        };
+        private static final int[] DISTANCE_EXTRA = {
+                0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+        };
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int buffer;
+        private int count;
+
+        void bits(int value, int length) {
+            for (int i = 0; i < length; i++) {
+                buffer |= ((value >>> i) & 1) << count;
+                if (++count == 8) {
+                    out.write(buffer);
+                    buffer = 0;
+                    count = 0;
+                }
+            }
+        }
+
+        void code(int code, int length) {
+            bits(Integer.reverse(code) >>> (32 - length), length);
+        }
+
+        void align() {
+            if (count > 0) {
+                bits(0, 8 - count);
+            }
+        }
+
+        void bytes(byte[] data) {
+            for (byte b : data) {
+                bits(b & 0xFF, 8);
+            }
+        }
+
+        void literal(int symbol) {
+            if (symbol < 144) {
+                code(0x30 + symbol, 8);
+            }
+            else if (symbol < 256) {
+                code(0x190 + symbol - 144, 9);
+            }
+            else if (symbol < 280) {
+                code(symbol - 256, 7);
+            }
+            else {
+                code(0xC0 + symbol - 280, 8);
+            }
+        }
+
+        void length(int length) {
+            int index = LENGTH_BASE.length - 1;
+            while (LENGTH_BASE[index] > length) {
+                index--;
+            }
+            literal(257 + index);
+            bits(length - LENGTH_BASE[index], LENGTH_EXTRA[index]);
+        }
+
+        void distance(int distance) {
+            int index = DISTANCE_BASE.length - 1;
+            while (DISTANCE_BASE[index] > distance) {
+                index--;
+            }
+            code(index, 5);
+            bits(distance - DISTANCE_BASE[index], DISTANCE_EXTRA[index]);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+}
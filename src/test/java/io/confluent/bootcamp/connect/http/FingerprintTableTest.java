@@ -0,0 +1,164 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FingerprintTableTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Fingerprints that fall on the same slot are stored in the slots after it, wrapping around the end of the table,
+     * and a lookup of a missing fingerprint walks the whole chain.
+     */
+    @Test
+    void probesPastCollisions() throws IOException {
+        try (FingerprintTable table = FingerprintTable.create(directory.resolve("table"), 8)) {
+            // capacity 16, all on the last slot
+            long[] colliding = new long[6];
+            for (int i = 0; i < colliding.length; i++) {
+                colliding[i] = 15 + ((long) i << 32) + ((long) i << 4);
+            }
+            for (long fingerprint : colliding) {
+                assertTrue(table.add(fingerprint));
+            }
+            for (long fingerprint : colliding) {
+                assertFalse(table.add(fingerprint));
+                assertTrue(table.contains(fingerprint));
+            }
+            assertFalse(table.contains(15 + (99L << 32)));
+            // on a slot inside the chain
+            assertFalse(table.contains(2 + (99L << 32)));
+            assertTrue(table.add(2 + (99L << 32)));
+            assertTrue(table.contains(2 + (99L << 32)));
+            assertEquals(colliding.length + 1, table.size());
+        }
+    }
+
+    @Test
+    void storesZeroAsOne() throws IOException {
+        try (FingerprintTable table = FingerprintTable.create(directory.resolve("table"), 4)) {
+            assertFalse(table.contains(0));
+            assertTrue(table.add(0));
+            assertTrue(table.contains(0));
+            // zero marks empty slots, so it shares its slot with one
+            assertTrue(table.contains(1));
+            assertFalse(table.add(1));
+            assertEquals(1, table.size());
+        }
+    }
+
+    /**
+     * The table does not grow, it is sized for the number of fingerprints it is created for: that many fit at every
+     * size, up to half the capacity, and one more than fits fails instead of looping forever.
+     */
+    @Test
+    void holdsTheNumberItIsCreatedFor() throws IOException {
+        Random random = new Random(5);
+        for (int expected : new int[] {0, 1, 7, 8, 9, 1000, 1024, 1025, 100_000}) {
+            Path file = directory.resolve("table-" + expected);
+            Set<Long> added = new HashSet<>();
+            try (FingerprintTable table = FingerprintTable.create(file, expected)) {
+                while (added.size() < expected) {
+                    long fingerprint = random.nextLong();
+                    if (fingerprint != 0 && added.add(fingerprint)) {
+                        assertTrue(table.add(fingerprint));
+                    }
+                }
+                assertEquals(expected, table.size());
+
+                long capacity = (Files.size(file) - 3 * Long.BYTES) / Long.BYTES;
+                assertEquals(1, Long.bitCount(capacity));
+                assertTrue(capacity >= 2L * expected && (capacity == 16 || capacity < 4L * expected), "capacity " + capacity);
+
+                while (table.size() < capacity / 2) {
+                    table.add(random.nextLong() | 1);
+                }
+                assertThrows(IllegalStateException.class, () -> {
+                    while (true) {
+                        table.add(random.nextLong() | 1);
+                    }
+                });
+            }
+        }
+    }
+
+    @Test
+    void refusesTablesTooLargeToMap() {
+        assertThrows(IOException.class, () -> FingerprintTable.create(directory.resolve("table"), (1L << 26) + 1));
+        assertFalse(Files.exists(directory.resolve("table")));
+    }
+
+    @Test
+    void reopensWhatWasWritten() throws IOException {
+        Path file = directory.resolve("table");
+        Random random = new Random(6);
+        long[] fingerprints = new long[5000];
+        try (FingerprintTable table = FingerprintTable.create(file, fingerprints.length)) {
+            for (int i = 0; i < fingerprints.length; i++) {
+                fingerprints[i] = random.nextLong();
+                table.add(fingerprints[i]);
+            }
+        }
+
+        try (FingerprintTable table = FingerprintTable.open(file)) {
+            assertEquals(fingerprints.length, table.size());
+            for (long fingerprint : fingerprints) {
+                assertTrue(table.contains(fingerprint));
+            }
+            int found = 0;
+            for (int i = 0; i < 100_000; i++) {
+                found += table.contains(random.nextLong()) ? 1 : 0;
+            }
+            assertEquals(0, found);
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path empty = Files.createFile(directory.resolve("empty"));
+        assertThrows(IOException.class, () -> FingerprintTable.open(empty));
+
+        Path file = directory.resolve("table");
+        FingerprintTable.create(file, 10).close();
+        byte[] truncated = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(truncated, truncated.length - 8));
+        assertThrows(IOException.class, () -> FingerprintTable.open(file));
+    }
+
+    /**
+     * Lines that differ in a single byte, in their length or only in trailing zeros have different fingerprints.
+     */
+    @Test
+    void fingerprintsSimilarLinesApart() {
+        Set<Long> fingerprints = new HashSet<>();
+        byte[] line = "{\"JsonScheduleV1\":{\"CIF_train_uid\":\"C10001\",\"schedule_start_date\":\"2023-05-22\"}}"
+                .getBytes(StandardCharsets.US_ASCII);
+        for (int length = 0; length <= line.length; length++) {
+            byte[] prefix = Arrays.copyOf(line, length);
+            assertTrue(fingerprints.add(FingerprintTable.fingerprint(prefix)), "prefix of " + length);
+            assertTrue(fingerprints.add(FingerprintTable.fingerprint(Arrays.copyOf(prefix, length + 1))), "zero after " + length);
+        }
+        for (int i = 0; i < line.length; i++) {
+            for (int bit = 0; bit < 8; bit++) {
+                byte[] flipped = line.clone();
+                flipped[i] ^= 1 << bit;
+                assertTrue(fingerprints.add(FingerprintTable.fingerprint(flipped)), "bit " + bit + " of byte " + i);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package io.confluent.bootcamp.connect.http;
+
+import io.confluent.bootcamp.connect.http.DeflateSamples.Sample;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GzipChunkDecoderTest {
+    private static final int CHUNK_SIZE = 4096;
+    private static final int WINDOW_SIZE = DeflateTables.WINDOW_SIZE;
+
+    static Stream<Sample> samples() {
+        return DeflateSamples.samples();
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void decodesFromTheStart(Sample sample) throws IOException {
+        GzipChunkDecoder.Result result = decoder(sample.gzip, sample.gzip.length, true).decode(0, new byte[0], 0, Long.MAX_VALUE, true);
+
+        assertTrue(result.endOfStream);
+        assertEquals(0, result.markerCount);
+        assertArrayEquals(sample.data, Arrays.copyOfRange(result.bytes, result.bytesStart, result.bytesEnd));
+        assertEquals(sample.memberEnds.length, result.trailers.size());
+
+        GzipChunkDecoder.Trailer last = result.trailers.get(result.trailers.size() - 1);
+        assertEquals(sample.data.length, last.position);
+        if (sample.memberEnds.length == 1) {
+            CRC32 crc = new CRC32();
+            crc.update(sample.data);
+            assertEquals(crc.getValue(), last.crc);
+            assertEquals(sample.data.length, last.size);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void reportsMissingData(Sample sample) throws IOException {
+        int cut = sample.gzip.length / 2;
+        if (sample.isMemberEnd(cut)) {
+            return;
+        }
+
+        GzipChunkDecoder.Result result = decoder(sample.gzip, cut, false).decode(0, new byte[0], 0, Long.MAX_VALUE, true);
+        assertTrue(result.incomplete);
+        assertFalse(result.endOfStream);
+
+        assertThrows(EOFException.class, () -> decoder(sample.gzip, cut, true).decode(0, new byte[0], 0, Long.MAX_VALUE, true));
+    }
+
+    /**
+     * Starting at a checkpoint, which is a block boundary, the speculative decoder has to find that very block when
+     * it is dynamic, and its output has to match once the markers are replaced by the window of the checkpoint.
+     */
+    @ParameterizedTest
+    @MethodSource("samples")
+    void decodesSpeculativelyFromBlockBoundaries(Sample sample) throws IOException {
+        CheckpointingGzipInputStream in = new CheckpointingGzipInputStream(new ByteArrayInputStream(sample.gzip), CHUNK_SIZE);
+        byte[] buffer = new byte[1000];
+        GzipCheckpoint previous = null;
+        while (in.read(buffer) != -1) {
+            GzipCheckpoint checkpoint = in.checkpointFor(in.getPosition());
+            if (checkpoint == null || checkpoint == previous) {
+                continue;
+            }
+            previous = checkpoint;
+
+            long bit = checkpoint.getBitOffset();
+            if (blockType(sample.gzip, bit) != 2) {
+                continue;
+            }
+            GzipChunkDecoder.Result result = decoder(sample.gzip, sample.gzip.length, true).decodeSpeculative(bit, bit + 1);
+            assertEquals(bit, result.startBit);
+
+            byte[] output = resolve(result, checkpoint.getWindow());
+            int position = (int) checkpoint.getPosition();
+            assertTrue(output.length > 0);
+            assertArrayEquals(Arrays.copyOfRange(sample.data, position, position + output.length), output,
+                    "speculative decoding from bit " + bit);
+        }
+    }
+
+    private static GzipChunkDecoder decoder(byte[] gzip, int length, boolean endOfInput) {
+        byte[][] chunks = new byte[(length + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(gzip, i * CHUNK_SIZE, Math.min(length, (i + 1) * CHUNK_SIZE));
+        }
+        return new GzipChunkDecoder(chunks, CHUNK_SIZE, length, endOfInput, 64 * 1024);
+    }
+
+    private static int blockType(byte[] gzip, long bit) {
+        int type = 0;
+        for (int i = 0; i < 2; i++) {
+            long b = bit + 1 + i;
+            type |= ((gzip[(int) (b >>> 3)] >>> (b & 7)) & 1) << i;
+        }
+        return type;
+    }
+
+    private static byte[] resolve(GzipChunkDecoder.Result result, byte[] window) {
+        byte[] lookup = new byte[256 + WINDOW_SIZE];
+        for (int i = 0; i < 256; i++) {
+            lookup[i] = (byte) i;
+        }
+        System.arraycopy(window, 0, lookup, 256 + WINDOW_SIZE - window.length, window.length);
+
+        int plain = result.bytes == null ? 0 : result.bytesEnd - result.bytesStart;
+        byte[] output = new byte[result.markerCount + plain];
+        for (int i = 0; i < result.markerCount; i++) {
+            output[i] = lookup[result.markers[i]];
+        }
+        if (plain > 0) {
+            System.arraycopy(result.bytes, result.bytesStart, output, result.markerCount, plain);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,159 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KeyExtractorTest {
+    private static final String SCHEDULE = "{\"JsonScheduleV1\":{\"CIF_stp_indicator\":\"P\",\"CIF_train_uid\":\"C10001\","
+            + "\"schedule_segment\":{\"signalling_id\":\"2B70\",\"CIF_course_indicator\":1},"
+            + "\"schedule_start_date\":\"2023-05-22\",\"transaction_type\":\"Create\"}}";
+
+    @Test
+    void joinsTheFieldsOfTheFirstCompleteDefinition() {
+        KeyExtractor extractor = new KeyExtractor(List.of("CIF_train_uid+schedule_start_date+CIF_stp_indicator", "tiploc_code"), "/");
+
+        assertEquals("C10001/2023-05-22/P", extract(extractor, SCHEDULE));
+        assertEquals("ABWD", extract(extractor, "{\"TiplocV1\":{\"transaction_type\":\"Create\",\"tiploc_code\":\"ABWD\"}}"));
+        assertNull(extract(extractor, "{\"JsonAssociationV1\":{\"main_train_uid\":\"C44157\"}}"));
+    }
+
+    @Test
+    void takesValuesAsTheyAreInTheLine() {
+        KeyExtractor extractor = new KeyExtractor(List.of("a"), "");
+
+        // nested fields count, the first occurrence wins
+        assertEquals("1", extract(extractor, "{\"x\":{\"y\":{\"a\":1}},\"a\":2}"));
+        assertEquals("-1.5e3", extract(extractor, "{\"a\" : -1.5e3 }"));
+        assertEquals("true", extract(extractor, "{\"a\":true}"));
+        // escapes stay as they are, an escaped quote does not end the value
+        assertEquals("say \\\"hi\\\"", extract(extractor, "{\"a\":\"say \\\"hi\\\"\"}"));
+        assertEquals("back\\\\", extract(extractor, "{\"a\":\"back\\\\\",\"b\":1}"));
+        assertEquals("", extract(extractor, "{\"a\":\"\"}"));
+        // a string value equal to the name is not the field
+        assertEquals("2", extract(extractor, "{\"b\":\"a\",\"a\":2}"));
+        // null, objects and arrays count as missing, a later occurrence can still be taken
+        assertNull(extract(extractor, "{\"a\":null}"));
+        assertEquals("3", extract(extractor, "{\"a\":{\"b\":1},\"c\":{\"a\":3}}"));
+        assertEquals("4", extract(extractor, "{\"a\":[1,2],\"c\":{\"a\":4}}"));
+        assertEquals("null", extract(extractor, "{\"a\":\"null\"}"));
+    }
+
+    @Test
+    void findsFieldsAtEveryAlignment() {
+        KeyExtractor extractor = new KeyExtractor(List.of("CIF_train_uid+schedule_start_date"), "|");
+
+        // the quotes are found eight bytes at a time, move the fields across every position in a word
+        for (int padding = 0; padding < 24; padding++) {
+            String line = "{\"pad\":\"" + "x".repeat(padding) + "\"," + SCHEDULE.substring(1);
+            assertEquals("C10001|2023-05-22", extract(extractor, line), line);
+        }
+    }
+
+    @Test
+    void ignoresValuesCutOffByTheEndOfTheLine() {
+        KeyExtractor extractor = new KeyExtractor(List.of("CIF_train_uid+schedule_start_date", "CIF_train_uid"), "/");
+        int uidEnd = SCHEDULE.indexOf("C10001") + "C10001".length();
+        int dateEnd = SCHEDULE.indexOf("2023-05-22") + "2023-05-22".length();
+
+        for (int cut = 0; cut <= SCHEDULE.length(); cut++) {
+            String line = SCHEDULE.substring(0, cut);
+            // a value counts once its closing quote is in the line
+            String expected = cut > dateEnd ? "C10001/2023-05-22" : cut > uidEnd ? "C10001" : null;
+            assertEquals(expected, extract(extractor, line), line);
+        }
+
+        KeyExtractor number = new KeyExtractor(List.of("CIF_course_indicator"), "");
+        assertNull(extract(number, "{\"CIF_course_indicator\":12"));
+        assertEquals("12", extract(number, "{\"CIF_course_indicator\":12}"));
+    }
+
+    /**
+     * Lines read from a stream that delivers a few bytes at a time, so that lines and the keys in them are split
+     * across the reads of the splitter, and lines longer than its buffer, which it grows while a key is in the part
+     * already read, have to give the same keys as the lines on their own.
+     */
+    @Test
+    void extractsKeysOfLinesSplitAcrossBuffers() throws IOException {
+        Random random = new Random(3);
+        List<String> lines = new ArrayList<>();
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        for (int i = 0; i < 2000; i++) {
+            String filler = "x".repeat(i % 100 == 0 ? 70_000 + random.nextInt(70_000) : random.nextInt(40));
+            String line = "{\"JsonScheduleV1\":{\"filler\":\"" + filler + "\",\"CIF_train_uid\":\"C" + i
+                    + "\",\"schedule_start_date\":\"2023-" + random.nextInt(10) + "\",\"after\":\"" + filler + "\"}}";
+            lines.add(line);
+            file.writeBytes(line.getBytes(StandardCharsets.UTF_8));
+            file.write('\n');
+        }
+
+        KeyExtractor extractor = new KeyExtractor(List.of("CIF_train_uid+schedule_start_date"), "/");
+        KeyExtractor whole = new KeyExtractor(List.of("CIF_train_uid+schedule_start_date"), "/");
+        try (LineSplitter splitter = new LineSplitter(new Trickle(new ByteArrayInputStream(file.toByteArray()), random))) {
+            for (String expected : lines) {
+                byte[] line = splitter.readLine();
+                assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), line);
+                assertArrayEquals(whole.extract(expected.getBytes(StandardCharsets.UTF_8)), extractor.extract(line));
+            }
+            assertNull(splitter.readLine());
+        }
+    }
+
+    @Test
+    void matchesAcceptedValues() {
+        KeyExtractor extractor = new KeyExtractor(List.of("atoc_code+CIF_power_type"), "");
+        byte[][][] accepted = {bytes("SR", "SE"), bytes("EMU")};
+
+        assertEquals(true, extractor.matches(line("{\"atoc_code\":\"SE\",\"CIF_power_type\":\"EMU\"}"), accepted));
+        assertEquals(false, extractor.matches(line("{\"atoc_code\":\"SE\",\"CIF_power_type\":\"DMU\"}"), accepted));
+        assertEquals(false, extractor.matches(line("{\"atoc_code\":\"SER\",\"CIF_power_type\":\"EMU\"}"), accepted));
+        assertEquals(false, extractor.matches(line("{\"atoc_code\":\"SE\"}"), accepted));
+        assertEquals(false, extractor.matches(line("{\"atoc_code\":\"SE\",\"CIF_power_type\":\"EMU"), accepted));
+    }
+
+    private static String extract(KeyExtractor extractor, String line) {
+        byte[] key = extractor.extract(line(line));
+        return key == null ? null : new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] line(String line) {
+        return line.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] bytes(String... values) {
+        byte[][] bytes = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = line(values[i]);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns at most a few bytes per read, like a slow download.
+     */
+    private static class Trickle extends FilterInputStream {
+        private final Random random;
+
+        Trickle(InputStream in, Random random) {
+            super(in);
+            this.random = random;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(random.nextInt(10) == 0 ? 100_000 : 13)));
+        }
+    }
+}
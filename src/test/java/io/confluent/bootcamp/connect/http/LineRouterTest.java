@@ -0,0 +1,153 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LineRouterTest {
+    private static final String SCHEDULE = "{\"JsonScheduleV1\":{\"CIF_train_uid\":\"C10001\",\"atoc_code\":\"SR\","
+            + "\"schedule_segment\":{\"CIF_power_type\":\"EMU\"},\"transaction_type\":\"Create\"}}";
+
+    @Test
+    void routesByTypeAndFieldValues() {
+        LineRouter router = router(null,
+                "electric", "JsonScheduleV1", "CIF_power_type=EMU|E", "electric-schedules",
+                "schedules", "JsonScheduleV1", "", "schedules",
+                "tiplocs", "TiplocV1", "", "tiplocs");
+
+        assertEquals("electric-schedules", route(router, SCHEDULE));
+        assertEquals("electric-schedules", route(router, SCHEDULE.replace("\"EMU\"", "\"E\"")));
+        assertEquals("schedules", route(router, SCHEDULE.replace("\"EMU\"", "\"DMU\"")));
+        assertEquals("tiplocs", route(router, "{\"TiplocV1\":{\"tiploc_code\":\"ABWD\"}}"));
+        // lines no route wants are dropped
+        assertNull(route(router, "{\"JsonAssociationV1\":{\"location\":\"GLGC\"}}"));
+    }
+
+    @Test
+    void sendsUnmatchedLinesToTheirTopic() {
+        LineRouter router = router("other", "schedules", "JsonScheduleV1", "atoc_code=SR", "schedules");
+
+        assertEquals("schedules", route(router, SCHEDULE));
+        assertEquals("other", route(router, SCHEDULE.replace("\"SR\"", "\"GW\"")));
+        assertEquals("other", route(router, "{\"EOF\":true}"));
+    }
+
+    @Test
+    void needsAllConditions() {
+        LineRouter router = router(null, "sr", "JsonScheduleV1", "atoc_code=SR, transaction_type=Create", "sr");
+
+        assertEquals("sr", route(router, SCHEDULE));
+        assertNull(route(router, SCHEDULE.replace("\"Create\"", "\"Delete\"")));
+        assertNull(route(router, SCHEDULE.replace(",\"transaction_type\":\"Create\"", "")));
+    }
+
+    @Test
+    void matchesTheTypeAfterWhitespaceOnly() {
+        LineRouter router = router(null, "schedules", "JsonScheduleV1", "", "schedules");
+
+        assertEquals("schedules", route(router, "  {  \"JsonScheduleV1\":{}}"));
+        // the type has to be the first field, not any field or value
+        assertNull(route(router, "{\"header\":1,\"JsonScheduleV1\":{}}"));
+        assertNull(route(router, "{\"type\":\"JsonScheduleV1\"}"));
+        // a longer name that starts with the type
+        assertNull(route(router, "{\"JsonScheduleV1X\":{}}"));
+    }
+
+    @Test
+    void dropsMalformedLines() {
+        LineRouter router = router(null,
+                "sr", "JsonScheduleV1", "atoc_code=SR", "sr",
+                "tiplocs", "TiplocV1", "", "tiplocs");
+
+        for (String line : new String[] {
+                "",
+                " ",
+                "{",
+                "[\"JsonScheduleV1\"]",
+                "\"JsonScheduleV1\"",
+                "JsonScheduleV1",
+                "{JsonScheduleV1:{atoc_code:SR}}",
+                "{\"JsonScheduleV1\":{\"atoc_code\":null}}",
+                "{\"JsonScheduleV1\":{\"atoc_code\":{\"SR\":1}}}",
+                "{\"JsonScheduleV1\":{\"atoc_code\" \"SR\"}}",
+                "{\"JsonScheduleV1\":{\"atoc\\\"_code\":\"SR\"}}",
+                "\u0000\u0000\u0000"}) {
+            assertNull(route(router, line), line);
+        }
+    }
+
+    /**
+     * A line cut off anywhere, as a download that breaks off would leave it, routes the way its complete fields
+     * allow, and never fails.
+     */
+    @Test
+    void routesPartialLines() {
+        LineRouter router = router("other", "sr", "JsonScheduleV1", "atoc_code=SR", "sr");
+        int value = SCHEDULE.indexOf("\"SR\"");
+
+        for (int cut = 0; cut < SCHEDULE.length(); cut++) {
+            String partial = SCHEDULE.substring(0, cut);
+            // the value counts once its closing quote is there
+            String expected = cut > value + 3 ? "sr" : "other";
+            assertEquals(expected, route(router, partial), partial);
+        }
+    }
+
+    @Test
+    void routesByTypeAloneOrByFieldsAlone() {
+        LineRouter router = router(null,
+                "deletes", "", "transaction_type=Delete", "deletes",
+                "everything", "", "", "everything");
+
+        assertEquals("deletes", route(router, "{\"TiplocV1\":{\"transaction_type\":\"Delete\"}}"));
+        assertEquals("everything", route(router, SCHEDULE));
+        assertEquals("everything", route(router, "not json at all"));
+    }
+
+    @Test
+    void rejectsConditionsThatAreNotFieldEqualsValue() {
+        for (String match : new String[] {"atoc_code", "=SR", " =SR", "CIF_train_uid+atoc_code=SR", "atoc_code=SR,power"}) {
+            Map<String, String> originals = new HashMap<>();
+            originals.put("routes.sr.match", match);
+
+            assertThrows(ConfigException.class, () -> LineRouter.parse(List.of("sr"), originals, "topic"), match);
+        }
+    }
+
+    @Test
+    void takesTheDefaultTopicForRoutesWithoutOne() {
+        Map<String, String> originals = new HashMap<>();
+        originals.put("routes.sr.type", "JsonScheduleV1");
+
+        LineRouter router = new LineRouter(LineRouter.parse(List.of("sr"), originals, "CIF_FULL_DAILY"), null);
+        assertEquals("CIF_FULL_DAILY", route(router, SCHEDULE));
+    }
+
+    /**
+     * @param routes name, type, match and topic of each route
+     */
+    private static LineRouter router(String unmatchedTopic, String... routes) {
+        Map<String, String> originals = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < routes.length; i += 4) {
+            names.add(routes[i]);
+            originals.put("routes." + routes[i] + ".type", routes[i + 1]);
+            originals.put("routes." + routes[i] + ".match", routes[i + 2]);
+            originals.put("routes." + routes[i] + ".topic", routes[i + 3]);
+        }
+        return new LineRouter(LineRouter.parse(names, originals, "default"), unmatchedTopic);
+    }
+
+    private static String route(LineRouter router, String line) {
+        return router.route(line.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,280 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.connect.source.SourceRecord;
+import org.apache.kafka.connect.source.SourceTaskContext;
+import org.apache.kafka.connect.storage.OffsetStorageReader;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Drives {@link HttpCompressedSourceTask} against a {@link StandInServer} the way a Connect worker would, and checks
+ * that every line of the file arrives exactly once after the last committed offset.
+ * <p>
+ * Every configuration reads a generated file in one go, and reports the time to the first record and the throughput.
+ * It then reads the file again, crashing the task a number of times, committing the offset of a record in the middle
+ * of the last page like an offset commit racing the crash would. The download of the last task breaks off several
+ * times at the same byte, so that resuming breaks off as well. After a restart or a disconnect, the task has to
+ * continue with the line after the committed offset, neither losing nor repeating a line.
+ * <p>
+ * The file has {@code load.test.megabytes} MB of lines, 8 by default:
+ * {@code mvn test -Dtest=LoadTest -Dload.test.megabytes=100}
+ */
+class LoadTest {
+    private static final String USERNAME = "user";
+    private static final String PASSWORD = "secret";
+    private static final long STALL_TIMEOUT = 60_000;
+    private static final int RESTARTS = 3;
+    // downloads of the last task that break off, one more than the retries of a version would be too many
+    private static final int DISCONNECTS = 3;
+
+    private static StandInServer server;
+    private static String url;
+    private static byte[] compressed;
+    private static long[] expected;
+
+    private final Random random = new Random(7);
+    private Map<String, String> props;
+    private Map<String, Object> committed = null;
+    private int next;
+
+    @BeforeAll
+    static void publish() throws IOException {
+        long megabytes = Long.getLong("load.test.megabytes", 8);
+        compressed = gzip(generate(megabytes * 1024 * 1024));
+        expected = fingerprints(compressed);
+
+        server = new StandInServer(USERNAME, PASSWORD);
+        url = server.publish("/ntrod/CifFileAuthenticate", compressed, System.currentTimeMillis());
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    static Stream<Arguments> configurations() {
+        List<Arguments> configurations = new ArrayList<>();
+        for (long checkpointInterval : new long[] {0, 256 * 1024}) {
+            for (boolean pipeline : new boolean[] {false, true}) {
+                for (int threads : new int[] {1, 4}) {
+                    configurations.add(Arguments.of(checkpointInterval, pipeline, threads));
+                }
+            }
+        }
+        return configurations.stream();
+    }
+
+    @ParameterizedTest(name = "checkpoint.interval.bytes={0}, pipeline.enabled={1}, decompression.threads={2}")
+    @MethodSource("configurations")
+    void deliversEveryLineOnceAcrossRestartsAndDisconnects(long checkpointInterval, boolean pipeline, int threads) throws InterruptedException {
+        props = new HashMap<>();
+        props.put("http.url", url);
+        props.put("http.user", USERNAME);
+        props.put("http.password", PASSWORD);
+        props.put("topic", "CIF_FULL_DAILY");
+        props.put("task.pause.ms", "100");
+        props.put("page.size.lines", "1000");
+        props.put("checkpoint.interval.bytes", String.valueOf(checkpointInterval));
+        props.put("pipeline.enabled", String.valueOf(pipeline));
+        props.put("decompression.threads", String.valueOf(threads));
+        props.put("decompression.chunk.bytes", String.valueOf(64 * 1024));
+
+        long started = System.nanoTime();
+        List<Long> firstRecord = run(0, false);
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        int downloads = server.getDownloads();
+        List<Long> recovery = run(RESTARTS, true);
+        int restartDownloads = server.getDownloads() - downloads;
+        assertTrue(restartDownloads <= 1 + RESTARTS + DISCONNECTS + 1, restartDownloads + " downloads");
+
+        System.out.printf("checkpoint.interval.bytes=%d, pipeline.enabled=%b, decompression.threads=%d: first record after %d ms, "
+                        + "%.0f lines/s, %.1f compressed MB/s, recovery after %s ms, %d downloads for %d restarts and %d disconnects%n",
+                checkpointInterval, pipeline, threads, firstRecord.get(0), expected.length / seconds, compressed.length / 1e6 / seconds,
+                recovery.subList(1, recovery.size()), restartDownloads, RESTARTS, DISCONNECTS);
+    }
+
+    /**
+     * Reads the file from the start to its EOF marker, crashing the task the given number of times on the way.
+     *
+     * @param disconnect whether the download of the last task breaks off, past the offset it starts from
+     * @return the milliseconds from the start of each task to its first record
+     */
+    private List<Long> run(int crashes, boolean disconnect) throws InterruptedException {
+        committed = null;
+        List<Long> firstRecords = new ArrayList<>();
+
+        for (int attempt = 0; ; attempt++) {
+            HttpCompressedSourceTask task = new HttpCompressedSourceTask();
+            task.initialize(context());
+            if (attempt == crashes && disconnect) {
+                server.disconnectAt(compressed.length * 9L / 10, DISCONNECTS);
+            }
+            long started = System.nanoTime();
+            task.start(props);
+
+            next = committedLine();
+            long crashAt = attempt < crashes ? (long) expected.length * (attempt + 1) / (crashes + 1) : Long.MAX_VALUE;
+            long progress = System.currentTimeMillis();
+            try {
+                while (true) {
+                    List<SourceRecord> records = task.poll();
+                    if (records == null || records.isEmpty()) {
+                        if (System.currentTimeMillis() - progress > STALL_TIMEOUT) {
+                            fail("No records for " + STALL_TIMEOUT + " ms at line " + next);
+                        }
+                        continue;
+                    }
+                    progress = System.currentTimeMillis();
+                    if (firstRecords.size() == attempt) {
+                        firstRecords.add((System.nanoTime() - started) / 1_000_000);
+                    }
+
+                    for (SourceRecord record : records) {
+                        verify(record);
+                        // as the worker does once the producer has written it
+                        task.commitRecord(record, null);
+                    }
+                    if (next >= expected.length) {
+                        return firstRecords;
+                    }
+                    if (next >= crashAt) {
+                        // the commit raced the crash and caught a record in the middle of the page
+                        commit(records.get(random.nextInt(records.size())));
+                        break;
+                    }
+                    commit(records.get(records.size() - 1));
+                }
+            } finally {
+                task.stop();
+                server.disconnectAt(-1, 0);
+            }
+        }
+    }
+
+    private void verify(SourceRecord record) {
+        Object value = record.value();
+        byte[] line = value instanceof byte[] ? (byte[]) value : String.valueOf(value).getBytes(StandardCharsets.US_ASCII);
+        assertTrue(next < expected.length, "Record after the end of the file");
+        assertEquals(expected[next], FingerprintTable.fingerprint(line), () -> "Expected line " + next + " but got " + abbreviate(line));
+        next++;
+    }
+
+    private void commit(SourceRecord record) {
+        committed = new HashMap<>(record.sourceOffset());
+    }
+
+    /**
+     * @return the number of lines before the committed offset, where a restarted task has to continue
+     */
+    private int committedLine() {
+        return committed == null ? 0 : ((Number) committed.get("current_line")).intValue();
+    }
+
+    private SourceTaskContext context() {
+        return new SourceTaskContext() {
+            @Override
+            public Map<String, String> configs() {
+                return props;
+            }
+
+            @Override
+            public OffsetStorageReader offsetStorageReader() {
+                return new OffsetStorageReader() {
+                    @Override
+                    public <T> Map<String, Object> offset(Map<String, T> partition) {
+                        return committed != null ? new HashMap<>(committed) : null;
+                    }
+
+                    @Override
+                    public <T> Map<Map<String, T>, Map<String, Object>> offsets(Collection<Map<String, T>> partitions) {
+                        Map<Map<String, T>, Map<String, Object>> offsets = new HashMap<>();
+                        for (Map<String, T> partition : partitions) {
+                            offsets.put(partition, offset(partition));
+                        }
+                        return offsets;
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return about size bytes of lines like those of the CIF extracts: a header, TIPLOCs, associations and schedules
+     * with a random number of stops, then the EOF marker
+     */
+    private static byte[] generate(long size) {
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) size + 64 * 1024);
+        StringBuilder line = new StringBuilder();
+        line.append("{\"JsonTimetableV1\":{\"classification\":\"public\",\"timestamp\":1690153200,\"owner\":\"Network Rail\"}}\n");
+        for (int i = 0; out.size() < size; i++) {
+            int type = random.nextInt(50);
+            if (type == 0) {
+                line.append("{\"TiplocV1\":{\"transaction_type\":\"Create\",\"tiploc_code\":\"T").append(i)
+                        .append("\",\"nalco\":\"").append(random.nextInt(999999)).append("\",\"tps_description\":\"STATION ").append(i).append("\"}}\n");
+            }
+            else if (type < 4) {
+                line.append("{\"JsonAssociationV1\":{\"transaction_type\":\"Create\",\"main_train_uid\":\"C").append(random.nextInt(99999))
+                        .append("\",\"assoc_train_uid\":\"C").append(random.nextInt(99999)).append("\",\"location\":\"T").append(random.nextInt(i + 1)).append("\"}}\n");
+            }
+            else {
+                line.append("{\"JsonScheduleV1\":{\"CIF_train_uid\":\"W").append(random.nextInt(99999))
+                        .append("\",\"transaction_type\":\"Create\",\"schedule_segment\":{\"schedule_location\":[");
+                int stops = 2 + random.nextInt(random.nextInt(100) + 1);
+                for (int stop = 0; stop < stops; stop++) {
+                    line.append(stop > 0 ? "," : "").append("{\"tiploc_code\":\"T").append(random.nextInt(i + 1))
+                            .append("\",\"departure\":\"").append(random.nextInt(24)).append(':').append(random.nextInt(60)).append("\"}");
+                }
+                line.append("]}}}\n");
+            }
+            out.writeBytes(line.toString().getBytes(StandardCharsets.US_ASCII));
+            line.setLength(0);
+        }
+        out.writeBytes((HttpCompressedSourceTask.EOF_TRUE + "\n").getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static long[] fingerprints(byte[] compressed) throws IOException {
+        long[] fingerprints = new long[1024];
+        int count = 0;
+        try (LineSplitter lines = new LineSplitter(new GZIPInputStream(new ByteArrayInputStream(compressed), 64 * 1024))) {
+            byte[] line;
+            while ((line = lines.readLine()) != null) {
+                if (count == fingerprints.length) {
+                    fingerprints = Arrays.copyOf(fingerprints, count * 2);
+                }
+                fingerprints[count++] = FingerprintTable.fingerprint(line);
+            }
+        }
+        return Arrays.copyOf(fingerprints, count);
+    }
+
+    private static String abbreviate(byte[] line) {
+        return new String(line, 0, Math.min(line.length, 80), StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,85 @@
+package io.confluent.bootcamp.connect.http;
+
+import io.confluent.bootcamp.connect.http.DeflateSamples.Sample;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.ZipException;
+
+import static io.confluent.bootcamp.connect.http.CheckpointingGzipInputStreamTest.assertPrefix;
+import static io.confluent.bootcamp.connect.http.CheckpointingGzipInputStreamTest.cutPoints;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelGzipInputStreamTest {
+    private static final int THREADS = 4;
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private static ExecutorService executor;
+
+    @BeforeAll
+    static void startExecutor() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterAll
+    static void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    static Stream<Sample> samples() {
+        return DeflateSamples.samples();
+    }
+
+    static Stream<Arguments> samplesAndChunkSizes() {
+        return DeflateSamples.samples()
+                .flatMap(sample -> IntStream.of(1024, CHUNK_SIZE, 256 * 1024).mapToObj(chunkSize -> Arguments.of(sample, chunkSize)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("samplesAndChunkSizes")
+    void inflatesLikeJavaUtilZip(Sample sample, int chunkSize) throws IOException {
+        InputStream in = new ParallelGzipInputStream(new ByteArrayInputStream(sample.gzip), executor, THREADS, chunkSize);
+
+        assertArrayEquals(sample.data, in.readAllBytes());
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void failsOnTruncatedInput(Sample sample) {
+        for (int cut : cutPoints(sample.gzip.length)) {
+            if (sample.isMemberEnd(cut)) {
+                continue;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            InputStream in = new ParallelGzipInputStream(new ByteArrayInputStream(sample.gzip, 0, cut), executor, THREADS, CHUNK_SIZE);
+
+            assertThrows(IOException.class, () -> in.transferTo(out), "cut at " + cut);
+            assertPrefix(sample.data, out.toByteArray());
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("samples")
+    void failsOnCorruptTrailer(Sample sample) {
+        int length = sample.gzip.length;
+        for (int index : new int[] {length - 5, length - 1}) {
+            byte[] corrupt = sample.gzip.clone();
+            corrupt[index] ^= 0x10;
+            InputStream in = new ParallelGzipInputStream(new ByteArrayInputStream(corrupt), executor, THREADS, CHUNK_SIZE);
+
+            assertThrows(ZipException.class, in::readAllBytes);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardPlannerTest {
+    private static final String URL = "http://localhost/file.gz";
+    private static final long VERSION = 1_690_153_200_000L;
+
+    /**
+     * Lines of up to a few hundred bytes, with lines longer than the checkpoint interval now and then, so that
+     * checkpoints fall inside lines, several of them inside the same line, and right after a line break.
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 4, 7, 16})
+    void splitsAtLineStartsNearEqualParts(int count) throws IOException {
+        byte[] data = lines(new Random(count), 6 * 1024 * 1024, true);
+        byte[] gzip = DeflateSamples.gzip(data, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+        List<FileShard> shards = ShardPlanner.plan(URL, VERSION, new ByteArrayInputStream(gzip), gzip.length, count);
+
+        assertEquals(count, shards.size());
+        assertShards(data, gzip, shards);
+        for (FileShard shard : shards.subList(1, shards.size())) {
+            // within a checkpoint interval and the longest line of where it should be
+            long target = (long) gzip.length * shard.getIndex() / count;
+            long offset = shard.getCheckpoint().getByteOffset();
+            assertTrue(Math.abs(offset - target) < gzip.length / (count * 8L) + 256 * 1024,
+                    "shard " + shard.getName() + " starts at byte " + offset + " instead of about " + target);
+        }
+    }
+
+    /**
+     * Checkpoints are taken every so many compressed bytes, wherever they are in a line, and the line break that
+     * decides where a shard starts can be in the next read of the planner.
+     */
+    @Test
+    void splitsFilesOfLongLines() throws IOException {
+        Random random = new Random(11);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while (out.size() < 4 * 1024 * 1024) {
+            out.writeBytes(randomBytes(random, 50_000 + random.nextInt(300_000)));
+            out.write('\n');
+        }
+        byte[] data = out.toByteArray();
+        byte[] gzip = DeflateSamples.gzip(data, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+        List<FileShard> shards = ShardPlanner.plan(URL, VERSION, new ByteArrayInputStream(gzip), gzip.length, 4);
+
+        assertTrue(shards.size() > 1);
+        assertShards(data, gzip, shards);
+    }
+
+    @Test
+    void splitsWithoutContentLength() throws IOException {
+        byte[] data = lines(new Random(12), 3 * 1024 * 1024, false);
+        byte[] gzip = DeflateSamples.gzip(data, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+        List<FileShard> shards = ShardPlanner.plan(URL, VERSION, new ByteArrayInputStream(gzip), -1, 3);
+
+        assertEquals(3, shards.size());
+        assertShards(data, gzip, shards);
+    }
+
+    /**
+     * A file smaller than a few checkpoint intervals has fewer places to split than shards wanted.
+     */
+    @Test
+    void makesFewerShardsOfSmallFiles() throws IOException {
+        for (int size : new int[] {0, 1, 1000, 200_000}) {
+            byte[] data = lines(new Random(size), size, false);
+            byte[] gzip = DeflateSamples.gzip(data, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+            List<FileShard> shards = ShardPlanner.plan(URL, VERSION, new ByteArrayInputStream(gzip), gzip.length, 8);
+
+            assertTrue(shards.size() < 8, shards.size() + " shards of " + size + " bytes");
+            assertShards(data, gzip, shards);
+        }
+    }
+
+    @Test
+    void keepsFilesThatCannotBeSplitWhole() throws IOException {
+        byte[] data = lines(new Random(13), 1024 * 1024, true);
+        byte[] gzip = DeflateSamples.gzip(data, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+        List<FileShard> single = ShardPlanner.plan(URL, VERSION, new ByteArrayInputStream(gzip), gzip.length, 1);
+        assertEquals(1, single.size());
+        assertShards(data, gzip, single);
+
+        List<FileShard> plain = ShardPlanner.plan(URL, VERSION, new ByteArrayInputStream(data), data.length, 4);
+        assertEquals(1, plain.size());
+        assertNull(plain.get(0).getCheckpoint());
+        assertEquals(Long.MAX_VALUE, plain.get(0).getEnd());
+    }
+
+    @Test
+    void survivesTheTripThroughTheTaskConfig() throws IOException {
+        byte[] data = lines(new Random(14), 2 * 1024 * 1024, true);
+        byte[] gzip = DeflateSamples.gzip(data, Deflater.DEFAULT_COMPRESSION, Deflater.DEFAULT_STRATEGY, 0);
+
+        List<FileShard> shards = ShardPlanner.plan(URL, VERSION, new ByteArrayInputStream(gzip), gzip.length, 3);
+        List<FileShard> restored = new ArrayList<>();
+        for (FileShard shard : shards) {
+            restored.add(FileShard.parse(shard.toString()));
+        }
+
+        assertEquals(shards.size(), restored.size());
+        assertShards(data, gzip, restored);
+    }
+
+    /**
+     * The shards follow each other without gaps, each starts at a line and its checkpoint inflates to the file from
+     * there, so that every line is read by exactly one shard.
+     */
+    private static void assertShards(byte[] data, byte[] gzip, List<FileShard> shards) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (int i = 0; i < shards.size(); i++) {
+            FileShard shard = shards.get(i);
+            assertEquals(URL, shard.getUrl());
+            assertEquals(VERSION, shard.getVersion());
+            assertEquals(i, shard.getIndex());
+            assertEquals(shards.size(), shard.getCount());
+            assertEquals(i == 0 ? 0 : shards.get(i - 1).getEnd(), shard.getStart(), "start of shard " + i);
+            if (i == shards.size() - 1) {
+                assertEquals(Long.MAX_VALUE, shard.getEnd());
+            }
+            else {
+                assertTrue(shard.getEnd() > shard.getStart(), "empty shard " + i);
+                assertTrue(shard.getEnd() < data.length);
+            }
+
+            InputStream in;
+            if (i == 0) {
+                assertNull(shard.getCheckpoint());
+                in = new CheckpointingGzipInputStream(new ByteArrayInputStream(gzip), 0);
+            }
+            else {
+                GzipCheckpoint checkpoint = shard.getCheckpoint();
+                assertNotNull(checkpoint);
+                assertEquals('\n', data[(int) shard.getStart() - 1], "shard " + i + " does not start at a line");
+                assertTrue(checkpoint.getPosition() <= shard.getStart());
+                // no line break between the checkpoint and the start, the shard begins with the first line after it
+                for (long position = checkpoint.getPosition(); position < shard.getStart() - 1; position++) {
+                    assertTrue(data[(int) position] != '\n', "shard " + i + " skips a line after its checkpoint");
+                }
+                int offset = (int) checkpoint.getByteOffset();
+                in = new CheckpointingGzipInputStream(new ByteArrayInputStream(gzip, offset, gzip.length - offset), checkpoint, 0);
+                in.readNBytes((int) (shard.getStart() - checkpoint.getPosition()));
+            }
+
+            long end = Math.min(shard.getEnd(), data.length);
+            byte[] read = in.readNBytes((int) (end - shard.getStart()));
+            assertArrayEquals(Arrays.copyOfRange(data, (int) shard.getStart(), (int) end), read, "content of shard " + i);
+            lines.writeBytes(read);
+        }
+        assertArrayEquals(data, lines.toByteArray());
+    }
+
+    /**
+     * @return lines of random characters, some of them longer than a checkpoint interval
+     */
+    private static byte[] lines(Random random, int size, boolean trailingNewline) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 1024);
+        while (out.size() < size) {
+            int length = random.nextInt(200) == 0 ? 100_000 + random.nextInt(200_000) : random.nextInt(300);
+            out.writeBytes(randomBytes(random, length));
+            out.write('\n');
+        }
+        byte[] data = Arrays.copyOf(out.toByteArray(), size);
+        if (size > 0) {
+            data[size - 1] = (byte) (trailingNewline ? '\n' : 'x');
+        }
+        return data;
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) ('0' + random.nextInt(75));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,310 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedDownloadTest {
+    private static final int MB = 1024 * 1024;
+    // about eight segments of lines
+    private static final int LINES = 40_000;
+    private static final long VERSION = 1_690_153_200_000L;
+    // position after each line
+    private static final long[] POSITIONS = positions();
+
+    @TempDir
+    Path spill;
+
+    /**
+     * The segments a lagging task still has to read are spilled once the memory is full, and it reads them from the
+     * files while the other task reads the latest lines from memory.
+     */
+    @Test
+    void spillsWhatALaggingReaderHasNotRead() throws IOException {
+        Lines source = new Lines(LINES, -1);
+        HttpCompressedSourceConfiguration config = config(4 * MB, 1024L * MB);
+        LineReader fast = SharedDownload.open("http://localhost/spill", VERSION, config, null, () -> source);
+        LineReader slow = SharedDownload.open("http://localhost/spill", VERSION, config, null, failingOpener());
+
+        assertLines(fast, 0, LINES);
+        assertTrue(spillFiles() > 0, "nothing spilled");
+        // half now, half later
+        assertLines(slow, 0, LINES / 2);
+        assertLines(slow, LINES / 2, LINES);
+        assertEquals("hash", fast.getContentHash());
+        assertEquals("hash", slow.getContentHash());
+
+        fast.close();
+        slow.close();
+        assertTrue(source.closed.get());
+        assertEquals(0, spillFiles());
+    }
+
+    /**
+     * Once the spill files are full, the download waits for the slowest task instead of running ahead of it. Once the
+     * lagging task catches up, the other one is the slowest, so both go on reading together.
+     */
+    @Test
+    void waitsForTheSlowestReaderOnceTheSpillIsFull() throws Exception {
+        Lines source = new Lines(LINES, -1);
+        HttpCompressedSourceConfiguration config = config(4 * MB, 8 * MB);
+        LineReader fast = SharedDownload.open("http://localhost/wait", VERSION, config, null, () -> source);
+        LineReader slow = SharedDownload.open("http://localhost/wait", VERSION, config, null, failingOpener());
+
+        // until no line has come for a while
+        int read = 0;
+        while (fast.readLine() != null) {
+            read++;
+        }
+        assertFalse(fast.isFinished());
+        assertTrue(read < LINES, "read all " + read + " lines");
+        // the segment in memory, the spilled ones, and the one waiting for room
+        assertTrue(source.getPosition() <= 4 * MB + 8 * MB + 2 * 4 * MB, "read " + source.getPosition() + " bytes");
+
+        int start = read;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> rest = executor.submit(() -> {
+                assertLines(fast, start, LINES);
+                return null;
+            });
+            assertLines(slow, 0, LINES);
+            rest.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        fast.close();
+        slow.close();
+        assertEquals(0, spillFiles());
+    }
+
+    /**
+     * A lagging task that leaves deletes the spill files only it needed, and the download goes on for the others.
+     */
+    @Test
+    void goesOnWhenTheLaggingReaderLeaves() throws IOException {
+        Lines source = new Lines(LINES, -1);
+        HttpCompressedSourceConfiguration config = config(4 * MB, 8 * MB);
+        LineReader fast = SharedDownload.open("http://localhost/leave", VERSION, config, null, () -> source);
+        LineReader slow = SharedDownload.open("http://localhost/leave", VERSION, config, null, failingOpener());
+
+        assertLines(slow, 0, 100);
+        int read = 0;
+        while (fast.readLine() != null) {
+            read++;
+        }
+        assertTrue(spillFiles() > 0, "nothing spilled");
+
+        slow.close();
+        assertLines(fast, read, LINES);
+        assertEquals("hash", fast.getContentHash());
+        fast.close();
+        assertEquals(0, spillFiles());
+    }
+
+    /**
+     * A task joins the download while its first segment is kept, in memory or spilled, and reads every line from the
+     * start. Once that segment is gone, a task starts a download of its own.
+     */
+    @Test
+    void joinsOnlyWhileTheFirstSegmentIsKept() throws IOException {
+        Lines source = new Lines(LINES, -1);
+        HttpCompressedSourceConfiguration config = config(0, 1024L * MB);
+        LineReader first = SharedDownload.open("http://localhost/join", VERSION, config, null, () -> source);
+        AtomicBoolean closed = new AtomicBoolean();
+        LineReader early = SharedDownload.open("http://localhost/join", VERSION, config, () -> closed.set(true), failingOpener());
+        // the connection of a task that joins is not needed
+        assertTrue(closed.get());
+
+        // past the first segment, which all readers have read now
+        assertLines(first, 0, LINES);
+        assertLines(early, 0, LINES);
+
+        Lines again = new Lines(LINES, -1);
+        LineReader late = SharedDownload.open("http://localhost/join", VERSION, config, null, () -> again);
+        assertLines(late, 0, LINES);
+
+        first.close();
+        early.close();
+        late.close();
+        assertEquals(0, spillFiles());
+    }
+
+    /**
+     * An error of the download reaches a lagging task only after the lines read before it, and the next task starts
+     * a download of its own.
+     */
+    @Test
+    void failsLaggingReadersAfterTheirLines() throws IOException {
+        Lines source = new Lines(LINES, 20_000);
+        HttpCompressedSourceConfiguration config = config(4 * MB, 1024L * MB);
+        LineReader fast = SharedDownload.open("http://localhost/fail", VERSION, config, null, () -> source);
+        LineReader slow = SharedDownload.open("http://localhost/fail", VERSION, config, null, failingOpener());
+
+        assertLines(fast, 0, 20_000);
+        assertThrows(IOException.class, () -> readAll(fast));
+        assertLines(slow, 0, 20_000);
+        assertThrows(IOException.class, () -> readAll(slow));
+
+        Lines again = new Lines(LINES, -1);
+        LineReader next = SharedDownload.open("http://localhost/fail", VERSION, config, null, () -> again);
+        assertLines(next, 0, LINES);
+
+        fast.close();
+        slow.close();
+        next.close();
+    }
+
+    private HttpCompressedSourceConfiguration config(long bufferBytes, long spillMaxBytes) {
+        Map<String, String> props = new HashMap<>();
+        props.put("http.url", "http://localhost/");
+        props.put("http.user", "user");
+        props.put("http.password", "password");
+        props.put("topic", "topic");
+        props.put("shared.download.enabled", "true");
+        props.put("shared.buffer.bytes", String.valueOf(bufferBytes));
+        props.put("shared.spill.dir", spill.toString());
+        props.put("shared.spill.max.bytes", String.valueOf(spillMaxBytes));
+        return new HttpCompressedSourceConfiguration(props);
+    }
+
+    private long spillFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(spill)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+
+    private static SharedDownload.Opener failingOpener() {
+        return () -> {
+            throw new AssertionError("started a download of its own");
+        };
+    }
+
+    /**
+     * Reads the lines from up to to, and the end of the file after the last line, waiting for the download where it has to.
+     */
+    private static void assertLines(LineReader reader, int from, int to) throws IOException {
+        int i = from;
+        while (i < to) {
+            byte[] line = reader.readLine();
+            if (line == null) {
+                assertFalse(reader.isFinished(), "finished after " + i + " lines");
+                continue;
+            }
+            assertArrayEquals(line(i), line, "line " + i);
+            assertEquals(POSITIONS[i], reader.getPosition());
+            i++;
+        }
+        if (to == LINES) {
+            assertNull(readAll(reader));
+            assertTrue(reader.isFinished());
+        }
+    }
+
+    /**
+     * @return null at the end of the file
+     */
+    private static byte[] readAll(LineReader reader) throws IOException {
+        byte[] line;
+        do {
+            line = reader.readLine();
+        } while (line == null && !reader.isFinished());
+        return line;
+    }
+
+    private static byte[] line(int i) {
+        return ("{\"line\":" + i + ",\"pad\":\"" + "x".repeat(i * 31 % 1600) + "\"}").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static long[] positions() {
+        long[] positions = new long[LINES];
+        long position = 0;
+        for (int i = 0; i < LINES; i++) {
+            position += line(i).length + 1;
+            positions[i] = position;
+        }
+        return positions;
+    }
+
+    /**
+     * The lines of a file as fast as they are read, failing after a number of them if it is not -1.
+     */
+    private static class Lines implements LineReader {
+        private final int count;
+        private final int failAfter;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicInteger read = new AtomicInteger();
+        private volatile long position = 0;
+
+        Lines(int count, int failAfter) {
+            this.count = count;
+            this.failAfter = failAfter;
+        }
+
+        @Override
+        public byte[] readLine() throws IOException {
+            int i = read.get();
+            if (i == failAfter) {
+                throw new IOException("connection reset");
+            }
+            if (i == count) {
+                return null;
+            }
+            byte[] line = line(i);
+            position += line.length + 1;
+            read.incrementAndGet();
+            return line;
+        }
+
+        @Override
+        public boolean ready() {
+            return true;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return read.get() == count;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public GzipCheckpoint getCheckpoint() {
+            return null;
+        }
+
+        @Override
+        public String getContentHash() {
+            return isFinished() ? "hash" : null;
+        }
+
+        @Override
+        public void close() {
+            closed.set(true);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package io.confluent.bootcamp.connect.http;
+
+import com.sun.net.httpserver.BasicAuthenticator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the authenticated file feed, on the JDK HTTP server.
+ * <p>
+ * Serves published files with Basic Auth, Last-Modified and ETag headers, answers conditional requests with 304 and
+ * Range requests (guarded by If-Range) with 206. Downloads can be throttled to a bandwidth, and the next downloads
+ * can be made to break off at a byte of the file.
+ */
+class StandInServer implements Closeable {
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "StandInServer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Published> files = new ConcurrentHashMap<>();
+    private volatile long disconnectAt = -1;
+    private final AtomicInteger disconnects = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger downloads = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private volatile long bandwidth = 0;
+
+    private static final class Published {
+        final byte[] content;
+        final long lastModified;
+        final String etag;
+
+        Published(byte[] content, long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified / 1000 * 1000; // HTTP dates have seconds
+            this.etag = "\"" + sha256(content).substring(0, 16) + "\"";
+        }
+    }
+
+    StandInServer(String username, String password) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle).setAuthenticator(new BasicAuthenticator("stand-in") {
+            @Override
+            public boolean checkCredentials(String user, String pwd) {
+                return username.equals(user) && password.equals(pwd);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Serves the content at the path, replacing what was there before. A path with a query, such as
+     * {@code /feed?type=CIF_ALL_FULL_DAILY&day=toc-full}, serves requests with that query only.
+     *
+     * @return the URL of the file
+     */
+    String publish(String path, byte[] content, long lastModified) {
+        files.put(path, new Published(content, lastModified));
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * @param bytesPerSecond bandwidth of each download, 0 for unlimited
+     */
+    void setBandwidth(long bytesPerSecond) {
+        this.bandwidth = bytesPerSecond;
+    }
+
+    /**
+     * Makes the next {@code times} downloads that get that far break off at the given byte of the file, whether they
+     * started at its beginning or with a Range request.
+     */
+    void disconnectAt(long offset, int times) {
+        disconnectAt = offset;
+        disconnects.set(times);
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    int getDownloads() {
+        return downloads.get();
+    }
+
+    /**
+     * @return bytes of file content written to clients, short of what dropped connections did not take
+     */
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            URI uri = exchange.getRequestURI();
+            Published file = files.getOrDefault(uri.getPath() + "?" + uri.getRawQuery(), files.get(uri.getPath()));
+            if (file == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+
+            var responseHeaders = exchange.getResponseHeaders();
+            responseHeaders.set("Last-Modified", formatDate(file.lastModified));
+            responseHeaders.set("ETag", file.etag);
+            responseHeaders.set("Content-Type", "application/x-gzip");
+            responseHeaders.set("Accept-Ranges", "bytes");
+
+            if (isNotModified(exchange, file)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            long start = rangeStart(exchange, file);
+            long length = file.content.length - start;
+            if (start > 0) {
+                responseHeaders.set("Content-Range", "bytes " + start + "-" + (file.content.length - 1) + "/" + file.content.length);
+            }
+            if (head) {
+                responseHeaders.set("Content-Length", String.valueOf(length));
+                exchange.sendResponseHeaders(start > 0 ? 206 : 200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(start > 0 ? 206 : 200, length);
+            downloads.incrementAndGet();
+            send(exchange.getResponseBody(), file.content, (int) start);
+        } finally {
+            // closing the exchange short of the Content-Length drops the connection
+            exchange.close();
+        }
+    }
+
+    private static boolean isNotModified(HttpExchange exchange, Published file) {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            return ifNoneMatch.equals(file.etag);
+        }
+        Long ifModifiedSince = parseDate(exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+        return ifModifiedSince != null && file.lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * @return the first byte of a valid Range request for an unchanged file, 0 to send the whole file
+     */
+    private static long rangeStart(HttpExchange exchange, Published file) {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range == null || !range.startsWith("bytes=") || !range.endsWith("-")) {
+            return 0;
+        }
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (ifRange != null && !ifRange.equals(file.etag) && !Long.valueOf(file.lastModified).equals(parseDate(ifRange))) {
+            return 0;
+        }
+        try {
+            long start = Long.parseLong(range.substring("bytes=".length(), range.length() - 1));
+            return start < file.content.length ? start : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void send(OutputStream out, byte[] content, int start) throws IOException {
+        int end = content.length;
+        long offset = disconnectAt;
+        if (offset > start && offset < end && disconnects.getAndUpdate(n -> Math.max(n - 1, 0)) > 0) {
+            end = (int) offset;
+        }
+
+        long begin = System.nanoTime();
+        for (int position = start; position < end; position += CHUNK_SIZE) {
+            out.write(content, position, Math.min(CHUNK_SIZE, end - position));
+            bytesSent.addAndGet(Math.min(CHUNK_SIZE, end - position));
+            long rate = bandwidth;
+            if (rate > 0) {
+                long due = begin + (position + CHUNK_SIZE - start) * 1_000_000_000L / rate;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+        out.flush();
+    }
+
+    private static String formatDate(long timestamp) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC));
+    }
+
+    private static Long parseDate(String date) {
+        if (date == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(content)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
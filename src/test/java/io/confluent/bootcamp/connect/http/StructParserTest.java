@@ -0,0 +1,135 @@
+package io.confluent.bootcamp.connect.http;
+
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StructParserTest {
+    private static final String SCHEDULE = "{\"JsonScheduleV1\":{\"CIF_bank_holiday_running\":null,\"CIF_stp_indicator\":\"P\","
+            + "\"CIF_train_uid\":\"C10001\",\"applicable_timetable\":\"Y\",\"atoc_code\":\"SR\","
+            + "\"new_schedule_segment\":{\"traction_class\":\"\",\"uic_code\":\"\"},\"schedule_days_runs\":\"1111100\","
+            + "\"schedule_end_date\":\"2023-12-08\",\"schedule_segment\":{\"signalling_id\":\"2B70\",\"CIF_train_category\":\"OO\","
+            + "\"CIF_headcode\":\"\",\"CIF_course_indicator\":1,\"CIF_train_service_code\":\"25470001\",\"CIF_power_type\":\"EMU\","
+            + "\"CIF_speed\":\"100\",\"schedule_location\":[{\"location_type\":\"LO\",\"record_identity\":\"LO\",\"tiploc_code\":\"GLGC\","
+            + "\"tiploc_instance\":null,\"departure\":\"0600\",\"public_departure\":\"0600\",\"platform\":\"1\"},"
+            + "{\"location_type\":\"LT\",\"record_identity\":\"LT\",\"tiploc_code\":\"PSLYGST\",\"arrival\":\"0612\","
+            + "\"public_arrival\":\"0612\",\"path\":null}]},\"schedule_start_date\":\"2023-05-22\",\"train_status\":\"P\","
+            + "\"transaction_type\":\"Create\"}}";
+
+    @Test
+    void parsesScheduleLinesWithTheDeclaredSchemas() {
+        List<SourceRecord> records = new StructParser(null).convert(records(
+                "{\"JsonTimetableV1\":{\"classification\":\"public\",\"timestamp\":1690153200,\"owner\":\"Network Rail\","
+                        + "\"Sender\":{\"organisation\":\"Rockshore\",\"application\":\"NTROD\",\"component\":\"SCHEDULE\"},"
+                        + "\"Metadata\":{\"type\":\"full\",\"sequence\":3870}}}",
+                "{\"TiplocV1\":{\"transaction_type\":\"Create\",\"tiploc_code\":\"ABWD\",\"nalco\":\"516100\",\"stanox\":\"88401\","
+                        + "\"crs_code\":\"ABW\",\"description\":\"ABBEY WOOD\",\"tps_description\":\"ABBEY WOOD\"}}",
+                SCHEDULE,
+                // a delete only has the fields that identify the schedule
+                "{\"JsonScheduleV1\":{\"CIF_train_uid\":\"C10001\",\"schedule_start_date\":\"2023-05-22\",\"CIF_stp_indicator\":\"P\","
+                        + "\"transaction_type\":\"Delete\"}}"));
+
+        assertSame(CifSchemas.TIMETABLE, records.get(0).valueSchema());
+        assertEquals(3870L, ((Struct) records.get(0).value()).getStruct("JsonTimetableV1").getStruct("Metadata").get("sequence"));
+        assertSame(CifSchemas.TIPLOC, records.get(1).valueSchema());
+
+        assertSame(CifSchemas.SCHEDULE, records.get(2).valueSchema());
+        Struct segment = ((Struct) records.get(2).value()).getStruct("JsonScheduleV1").getStruct("schedule_segment");
+        assertEquals(1L, segment.get("CIF_course_indicator"));
+        List<Struct> locations = segment.getArray("schedule_location");
+        assertEquals("PSLYGST", locations.get(1).get("tiploc_code"));
+
+        assertSame(CifSchemas.SCHEDULE, records.get(3).valueSchema());
+        assertNull(((Struct) records.get(3).value()).getStruct("JsonScheduleV1").get("schedule_segment"));
+    }
+
+    @Test
+    void rejectsFieldsADeclaredSchemaDoesNotHave() {
+        StructParser parser = new StructParser(null);
+
+        DataException e = assertThrows(DataException.class, () -> parser.convert(records(
+                "{\"TiplocV1\":{\"transaction_type\":\"Create\",\"tiploc_code\":\"ABWD\",\"platforms\":\"4\"}}")));
+        assertTrue(e.getMessage().contains("TiplocV1"), e.getMessage());
+    }
+
+    @Test
+    void rejectsValuesOfAnotherTypeThanDeclared() {
+        StructParser parser = new StructParser(null);
+
+        assertThrows(DataException.class, () -> parser.convert(records(SCHEDULE.replace("\"CIF_speed\":\"100\"", "\"CIF_speed\":100"))));
+        assertThrows(DataException.class, () -> parser.convert(records(SCHEDULE.replace("\"CIF_course_indicator\":1", "\"CIF_course_indicator\":\"1\""))));
+    }
+
+    @Test
+    void extendsInferredSchemasWithNewFields() {
+        StructParser parser = new StructParser(null);
+
+        Schema first = parser.convert(records("{\"Other\":{\"a\":\"x\",\"b\":null}}")).get(0).valueSchema();
+        assertEquals(List.of("a"), fieldNames(first.field("Other").schema()));
+
+        List<SourceRecord> records = parser.convert(records("{\"Other\":{\"a\":\"y\"}}", "{\"Other\":{\"a\":\"z\",\"b\":2.5}}", "{\"Other\":{\"b\":3}}"));
+        assertSame(first, records.get(0).valueSchema());
+        Schema extended = records.get(1).valueSchema();
+        assertEquals(List.of("a", "b"), fieldNames(extended.field("Other").schema()));
+        assertSame(extended, records.get(2).valueSchema());
+        // a decimal without a fraction
+        assertEquals(3.0, ((Struct) records.get(2).value()).getStruct("Other").get("b"));
+    }
+
+    @Test
+    void keepsTheFirstTypeOfAnInferredField() {
+        StructParser parser = new StructParser(null);
+        parser.convert(records("{\"Other\":{\"a\":\"x\"}}"));
+
+        DataException e = assertThrows(DataException.class, () -> parser.convert(records("{\"Other\":{\"a\":1}}")));
+        assertTrue(e.getMessage().contains("{\"Other\":{\"a\":1}}"), e.getMessage());
+        // the schema did not change, a line that fits it still converts
+        assertEquals("y", ((Struct) parser.convert(records("{\"Other\":{\"a\":\"y\"}}")).get(0).value()).getStruct("Other").get("a"));
+    }
+
+    @Test
+    void rejectsMismatchesWhileParsingInParallel() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            StructParser parser = new StructParser(pool);
+            String[] lines = new String[1000];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = i == 700 ? SCHEDULE.replace("\"CIF_speed\":\"100\"", "\"CIF_speed\":100") : SCHEDULE;
+            }
+
+            assertThrows(DataException.class, () -> parser.convert(records(lines)));
+            lines[700] = SCHEDULE;
+            assertEquals(lines.length, parser.convert(records(lines)).size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<SourceRecord> records(String... lines) {
+        List<SourceRecord> records = new ArrayList<>();
+        for (String line : lines) {
+            records.add(new SourceRecord(Map.of(), Map.of(), "topic", null, line.getBytes(StandardCharsets.UTF_8)));
+        }
+        return records;
+    }
+
+    private static List<String> fieldNames(Schema schema) {
+        List<String> names = new ArrayList<>();
+        schema.fields().forEach(field -> names.add(field.name()));
+        return names;
+    }
+}